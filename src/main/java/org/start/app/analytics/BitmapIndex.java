@@ -0,0 +1,216 @@
+package org.start.app.analytics;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.start.app.entity.TradeRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 低基数列的位图索引
+ * 交易类型、收支方向、状态、支付方式的每个取值对应一个Roaring压缩位图，位为记录ID；
+ * 多个等值条件的统计和预选转为位图求交，不再扫描表。
+ * 记录ID须在无符号32位范围内。位图本身不是线程安全的，读写由读写锁保护
+ */
+public class BitmapIndex implements TradeRecordIndex {
+    /** 建立索引的列 */
+    public static final Dimension[] COLUMNS = {
+            Dimension.TRADE_TYPE, Dimension.DIRECTION, Dimension.STATUS, Dimension.PAYMENT_METHOD};
+    /** 可索引的最大记录ID */
+    public static final long MAX_ID = 0xFFFFFFFFL;
+
+    /** 按COLUMNS顺序，每列取值 -> 位图 */
+    private final List<Map<String, RoaringBitmap>> columns = new ArrayList<>(COLUMNS.length);
+    /** 全部已索引的记录 */
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public BitmapIndex() {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columns.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 写入或更新一批记录的索引，已有记录先从旧取值的位图中移除
+     * @param records 记录，需填充ID和四个索引列
+     */
+    @Override
+    public void put(List<TradeRecord> records) {
+        lock.writeLock().lock();
+        try {
+            for (TradeRecord record : records) {
+                int id = (int) (long) record.getId();
+                boolean existing = all.contains(id);
+                String[] values = values(record);
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    Map<String, RoaringBitmap> column = columns.get(i);
+                    if (existing) {
+                        for (Map.Entry<String, RoaringBitmap> entry : column.entrySet()) {
+                            if (!entry.getKey().equals(values[i])) {
+                                entry.getValue().remove(id);
+                            }
+                        }
+                    }
+                    column.computeIfAbsent(values[i], k -> new RoaringBitmap()).add(id);
+                }
+                all.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从索引中移除记录
+     */
+    @Override
+    public void remove(Collection<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            for (Long id : ids) {
+                if (id == null || id > MAX_ID || !all.contains((int) (long) id)) {
+                    continue;
+                }
+                int value = (int) (long) id;
+                for (Map<String, RoaringBitmap> column : columns) {
+                    for (RoaringBitmap bitmap : column.values()) {
+                        bitmap.remove(value);
+                    }
+                }
+                all.remove(value);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 统计同时满足各等值条件的记录数
+     * @param filters 列 -> 取值，为空时返回全部记录数
+     */
+    public long count(Map<Dimension, String> filters) {
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> bitmaps = bitmaps(filters);
+            if (bitmaps == null) {
+                return 0;
+            }
+            if (bitmaps.isEmpty()) {
+                return all.getLongCardinality();
+            }
+            if (bitmaps.size() == 1) {
+                return bitmaps.get(0).getLongCardinality();
+            }
+            if (bitmaps.size() == 2) {
+                return RoaringBitmap.andCardinality(bitmaps.get(0), bitmaps.get(1));
+            }
+            return and(bitmaps).getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 求同时满足各等值条件的记录ID
+     * @param filters 列 -> 取值，为空时返回全部记录
+     * @return 新的位图，调用方可自由修改
+     */
+    public RoaringBitmap select(Map<Dimension, String> filters) {
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> bitmaps = bitmaps(filters);
+            if (bitmaps == null) {
+                return new RoaringBitmap();
+            }
+            return bitmaps.isEmpty() ? all.clone() : and(bitmaps);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 压缩连续区间，批量加载完成后调用
+     */
+    @Override
+    public void optimize() {
+        lock.writeLock().lock();
+        try {
+            for (Map<String, RoaringBitmap> column : columns) {
+                for (RoaringBitmap bitmap : column.values()) {
+                    bitmap.runOptimize();
+                }
+            }
+            all.runOptimize();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 索引统计：记录数、每列取值个数和位图占用字节数
+     */
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("rows", all.getLongCardinality());
+            long bytes = all.getLongSizeInBytes();
+            Map<String, Integer> cardinality = new LinkedHashMap<>();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                cardinality.put(COLUMNS[i].getField(), columns.get(i).size());
+                for (RoaringBitmap bitmap : columns.get(i).values()) {
+                    bytes += bitmap.getLongSizeInBytes();
+                }
+            }
+            stats.put("values", cardinality);
+            stats.put("sizeInBytes", bytes);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取出条件对应的位图，按基数从小到大排列；某个取值没有位图时返回null
+     */
+    private List<RoaringBitmap> bitmaps(Map<Dimension, String> filters) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>(filters.size());
+        for (int i = 0; i < COLUMNS.length; i++) {
+            String value = filters.get(COLUMNS[i]);
+            if (value == null) {
+                continue;
+            }
+            RoaringBitmap bitmap = columns.get(i).get(value);
+            if (bitmap == null || bitmap.isEmpty()) {
+                return null;
+            }
+            bitmaps.add(bitmap);
+        }
+        bitmaps.sort((a, b) -> Long.compare(a.getLongCardinality(), b.getLongCardinality()));
+        return bitmaps;
+    }
+
+    private static RoaringBitmap and(List<RoaringBitmap> bitmaps) {
+        RoaringBitmap result = bitmaps.get(0).clone();
+        for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+            result.and(bitmaps.get(i));
+        }
+        return result;
+    }
+
+    private static String[] values(TradeRecord record) {
+        return new String[]{nullToEmpty(record.getTradeType()), nullToEmpty(record.getDirection()),
+                nullToEmpty(record.getStatus()), nullToEmpty(record.getPaymentMethod())};
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,61 @@
+package org.start.app.analytics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字符串字典
+ * 把低基数字符串映射为从0开始的连续编码，列中只存编码；只增不减，编码一经分配不再变化。
+ * 编码由写线程分配，查询线程可并发查码和解码
+ */
+public class Dictionary {
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private volatile int size;
+
+    /**
+     * 查询字符串的编码，不分配新编码
+     * @return 编码，字符串不在字典中时返回-1
+     */
+    public int code(String value) {
+        Integer code = codes.get(value == null ? "" : value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * 查询或分配字符串的编码，null按空字符串处理
+     */
+    public synchronized int encode(String value) {
+        String key = value == null ? "" : value;
+        Integer code = codes.get(key);
+        if (code != null) {
+            return code;
+        }
+        int next = size;
+        String[] current = values;
+        if (next == current.length) {
+            current = Arrays.copyOf(current, next << 1);
+        }
+        current[next] = key;
+        values = current;
+        // 先发布值再发布编码，查询线程拿到编码时一定能解码
+        size = next + 1;
+        codes.put(key, next);
+        return next;
+    }
+
+    /**
+     * 按编码取回字符串
+     */
+    public String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * 已分配的编码个数
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,39 @@
+package org.start.app.analytics;
+
+import org.start.app.model.InvalidRequestException;
+
+/**
+ * 字典编码的维度列，可用于等值过滤和分组
+ */
+public enum Dimension {
+    TRADE_TYPE("tradeType"),
+    DIRECTION("direction"),
+    STATUS("status"),
+    PAYMENT_METHOD("paymentMethod"),
+    COUNTERPARTY("counterparty");
+
+    /** 对外的字段名，与TradeRecord属性一致 */
+    private final String field;
+
+    Dimension(String field) {
+        this.field = field;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * 按字段名查找维度
+     * @throws InvalidRequestException 不支持的字段名
+     */
+    public static Dimension ofField(String field) {
+        for (Dimension dimension : values()) {
+            if (dimension.field.equals(field)) {
+                return dimension;
+            }
+        }
+        throw new InvalidRequestException("不支持的分组维度: " + field
+                + "，可选 tradeType、direction、status、paymentMethod、counterparty");
+    }
+}
@@ -0,0 +1,270 @@
+package org.start.app.analytics;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.start.app.entity.TradeRecord;
+import org.start.app.model.InvalidRequestException;
+import org.start.app.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 交易对方、商品、备注的倒排索引
+ * 每个字段一个有序词典，词项 -> Roaring压缩位图，位为记录ID；词典有序，前缀查询取一段词项求并。
+ * 只追加不回收：记录修改后旧词项仍指向该ID，由调用方按原文校验候选记录，重建索引时清理；
+ * 删除的记录从存活位图中移除，不再返回。
+ * 记录ID须在无符号32位范围内。读写由读写锁保护
+ */
+public class InvertedIndex implements TradeRecordIndex {
+    /** 可索引的最大记录ID */
+    public static final long MAX_ID = 0xFFFFFFFFL;
+
+    /** 按Field顺序，每个字段的词项 -> 位图 */
+    private final List<TreeMap<String, RoaringBitmap>> fields = new ArrayList<>(Field.values().length);
+    /** 未删除的记录 */
+    private final RoaringBitmap live = new RoaringBitmap();
+    /** 记录ID -> 交易时间（自1970年起的分钟数），用于按时间排序 */
+    private final LongIntHashMap tradeMinutes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public InvertedIndex(int expectedSize) {
+        for (int i = 0; i < Field.values().length; i++) {
+            fields.add(new TreeMap<>());
+        }
+        this.tradeMinutes = new LongIntHashMap(expectedSize);
+    }
+
+    /**
+     * 写入一批记录的索引
+     * @param records 记录，需填充ID、交易时间和三个文本字段
+     */
+    @Override
+    public void put(List<TradeRecord> records) {
+        lock.writeLock().lock();
+        try {
+            for (TradeRecord record : records) {
+                int id = (int) (long) record.getId();
+                for (Field field : Field.values()) {
+                    TreeMap<String, RoaringBitmap> postings = fields.get(field.ordinal());
+                    for (String term : SearchTokenizer.index(field.valueOf(record))) {
+                        postings.computeIfAbsent(term, k -> new RoaringBitmap()).add(id);
+                    }
+                }
+                long time = record.getTradeTime() == null ? 0 : record.getTradeTime().getTime();
+                tradeMinutes.put(record.getId(), (int) (time / 60_000));
+                live.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 标记记录已删除
+     */
+    @Override
+    public void remove(Collection<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            for (Long id : ids) {
+                if (id != null && id <= MAX_ID) {
+                    live.remove((int) (long) id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查找命中全部查询词项的记录，每个词项在任一指定字段中命中即可
+     * @param terms 查询词项，为空时没有结果
+     * @param fields 查找的字段
+     * @param limit 最多返回的ID数
+     * @return 候选总数和按交易时间、ID降序排列的前limit个ID
+     */
+    public Hits search(List<SearchTokenizer.Term> terms, Collection<Field> fields, int limit) {
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || fields.isEmpty()) {
+                return new Hits(0, new long[0]);
+            }
+            List<RoaringBitmap> bitmaps = new ArrayList<>(terms.size());
+            for (SearchTokenizer.Term term : terms) {
+                RoaringBitmap bitmap = new RoaringBitmap();
+                for (Field field : fields) {
+                    TreeMap<String, RoaringBitmap> postings = this.fields.get(field.ordinal());
+                    if (term.isPrefix()) {
+                        for (RoaringBitmap posting : postings.subMap(term.getText(),
+                                term.getText() + Character.MAX_VALUE).values()) {
+                            bitmap.or(posting);
+                        }
+                    } else {
+                        RoaringBitmap posting = postings.get(term.getText());
+                        if (posting != null) {
+                            bitmap.or(posting);
+                        }
+                    }
+                }
+                if (bitmap.isEmpty()) {
+                    return new Hits(0, new long[0]);
+                }
+                bitmaps.add(bitmap);
+            }
+            bitmaps.sort((a, b) -> Long.compare(a.getLongCardinality(), b.getLongCardinality()));
+            RoaringBitmap result = bitmaps.get(0);
+            for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+                result.and(bitmaps.get(i));
+            }
+            result.and(live);
+            return new Hits(result.getLongCardinality(), latest(result, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 压缩连续区间，批量加载完成后调用
+     */
+    @Override
+    public void optimize() {
+        lock.writeLock().lock();
+        try {
+            for (TreeMap<String, RoaringBitmap> postings : fields) {
+                for (RoaringBitmap bitmap : postings.values()) {
+                    bitmap.runOptimize();
+                }
+            }
+            live.runOptimize();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 索引统计：记录数、每个字段的词项数和位图占用字节数
+     */
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("rows", live.getLongCardinality());
+            long bytes = live.getLongSizeInBytes();
+            Map<String, Integer> terms = new LinkedHashMap<>();
+            for (Field field : Field.values()) {
+                TreeMap<String, RoaringBitmap> postings = fields.get(field.ordinal());
+                terms.put(field.getField(), postings.size());
+                for (RoaringBitmap bitmap : postings.values()) {
+                    bytes += bitmap.getLongSizeInBytes();
+                }
+            }
+            stats.put("terms", terms);
+            stats.put("sizeInBytes", bytes);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 用大小为limit的小顶堆取交易时间最新的记录，排序键为 分钟数 << 32 | ID
+     */
+    private long[] latest(RoaringBitmap ids, int limit) {
+        if (limit <= 0) {
+            return new long[0];
+        }
+        PriorityQueue<Long> heap = new PriorityQueue<>(Math.min(limit, ids.getCardinality()) + 1);
+        ids.forEach((int id) -> {
+            long unsignedId = Integer.toUnsignedLong(id);
+            long key = ((long) tradeMinutes.get(unsignedId) << 32) | unsignedId;
+            if (heap.size() < limit) {
+                heap.add(key);
+            } else if (key > heap.peek()) {
+                heap.poll();
+                heap.add(key);
+            }
+        });
+        long[] result = new long[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll() & MAX_ID;
+        }
+        return result;
+    }
+
+    /**
+     * 建立索引的文本字段
+     */
+    public enum Field {
+        COUNTERPARTY("counterparty"),
+        PRODUCT("product"),
+        REMARKS("remarks");
+
+        /** 对外的字段名，与TradeRecord属性一致 */
+        private final String field;
+
+        Field(String field) {
+            this.field = field;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        /**
+         * 取出记录中该字段的文本
+         */
+        public String valueOf(TradeRecord record) {
+            switch (this) {
+                case COUNTERPARTY:
+                    return record.getCounterparty();
+                case PRODUCT:
+                    return record.getProduct();
+                default:
+                    return record.getRemarks();
+            }
+        }
+
+        /**
+         * 按字段名查找
+         * @throws InvalidRequestException 不支持的字段名
+         */
+        public static Field ofField(String field) {
+            for (Field value : values()) {
+                if (value.field.equals(field)) {
+                    return value;
+                }
+            }
+            throw new InvalidRequestException("不支持搜索的字段: " + field);
+        }
+    }
+
+    /**
+     * 查找结果
+     */
+    public static final class Hits {
+        /** 命中的候选记录数，记录修改后可能偏多 */
+        private final long total;
+        /** 按交易时间、ID降序排列的记录ID */
+        private final long[] ids;
+
+        Hits(long total, long[] ids) {
+            this.total = total;
+            this.ids = ids;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long[] getIds() {
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.start.app.analytics;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 搜索分词器
+ * 文本先做NFKC规范化（全角转半角）并转小写，再按字符类别切分：
+ * 中日韩文字切为单字和相邻二字（n-gram），不依赖词典，人名、商户名的任意片段都能命中；
+ * 字母数字按连续串切为单词，查询时按前缀匹配；其他字符作为分隔符
+ */
+public final class SearchTokenizer {
+    /** 单词最大长度，超出部分截断 */
+    private static final int MAX_WORD_LENGTH = 32;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 切分待索引的文本
+     * @return 去重后的词项
+     */
+    public static Set<String> index(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (Run run : runs(text)) {
+            if (run.cjk) {
+                String chars = run.text;
+                for (int i = 0; i < chars.length(); i++) {
+                    terms.add(chars.substring(i, i + 1));
+                    if (i + 1 < chars.length()) {
+                        terms.add(chars.substring(i, i + 2));
+                    }
+                }
+            } else {
+                terms.add(run.text);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 切分查询文本
+     * 中日韩文字单字查单字、多字查全部相邻二字；字母数字按前缀查
+     * @return 查询词项，需全部命中
+     */
+    public static List<Term> query(String text) {
+        List<Term> terms = new ArrayList<>();
+        for (Run run : runs(text)) {
+            if (!run.cjk) {
+                terms.add(new Term(run.text, true));
+            } else if (run.text.length() == 1) {
+                terms.add(new Term(run.text, false));
+            } else {
+                for (int i = 0; i + 1 < run.text.length(); i++) {
+                    terms.add(new Term(run.text.substring(i, i + 2), false));
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 文本的词项是否命中全部查询词项，用于校验索引返回的候选记录
+     */
+    public static boolean matches(Set<String> indexed, List<Term> query) {
+        for (Term term : query) {
+            boolean found = indexed.contains(term.text);
+            if (!found && term.prefix) {
+                for (String candidate : indexed) {
+                    if (candidate.startsWith(term.text)) {
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Run> runs(String text) {
+        List<Run> runs = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return runs;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder current = new StringBuilder();
+        Boolean currentCjk = null;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            Boolean cjk = isCjk(codePoint) ? Boolean.TRUE : Character.isLetterOrDigit(codePoint) ? Boolean.FALSE : null;
+            if (cjk != currentCjk) {
+                flush(runs, current, currentCjk);
+                currentCjk = cjk;
+            }
+            if (cjk != null && (cjk || current.length() < MAX_WORD_LENGTH)) {
+                current.appendCodePoint(codePoint);
+            }
+        }
+        flush(runs, current, currentCjk);
+        return runs;
+    }
+
+    private static void flush(List<Run> runs, StringBuilder current, Boolean cjk) {
+        if (cjk != null && current.length() > 0) {
+            runs.add(new Run(current.toString(), cjk));
+        }
+        current.setLength(0);
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static final class Run {
+        final String text;
+        final boolean cjk;
+
+        Run(String text, boolean cjk) {
+            this.text = text;
+            this.cjk = cjk;
+        }
+    }
+
+    /**
+     * 查询词项
+     */
+    public static final class Term {
+        private final String text;
+        /** 是否按前缀匹配 */
+        private final boolean prefix;
+
+        Term(String text, boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean isPrefix() {
+            return prefix;
+        }
+    }
+}
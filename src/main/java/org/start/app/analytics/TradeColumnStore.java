@@ -0,0 +1,457 @@
+package org.start.app.analytics;
+
+import org.start.app.entity.TradeRecord;
+import org.start.app.model.InvalidRequestException;
+import org.start.app.model.TradeRecordQuery;
+import org.start.app.util.LongIntHashMap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 交易记录列式存储
+ * 交易时间（毫秒）和金额（分）存放在long数组中，交易类型、收支方向、状态、支付方式、交易对方经字典编码后存放在int数组中；
+ * 过滤和分组在列上逐行循环，不创建记录对象，按行区间拆分后在多核上并行执行。
+ * 只允许一个写线程追加、覆盖或删除行；查询线程读取已发布的行数以内的数据，
+ * 覆盖中的行可能被读到一半，结果为最终一致，适合即席分析，不用于对账
+ */
+public class TradeColumnStore implements TradeRecordIndex {
+    /** 每个并行任务至少处理的行数，行数过少时拆分的开销大于收益 */
+    private static final int MIN_ROWS_PER_TASK = 1 << 16;
+    /** 分组组合数不超过该值时用数组累加，否则用哈希表 */
+    private static final int DENSE_GROUP_LIMIT = 1 << 16;
+    private static final int DIMENSION_COUNT = Dimension.values().length;
+
+    private final Dictionary[] dictionaries = new Dictionary[DIMENSION_COUNT];
+    /** 当前的列，扩容时整体替换 */
+    private volatile Columns columns;
+    /** 记录ID -> 行号，只由写线程访问 */
+    private final LongIntHashMap rowById;
+    /** 已加载的最大记录ID，只由写线程访问 */
+    private long maxId;
+    /** 已删除的行数 */
+    private volatile int deletedRows;
+
+    /**
+     * @param initialCapacity 初始行容量
+     */
+    public TradeColumnStore(int initialCapacity) {
+        for (int i = 0; i < DIMENSION_COUNT; i++) {
+            dictionaries[i] = new Dictionary();
+        }
+        int capacity = Math.max(1024, initialCapacity);
+        this.columns = new Columns(capacity);
+        this.rowById = new LongIntHashMap(capacity);
+    }
+
+    /**
+     * 追加或覆盖一批记录，仅限写线程调用
+     */
+    @Override
+    public void put(List<TradeRecord> records) {
+        for (TradeRecord record : records) {
+            upsert(record);
+        }
+    }
+
+    /**
+     * 标记一批记录已删除，仅限写线程调用
+     */
+    @Override
+    public void remove(Collection<Long> ids) {
+        for (Long id : ids) {
+            if (id != null) {
+                delete(id);
+            }
+        }
+    }
+
+    /**
+     * 追加新记录或覆盖已加载的记录，仅限写线程调用
+     */
+    public void upsert(TradeRecord record) {
+        long id = record.getId();
+        Columns current = columns;
+        int row = rowById.get(id);
+        if (row < 0) {
+            row = current.size;
+            if (row == current.ids.length) {
+                current = current.grow();
+                columns = current;
+            }
+            rowById.put(id, row);
+            write(current, row, record);
+            current.size = row + 1;
+            maxId = Math.max(maxId, id);
+        } else {
+            if (current.deleted[row]) {
+                current.deleted[row] = false;
+                deletedRows--;
+            }
+            write(current, row, record);
+        }
+    }
+
+    /**
+     * 标记记录已删除，仅限写线程调用
+     */
+    public void delete(long id) {
+        int row = rowById.get(id);
+        Columns current = columns;
+        if (row >= 0 && !current.deleted[row]) {
+            current.deleted[row] = true;
+            deletedRows++;
+        }
+    }
+
+    /**
+     * 已加载的最大记录ID，仅限写线程调用
+     */
+    public long getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * 未删除的行数
+     */
+    public int getLiveRows() {
+        return columns.size - deletedRows;
+    }
+
+    /**
+     * 各维度字典的大小
+     */
+    public Map<String, Integer> dictionarySizes() {
+        Map<String, Integer> sizes = new HashMap<>();
+        for (Dimension dimension : Dimension.values()) {
+            sizes.put(dimension.getField(), dictionaries[dimension.ordinal()].size());
+        }
+        return sizes;
+    }
+
+    /**
+     * 按条件过滤后分组统计笔数和金额
+     * 条件与分页查询相同，交易单号和商户单号不在列中，不支持过滤
+     * @param query 过滤条件
+     * @param groupBy 分组维度，为空时只统计总数
+     * @param parallelism 最大并行度
+     * @return 统计结果，分组按笔数降序
+     * @throws InvalidRequestException 条件包含不支持的字段
+     */
+    public Result aggregate(TradeRecordQuery query, List<Dimension> groupBy, int parallelism) {
+        Columns snapshot = columns;
+        int rows = snapshot.size;
+        Dimension[] groups = groupBy.toArray(new Dimension[0]);
+        int[] radix = new int[groups.length];
+        long groupCount = 1;
+        for (int i = 0; i < groups.length; i++) {
+            radix[i] = Math.max(1, dictionaries[groups[i].ordinal()].size());
+            if (groupCount > Long.MAX_VALUE / radix[i]) {
+                throw new InvalidRequestException("分组维度组合过多");
+            }
+            groupCount *= radix[i];
+        }
+
+        Filter filter = compile(query);
+        if (filter == null || rows == 0) {
+            return new Result(groups, new ArrayList<>(), 0, 0, rows);
+        }
+        int tasks = Math.max(1, Math.min(parallelism, (rows + MIN_ROWS_PER_TASK - 1) / MIN_ROWS_PER_TASK));
+        int chunk = (rows + tasks - 1) / tasks;
+        boolean dense = groupCount <= DENSE_GROUP_LIMIT;
+        int denseSize = (int) groupCount;
+        List<Partial> partials = IntStream.range(0, tasks).parallel()
+                .mapToObj(task -> scan(snapshot, filter, groups, radix, dense, denseSize,
+                        task * chunk, Math.min(rows, (task + 1) * chunk)))
+                .collect(Collectors.toList());
+
+        Map<Long, long[]> merged = new HashMap<>();
+        long totalCount = 0;
+        long totalCents = 0;
+        for (Partial partial : partials) {
+            totalCount += partial.count;
+            totalCents += partial.cents;
+            if (partial.denseCounts != null) {
+                for (int key = 0; key < partial.denseCounts.length; key++) {
+                    if (partial.denseCounts[key] != 0) {
+                        long[] sums = merged.computeIfAbsent((long) key, k -> new long[2]);
+                        sums[0] += partial.denseCounts[key];
+                        sums[1] += partial.denseCents[key];
+                    }
+                }
+            } else {
+                for (Map.Entry<Long, long[]> entry : partial.sparse.entrySet()) {
+                    long[] sums = merged.computeIfAbsent(entry.getKey(), k -> new long[2]);
+                    sums[0] += entry.getValue()[0];
+                    sums[1] += entry.getValue()[1];
+                }
+            }
+        }
+
+        List<Group> result = new ArrayList<>(merged.size());
+        for (Map.Entry<Long, long[]> entry : merged.entrySet()) {
+            String[] values = new String[groups.length];
+            long key = entry.getKey();
+            for (int i = groups.length - 1; i >= 0; i--) {
+                values[i] = dictionaries[groups[i].ordinal()].decode((int) (key % radix[i]));
+                key /= radix[i];
+            }
+            result.add(new Group(values, entry.getValue()[0], entry.getValue()[1]));
+        }
+        result.sort((a, b) -> Long.compare(b.count, a.count));
+        return new Result(groups, result, totalCount, totalCents, rows);
+    }
+
+    /**
+     * 扫描一个行区间，热循环内只有数组访问和比较
+     */
+    private static Partial scan(Columns columns, Filter filter, Dimension[] groups, int[] radix,
+                                boolean dense, int denseSize, int from, int to) {
+        boolean[] deleted = columns.deleted;
+        long[] times = columns.tradeTimes;
+        long[] amounts = columns.amounts;
+        int[][] filterColumns = new int[filter.dimensions.length][];
+        for (int i = 0; i < filterColumns.length; i++) {
+            filterColumns[i] = columns.codes[filter.dimensions[i].ordinal()];
+        }
+        int[] filterCodes = filter.codes;
+        int[][] groupColumns = new int[groups.length][];
+        for (int i = 0; i < groups.length; i++) {
+            groupColumns[i] = columns.codes[groups[i].ordinal()];
+        }
+
+        Partial partial = new Partial();
+        long[] denseCounts = dense ? new long[denseSize] : null;
+        long[] denseCents = dense ? new long[denseSize] : null;
+        Map<Long, long[]> sparse = dense ? null : new HashMap<>();
+        long minTime = filter.minTime;
+        long maxTime = filter.maxTime;
+        long minCents = filter.minCents;
+        long maxCents = filter.maxCents;
+
+        rows:
+        for (int row = from; row < to; row++) {
+            if (deleted[row]) {
+                continue;
+            }
+            long time = times[row];
+            if (time < minTime || time > maxTime) {
+                continue;
+            }
+            long cents = amounts[row];
+            if (cents < minCents || cents > maxCents) {
+                continue;
+            }
+            for (int i = 0; i < filterColumns.length; i++) {
+                if (filterColumns[i][row] != filterCodes[i]) {
+                    continue rows;
+                }
+            }
+            long key = 0;
+            for (int i = 0; i < groupColumns.length; i++) {
+                int code = groupColumns[i][row];
+                if (code >= radix[i]) {
+                    // 查询开始后新出现的维度值，不计入本次结果
+                    continue rows;
+                }
+                key = key * radix[i] + code;
+            }
+            partial.count++;
+            partial.cents += cents;
+            if (dense) {
+                denseCounts[(int) key]++;
+                denseCents[(int) key] += cents;
+            } else {
+                long[] sums = sparse.computeIfAbsent(key, k -> new long[2]);
+                sums[0]++;
+                sums[1] += cents;
+            }
+        }
+        partial.denseCounts = denseCounts;
+        partial.denseCents = denseCents;
+        partial.sparse = sparse;
+        return partial;
+    }
+
+    /**
+     * 把查询条件编译为编码和数值边界
+     * @return 过滤条件，某个维度值不在字典中（结果必为空）时返回null
+     */
+    private Filter compile(TradeRecordQuery query) {
+        if (notBlank(query.getTradeNo()) || notBlank(query.getMerchantOrderNo())) {
+            throw new InvalidRequestException("列式分析不支持按交易单号或商户单号过滤");
+        }
+        List<Dimension> dimensions = new ArrayList<>();
+        List<Integer> codes = new ArrayList<>();
+        String[] values = {query.getTradeType(), query.getDirection(), query.getStatus(),
+                query.getPaymentMethod(), query.getCounterparty()};
+        for (Dimension dimension : Dimension.values()) {
+            String value = values[dimension.ordinal()];
+            if (notBlank(value)) {
+                int code = dictionaries[dimension.ordinal()].code(value);
+                if (code < 0) {
+                    return null;
+                }
+                dimensions.add(dimension);
+                codes.add(code);
+            }
+        }
+        Filter filter = new Filter();
+        filter.dimensions = dimensions.toArray(new Dimension[0]);
+        filter.codes = codes.stream().mapToInt(Integer::intValue).toArray();
+        filter.minTime = query.getStartTime() == null ? Long.MIN_VALUE : query.getStartTime().getTime();
+        filter.maxTime = query.getEndTime() == null ? Long.MAX_VALUE : query.getEndTime().getTime();
+        filter.minCents = query.getMinAmount() == null ? Long.MIN_VALUE
+                : query.getMinAmount().movePointRight(2).setScale(0, RoundingMode.CEILING).longValueExact();
+        filter.maxCents = query.getMaxAmount() == null ? Long.MAX_VALUE
+                : query.getMaxAmount().movePointRight(2).setScale(0, RoundingMode.FLOOR).longValueExact();
+        return filter;
+    }
+
+    private void write(Columns columns, int row, TradeRecord record) {
+        columns.ids[row] = record.getId();
+        columns.tradeTimes[row] = record.getTradeTime() == null ? 0 : record.getTradeTime().getTime();
+        columns.amounts[row] = record.getAmount() == null ? 0
+                : record.getAmount().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        String[] values = {record.getTradeType(), record.getDirection(), record.getStatus(),
+                record.getPaymentMethod(), record.getCounterparty()};
+        for (int i = 0; i < DIMENSION_COUNT; i++) {
+            columns.codes[i][row] = dictionaries[i].encode(values[i]);
+        }
+    }
+
+    private static boolean notBlank(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    /**
+     * 一组列，容量固定，扩容时复制为新的一组
+     */
+    private static final class Columns {
+        final long[] ids;
+        final long[] tradeTimes;
+        final long[] amounts;
+        /** 按Dimension序号排列的编码列 */
+        final int[][] codes;
+        final boolean[] deleted;
+        /** 已发布的行数，写线程先写列再更新 */
+        volatile int size;
+
+        Columns(int capacity) {
+            this.ids = new long[capacity];
+            this.tradeTimes = new long[capacity];
+            this.amounts = new long[capacity];
+            this.codes = new int[DIMENSION_COUNT][capacity];
+            this.deleted = new boolean[capacity];
+        }
+
+        private Columns(Columns source, int capacity) {
+            this.ids = Arrays.copyOf(source.ids, capacity);
+            this.tradeTimes = Arrays.copyOf(source.tradeTimes, capacity);
+            this.amounts = Arrays.copyOf(source.amounts, capacity);
+            this.codes = new int[DIMENSION_COUNT][];
+            for (int i = 0; i < DIMENSION_COUNT; i++) {
+                this.codes[i] = Arrays.copyOf(source.codes[i], capacity);
+            }
+            this.deleted = Arrays.copyOf(source.deleted, capacity);
+            this.size = source.size;
+        }
+
+        Columns grow() {
+            return new Columns(this, ids.length + (ids.length >> 1));
+        }
+    }
+
+    private static final class Filter {
+        Dimension[] dimensions;
+        int[] codes;
+        long minTime;
+        long maxTime;
+        long minCents;
+        long maxCents;
+    }
+
+    private static final class Partial {
+        long count;
+        long cents;
+        long[] denseCounts;
+        long[] denseCents;
+        Map<Long, long[]> sparse;
+    }
+
+    /**
+     * 一个分组的统计值
+     */
+    public static final class Group {
+        private final String[] values;
+        private final long count;
+        private final long cents;
+
+        Group(String[] values, long count, long cents) {
+            this.values = values;
+            this.count = count;
+            this.cents = cents;
+        }
+
+        /** 按分组维度顺序排列的维度值 */
+        public String[] getValues() {
+            return values;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public BigDecimal getAmount() {
+            return BigDecimal.valueOf(cents, 2);
+        }
+    }
+
+    /**
+     * 统计结果
+     */
+    public static final class Result {
+        private final Dimension[] groupBy;
+        private final List<Group> groups;
+        private final long count;
+        private final long cents;
+        /** 扫描的行数（含已删除） */
+        private final int scannedRows;
+
+        Result(Dimension[] groupBy, List<Group> groups, long count, long cents, int scannedRows) {
+            this.groupBy = groupBy;
+            this.groups = groups;
+            this.count = count;
+            this.cents = cents;
+            this.scannedRows = scannedRows;
+        }
+
+        public Dimension[] getGroupBy() {
+            return groupBy;
+        }
+
+        public List<Group> getGroups() {
+            return groups;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public BigDecimal getAmount() {
+            return BigDecimal.valueOf(cents, 2);
+        }
+
+        public int getScannedRows() {
+            return scannedRows;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.start.app.analytics;
+
+import org.start.app.entity.TradeRecord;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 由交易记录构建的进程内索引
+ * 由刷新线程按主键加载、按ID重新读取后写入，重新读取时已不存在的记录通过remove移除
+ */
+public interface TradeRecordIndex {
+
+    /**
+     * 写入或覆盖一批记录
+     */
+    void put(List<TradeRecord> records);
+
+    /**
+     * 移除记录，不存在的ID忽略
+     */
+    void remove(Collection<Long> ids);
+
+    /**
+     * 首次加载或重建完成后整理内部结构
+     */
+    default void optimize() {
+    }
+}
@@ -0,0 +1,43 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 进程内列式分析配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.analytics")
+public class AnalyticsConfig implements IndexRefreshConfig {
+    /**
+     * 是否在启动后把交易记录加载到内存列式存储，全量常驻内存，默认关闭
+     */
+    private boolean enabled = false;
+
+    /**
+     * 初始行容量，接近实际行数可避免加载过程中扩容复制
+     */
+    private int initialCapacity = 1_000_000;
+
+    /**
+     * 加载和增量刷新时每次按主键读取的行数
+     */
+    private int loadBatchSize = 10_000;
+
+    /**
+     * 增量刷新间隔（毫秒）
+     */
+    private long refreshIntervalMillis = 2000;
+
+    /**
+     * 漏掉其他节点的写入时重新全量加载的最短间隔（毫秒），重新加载期间新旧两份数据同时占用内存，默认不重新加载
+     */
+    private long resyncIntervalMillis = 0;
+
+    /**
+     * 查询的最大并行度，0表示取CPU核数
+     */
+    private int parallelism = 0;
+}
@@ -0,0 +1,38 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 低基数列位图索引配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.bitmap-index")
+public class BitmapIndexConfig implements IndexRefreshConfig {
+    /**
+     * 是否在启动后为交易类型、收支方向、状态、支付方式建立进程内位图索引，默认关闭
+     */
+    private boolean enabled = false;
+
+    /**
+     * 候选ID不超过该数量时才用于预选分页查询，过多时IN列表反而比直接扫描慢
+     */
+    private int candidateLimit = 5000;
+
+    /**
+     * 加载和追加时每次按主键读取的行数
+     */
+    private int loadBatchSize = 10_000;
+
+    /**
+     * 追加其他节点新写入记录的间隔（毫秒）
+     */
+    private long refreshIntervalMillis = 5000;
+
+    /**
+     * 漏掉其他节点的写入时重新全量加载的最短间隔（毫秒），不同步期间总数和分页查询回退到数据库，0表示不重新加载
+     */
+    private long resyncIntervalMillis = 300_000;
+}
@@ -0,0 +1,28 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 批量查询配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.bulk")
+public class BulkLookupConfig {
+    /**
+     * 单次请求最多的ID或单号个数
+     */
+    private int maxKeys = 1000;
+
+    /**
+     * 每条IN查询的ID或单号个数
+     */
+    private int chunkSize = 200;
+
+    /**
+     * 并发执行IN查询的线程数，同时占用的数据库连接不超过该值加上请求线程本身
+     */
+    private int parallelism = 4;
+}
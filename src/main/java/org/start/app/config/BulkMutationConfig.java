@@ -0,0 +1,28 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 按条件批量删除、修改的配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.bulk-mutation")
+public class BulkMutationConfig {
+    /**
+     * 每段处理的记录数，每段一个事务，决定单个事务持锁的行数和时间
+     */
+    private int chunkSize = 500;
+
+    /**
+     * 请求可指定的最大段大小
+     */
+    private int maxChunkSize = 5000;
+
+    /**
+     * 每段提交后暂停的毫秒数，给从库回放留出时间
+     */
+    private long pauseMillis = 0;
+}
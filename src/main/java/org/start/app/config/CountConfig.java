@@ -0,0 +1,23 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 分页总数统计配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.count")
+public class CountConfig {
+    /**
+     * 精确总数的缓存时间（秒），写入后通过代数失效，不必等待过期
+     */
+    private long cacheTtlSeconds = 300;
+
+    /**
+     * AUTO模式下估算值达到该值时直接返回估算值
+     */
+    private long estimateThreshold = 100_000L;
+}
@@ -0,0 +1,61 @@
+package org.start.app.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceBuilder;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据源配置
+ * 主库连接池沿用spring.datasource.druid的配置，开启读写分离时按trade.read-write.replicas建立从库连接池，
+ * 对外的数据源按ReadWriteContext在主从之间路由，导入等写入与分页查询、导出分别占用不同的连接池
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean(initMethod = "init")
+    @ConfigurationProperties("spring.datasource.druid")
+    public DruidDataSource primaryDataSource() {
+        DruidDataSource dataSource = DruidDataSourceBuilder.create().build();
+        dataSource.setName("primary");
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReadWriteRoutingDataSource routingDataSource(DruidDataSource primaryDataSource,
+                                                        ReadWriteConfig readWriteConfig) {
+        List<DruidDataSource> replicas = new ArrayList<>();
+        if (readWriteConfig.isEnabled()) {
+            for (ReadWriteConfig.Replica config : readWriteConfig.getReplicas()) {
+                // 复制主库的校验、语句缓存等参数，只替换连接地址和池大小；首次取连接时才初始化，从库不可用不影响启动
+                DruidDataSource replica = primaryDataSource.cloneDruidDataSource();
+                replica.setName("replica-" + replicas.size());
+                replica.setUrl(config.getUrl());
+                replica.setUsername(config.getUsername());
+                replica.setPassword(config.getPassword());
+                replica.setInitialSize(config.getInitialSize());
+                replica.setMinIdle(config.getMinIdle());
+                replica.setMaxActive(config.getMaxActive());
+                replica.setMaxWait(config.getMaxWait());
+                replicas.add(replica);
+            }
+        }
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicas);
+    }
+
+    /**
+     * 对外的数据源，延迟到第一条语句时才取连接，此时只读事务的标记已生效
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,39 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.start.app.model.DedupPolicy;
+
+/**
+ * 交易单号去重配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.dedup")
+public class DedupConfig {
+    /**
+     * 导入时默认的重复处理策略
+     */
+    private DedupPolicy defaultPolicy = DedupPolicy.SKIP;
+
+    /**
+     * 布隆过滤器期望容纳的单号数量
+     */
+    private long expectedInsertions = 10_000_000L;
+
+    /**
+     * 布隆过滤器期望误判率
+     */
+    private double fpp = 0.01;
+
+    /**
+     * 是否把布隆过滤器同步到Redis位图，使各节点能看到其他节点新写入的单号
+     */
+    private boolean redisMirror = false;
+
+    /**
+     * 到数据库确认重复时每条IN查询的单号数
+     */
+    private int confirmChunkSize = 500;
+}
@@ -17,6 +17,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.start.app.model.InvalidRequestException;
 
 import javax.validation.ConstraintViolationException;
 import java.io.IOException;
@@ -122,6 +123,15 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body("File size exceeds maximum allowed size");
     }
 
+    // 处理请求参数无效异常（其他IllegalArgumentException可能来自依赖库或程序错误，按未预期异常处理）
+    @ExceptionHandler(InvalidRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public ResponseEntity<String> handleInvalidRequest(InvalidRequestException ex) {
+        logger.warn("Invalid request: {}", ex.getMessage());
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
     // 处理数据访问异常
     @ExceptionHandler(DataAccessException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,83 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Excel导入配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.import")
+public class ImportConfig {
+    /**
+     * 每批提交给写入线程的记录数
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 并行写入数据库的线程数
+     */
+    private int writerThreads = 4;
+
+    /**
+     * 解析线程与写入线程之间的队列容量（批次数），队列满时解析线程阻塞等待
+     */
+    private int queueCapacity = 8;
+
+    /**
+     * 批量写库方式
+     */
+    private WriteMode writeMode = WriteMode.FOREACH;
+
+    /**
+     * BATCH方式下单次刷写的目标耗时（毫秒），据此自适应调整刷写批量
+     */
+    private long batchTargetMillis = 200;
+
+    /**
+     * BATCH方式下的最小刷写批量
+     */
+    private int batchMinSize = 100;
+
+    /**
+     * BATCH方式下的最大刷写批量
+     */
+    private int batchMaxSize = 5000;
+
+    /**
+     * 是否记录导入检查点，开启后失败的导入可以从上次提交的位置续传
+     */
+    private boolean checkpointEnabled = true;
+
+    /**
+     * 导入检查点在Redis中的保留时间（小时）
+     */
+    private long checkpointTtlHours = 168;
+
+    /**
+     * 同时执行的后台导入任务数
+     */
+    private int jobThreads = 2;
+
+    /**
+     * 排队等待执行的后台导入任务上限
+     */
+    private int jobQueueCapacity = 20;
+
+    /**
+     * 导入任务状态在Redis中的保留时间（小时）
+     */
+    private long jobTtlHours = 72;
+
+    /**
+     * 批量写库方式
+     */
+    public enum WriteMode {
+        /** 使用foreach拼接多行VALUES的单条INSERT */
+        FOREACH,
+        /** 使用BATCH执行器和JDBC批处理 */
+        BATCH
+    }
+}
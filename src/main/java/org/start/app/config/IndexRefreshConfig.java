@@ -0,0 +1,22 @@
+package org.start.app.config;
+
+/**
+ * 进程内索引刷新参数，由各索引的配置类实现
+ */
+public interface IndexRefreshConfig {
+
+    /**
+     * 加载和追加时每次按主键读取的行数，按ID重新读取时每次的ID数
+     */
+    int getLoadBatchSize();
+
+    /**
+     * 按主键追加新记录的间隔（毫秒）
+     */
+    long getRefreshIntervalMillis();
+
+    /**
+     * 索引与写入不同步（其他节点写入等）时重新全量加载的最短间隔（毫秒），0表示不重新加载
+     */
+    long getResyncIntervalMillis();
+}
@@ -0,0 +1,43 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 交易记录表按月分区维护配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.partition")
+public class PartitionConfig {
+    /**
+     * 是否定时维护按月分区，表须已按schema.sql改为分区表，默认关闭
+     */
+    private boolean enabled = false;
+
+    /**
+     * 提前创建的月数，当月之后至少保留这么多个空的按月分区
+     */
+    private int aheadMonths = 3;
+
+    /**
+     * 保留的月数（含当月），更早月份的分区整体删除；0表示不删除
+     */
+    private int retentionMonths = 0;
+
+    /**
+     * 检查间隔（毫秒）
+     */
+    private long checkIntervalMillis = 3_600_000;
+
+    /**
+     * 删除分区后按主键分批读取过期记录ID和单号的批大小，用于删除单号登记、失效缓存和内存索引
+     */
+    private int keyBatchSize = 10_000;
+
+    /**
+     * 分区月份的时区，须与数据源的serverTimezone一致
+     */
+    private String zoneId = "GMT+8";
+}
@@ -0,0 +1,57 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离配置
+ * 主库连接池沿用spring.datasource和spring.datasource.druid，从库连接池在这里逐个配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.read-write")
+public class ReadWriteConfig {
+    /**
+     * 是否把只读查询路由到从库，关闭或未配置从库时全部走主库
+     */
+    private boolean enabled = false;
+
+    /**
+     * 写入后这段时间内，本请求及带回Cookie的后续请求仍读主库（毫秒），应大于主从复制延迟
+     */
+    private long readYourWritesMillis = 3000;
+
+    /**
+     * 读主库Cookie的签名密钥，多个节点须配置相同的值；为空时每个进程随机生成，Cookie只在签发的节点有效
+     */
+    private String cookieSecret = "";
+
+    /**
+     * 从库列表，只读查询按轮询分配
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * 从库连接池，未配置的连接池参数沿用主库
+     */
+    @Data
+    public static class Replica {
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int initialSize = 5;
+
+        private int minIdle = 5;
+
+        private int maxActive = 20;
+
+        private long maxWait = 60000;
+    }
+}
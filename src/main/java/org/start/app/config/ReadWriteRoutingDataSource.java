@@ -0,0 +1,105 @@
+package org.start.app.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.start.app.util.ReadWriteContext;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读写分离路由数据源
+ * 按ReadWriteContext选择主库或从库，从库之间轮询；从库取连接失败时退回主库。
+ * 需由LazyConnectionDataSourceProxy包装，只读事务的标记在第一条语句执行时才生效
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    private static final Logger logger = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+    private static final String PRIMARY = "primary";
+
+    private final DruidDataSource primary;
+    private final List<DruidDataSource> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder replicaFailures = new LongAdder();
+
+    public ReadWriteRoutingDataSource(DruidDataSource primary, List<DruidDataSource> replicas) {
+        this.primary = primary;
+        this.replicas = replicas;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || !ReadWriteContext.isReplicaPreferred()) {
+            return PRIMARY;
+        }
+        return Math.floorMod(next.getAndIncrement(), replicas.size());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            primaryConnections.increment();
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = replicas.get((Integer) key).getConnection();
+            replicaConnections.increment();
+            return connection;
+        } catch (SQLException e) {
+            replicaFailures.increment();
+            logger.warn("从库 {} 获取连接失败，改读主库: {}", key, e.getMessage());
+            primaryConnections.increment();
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * 各连接池的活跃连接数和路由次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("primaryConnections", primaryConnections.sum());
+        stats.put("replicaConnections", replicaConnections.sum());
+        stats.put("replicaFailures", replicaFailures.sum());
+        stats.put(PRIMARY, poolStats(primary));
+        for (DruidDataSource replica : replicas) {
+            stats.put(replica.getName(), poolStats(replica));
+        }
+        return stats;
+    }
+
+    /**
+     * 关闭从库连接池，主库连接池由容器关闭
+     */
+    public void close() {
+        for (DruidDataSource replica : replicas) {
+            replica.close();
+        }
+    }
+
+    private static Map<String, Object> poolStats(DruidDataSource dataSource) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", dataSource.getActiveCount());
+        stats.put("pooling", dataSource.getPoolingCount());
+        stats.put("maxActive", dataSource.getMaxActive());
+        stats.put("waitThreads", dataSource.getWaitThreadCount());
+        return stats;
+    }
+}
@@ -0,0 +1,33 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 交易记录两级缓存配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.cache")
+public class RecordCacheConfig {
+    /**
+     * 是否启用缓存，关闭后按ID和单号的查询直接查库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 进程内缓存的最大条目数（按ID和按单号各一份）
+     */
+    private int nearMaxSize = 10000;
+
+    /**
+     * 进程内缓存的存活时间（秒），同时是跨节点失效消息丢失时的最长不一致时间
+     */
+    private long nearTtlSeconds = 60;
+
+    /**
+     * Redis缓存的存活时间（秒）
+     */
+    private long redisTtlSeconds = 1800;
+}
@@ -0,0 +1,23 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 交易汇总表配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.rollup")
+public class RollupConfig {
+    /**
+     * 写入时是否增量维护汇总表，关闭后需重建才能恢复一致
+     */
+    private boolean enabled = true;
+
+    /**
+     * 统计日期的时区，须与数据源的serverTimezone一致，保证增量与重建的日期划分相同
+     */
+    private String zoneId = "GMT+8";
+}
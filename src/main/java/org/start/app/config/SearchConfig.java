@@ -0,0 +1,43 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 交易对方、商品、备注全文搜索配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.search")
+public class SearchConfig implements IndexRefreshConfig {
+    /**
+     * 是否在启动后为交易对方、商品、备注建立进程内倒排索引，默认关闭
+     */
+    private boolean enabled = false;
+
+    /**
+     * 预计的记录数，用于预分配交易时间映射表
+     */
+    private int expectedRows = 1_000_000;
+
+    /**
+     * 加载和追加时每次按主键读取的行数
+     */
+    private int loadBatchSize = 10_000;
+
+    /**
+     * 追加其他节点新写入记录的间隔（毫秒）
+     */
+    private long refreshIntervalMillis = 5000;
+
+    /**
+     * 漏掉其他节点的写入时重新全量加载的最短间隔（毫秒），默认不重新加载，可调用重建接口
+     */
+    private long resyncIntervalMillis = 0;
+
+    /**
+     * 单次搜索最多返回的记录数
+     */
+    private int maxLimit = 200;
+}
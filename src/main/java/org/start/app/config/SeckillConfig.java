@@ -0,0 +1,19 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 秒杀配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "seckill")
+public class SeckillConfig {
+    /**
+     * 本节点售罄标记的有效毫秒数，到期后下一个请求重新访问Redis确认；
+     * 错过库存重置通知的节点最多多拒绝这么久，0表示不记售罄标记
+     */
+    private long soldOutTtlMillis = 1000;
+}
@@ -0,0 +1,58 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 秒杀订单队列配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "seckill.order-queue")
+public class SeckillOrderConfig {
+    /**
+     * 是否启用订单队列，未启用时抢购成功只记录在Redis中
+     */
+    private boolean enabled = true;
+
+    /**
+     * 订单Stream的key
+     */
+    private String streamKey = "seckill:order:stream";
+
+    /**
+     * 消费者组名称
+     */
+    private String group = "seckill-order-writer";
+
+    /**
+     * 本节点的消费者线程数，阻塞读取各占一个连接，不能超过连接池大小
+     */
+    private int consumers = 2;
+
+    /**
+     * 每次读取并批量写库的最大消息数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 没有新消息时阻塞等待的毫秒数，也是停机时最长的等待
+     */
+    private long blockMillis = 2000;
+
+    /**
+     * 写库失败后重试前等待的毫秒数
+     */
+    private long retryBackoffMillis = 1000;
+
+    /**
+     * 其他消费者读取后超过该毫秒数仍未确认的消息转给本节点处理
+     */
+    private long claimIdleMillis = 60000;
+
+    /**
+     * 检查超时未确认消息的间隔毫秒数
+     */
+    private long claimIntervalMillis = 30000;
+}
@@ -0,0 +1,54 @@
+package org.start.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.start.app.model.InsertMode;
+
+/**
+ * 单条新增的写缓冲（合并提交）配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "trade.write-behind")
+public class WriteBehindConfig {
+    /**
+     * 是否启用写缓冲，未启用时只能直接写入
+     */
+    private boolean enabled = false;
+
+    /**
+     * 未指定写入方式时的默认方式
+     */
+    private InsertMode defaultMode = InsertMode.DIRECT;
+
+    /**
+     * 缓冲区最多容纳的记录数
+     */
+    private int capacity = 10000;
+
+    /**
+     * 每批最多合并的记录数，达到后立即提交
+     */
+    private int batchSize = 500;
+
+    /**
+     * 批次中第一条记录最多等待的毫秒数，到时不足batchSize也提交
+     */
+    private long maxDelayMillis = 20;
+
+    /**
+     * 缓冲区满时最多等待的毫秒数，超时拒绝写入
+     */
+    private long offerTimeoutMillis = 1000;
+
+    /**
+     * GROUP_COMMIT方式最多等待提交的毫秒数，超时后记录仍会写入
+     */
+    private long waitTimeoutMillis = 5000;
+
+    /**
+     * 停机时写完缓冲区剩余记录最多等待的毫秒数
+     */
+    private long shutdownTimeoutMillis = 30000;
+}
@@ -5,6 +5,10 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
+import org.start.app.service.RedisBenchmarkService;
+import org.start.app.service.SeckillOrderQueue;
+import org.start.app.service.SeckillService;
+import org.start.app.util.RedisBatch;
 import org.start.app.util.RedisUtil;
 import org.start.app.util.RedisLockUtil;
 
@@ -21,10 +25,18 @@ public class RedisController {
 
     private final RedisUtil redisUtil;
     private final RedisLockUtil redisLockUtil;
+    private final RedisBenchmarkService redisBenchmarkService;
+    private final SeckillService seckillService;
+    private final SeckillOrderQueue seckillOrderQueue;
 
-    public RedisController(RedisUtil redisUtil, RedisLockUtil redisLockUtil) {
+    public RedisController(RedisUtil redisUtil, RedisLockUtil redisLockUtil,
+                           RedisBenchmarkService redisBenchmarkService, SeckillService seckillService,
+                           SeckillOrderQueue seckillOrderQueue) {
         this.redisUtil = redisUtil;
         this.redisLockUtil = redisLockUtil;
+        this.redisBenchmarkService = redisBenchmarkService;
+        this.seckillService = seckillService;
+        this.seckillOrderQueue = seckillOrderQueue;
     }
 
     // ====== String类型示例 ======
@@ -159,44 +171,52 @@ public class RedisController {
         }
     }
 
-    @Operation(summary = "分布式锁示例", description = "使用分布式锁执行秒杀操作")
+    @Operation(summary = "秒杀", description = "库存检查、重复购买检查、扣减库存和记录购买用户在一个Lua脚本中原子完成，"
+            + "不加锁；售罄后本节点直接拒绝；分片库存时先扣用户所属分片，为空再扣其他分片；"
+            + "成功后订单写入Stream即返回，异步落库")
     @PostMapping("/lock/seckill")
     public String seckill(@RequestParam String productId, @RequestParam String userId) {
         try {
             logger.debug("Processing seckill for productId: {}, userId: {}", productId, userId);
-            return redisLockUtil.executeWithLock(
-                "seckill:" + productId,
-                () -> {
-                    String stockKey = "product:stock:" + productId;
-                    Integer stock = (Integer) redisUtil.get(stockKey);
-                    if (stock == null || stock <= 0) {
-                        return "商品已售罄";
-                    }
-
-                    String boughtKey = "product:bought:" + productId;
-                    if (Boolean.TRUE.equals(redisUtil.sIsMember(boughtKey, userId))) {
-                        return "您已购买过该商品";
-                    }
-
-                    redisUtil.decrement(stockKey, 1);
-                    redisUtil.sAdd(boughtKey, userId);
-                    
-                    return "抢购成功";
-                }
-            );
+            return seckillService.purchase(productId, userId).getMessage();
         } catch (Exception e) {
             logger.error("Error processing seckill for productId: {}, userId: {}", productId, userId, e);
             throw e;
         }
     }
 
-    @Operation(summary = "初始化商品库存", description = "初始化商品库存，用于测试分布式锁")
+    @Operation(summary = "秒杀统计", description = "查询本节点抢购成功、重复购买和售罄拒绝的次数")
+    @GetMapping("/lock/seckill/stats")
+    public Map<String, Object> getSeckillStats() {
+        return seckillService.stats();
+    }
+
+    @Operation(summary = "库存对账", description = "查询商品各分片的剩余库存、购买人数及合计")
+    @GetMapping("/lock/stock/{productId}")
+    public Map<String, Object> getStock(@PathVariable String productId) {
+        return seckillService.reconcile(productId);
+    }
+
+    @Operation(summary = "秒杀订单队列统计", description = "查询订单入队、落库、重复投递和失败次数，以及Stream积压和待确认的消息数")
+    @GetMapping("/lock/seckill/orders/stats")
+    public Map<String, Object> getSeckillOrderStats() {
+        return seckillOrderQueue.stats();
+    }
+
+    @Operation(summary = "分布式锁统计", description = "查询分布式锁的获取次数、等待和持有时间、续期次数")
+    @GetMapping("/lock/stats")
+    public Map<String, Object> getLockStats() {
+        return redisLockUtil.stats();
+    }
+
+    @Operation(summary = "初始化商品库存", description = "初始化商品库存并清除各节点的售罄标记，用于测试秒杀；"
+            + "shards大于1时库存拆到多个分片，分散热点商品的请求")
     @PostMapping("/lock/init-stock")
-    public String initStock(@RequestParam String productId, @RequestParam Integer stock) {
+    public String initStock(@RequestParam String productId, @RequestParam Integer stock,
+                            @RequestParam(defaultValue = "1") int shards) {
         try {
-            logger.debug("Initializing stock for productId: {}, stock: {}", productId, stock);
-            String stockKey = "product:stock:" + productId;
-            redisUtil.set(stockKey, stock);
+            logger.debug("Initializing stock for productId: {}, stock: {}, shards: {}", productId, stock, shards);
+            seckillService.initStock(productId, stock, shards);
             return "库存初始化成功";
         } catch (Exception e) {
             logger.error("Error initializing stock for productId: {}", productId, e);
@@ -234,6 +254,27 @@ public class RedisController {
         }
     }
 
+    @Operation(summary = "批量获取签到统计", description = "Bitmap示例3：通过管道一次往返获取多个用户当月签到次数")
+    @GetMapping("/bitmap/sign/count")
+    public Map<String, Long> getSignCounts(@RequestParam List<String> userIds) {
+        try {
+            logger.debug("Getting sign-in counts for userIds: {}", userIds);
+            String month = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMM"));
+            RedisBatch batch = redisUtil.batch();
+            Map<String, RedisBatch.Result<Long>> results = new LinkedHashMap<>();
+            for (String userId : userIds) {
+                results.put(userId, batch.bitCount(String.format("user:sign:%s:%s", userId, month)));
+            }
+            batch.execute();
+            Map<String, Long> counts = new LinkedHashMap<>();
+            results.forEach((userId, result) -> counts.put(userId, result.get()));
+            return counts;
+        } catch (Exception e) {
+            logger.error("Error getting sign-in counts for userIds: {}", userIds, e);
+            throw e;
+        }
+    }
+
     // ====== HyperLogLog类型示例 ======
 
     @Operation(summary = "记录用户访问", description = "HyperLogLog示例1：统计网页UV（独立访客数）")
@@ -302,4 +343,20 @@ public class RedisController {
             throw e;
         }
     }
-} 
\ No newline at end of file
+
+    // ====== 批量操作基准测试 ======
+
+    @Operation(summary = "批量操作基准测试", description = "对比逐条调用、管道、MULTI/EXEC和MSET/MGET的吞吐量，"
+            + "每种方式对每个键写一次、读一次，测完删除测试键")
+    @PostMapping("/benchmark/batch")
+    public Map<String, Object> benchmarkBatch(@RequestParam(defaultValue = "10000") int keys,
+                                              @RequestParam(defaultValue = "500") int batchSize) {
+        try {
+            logger.debug("Running batch benchmark - keys: {}, batchSize: {}", keys, batchSize);
+            return redisBenchmarkService.compare(keys, batchSize);
+        } catch (Exception e) {
+            logger.error("Error running batch benchmark", e);
+            throw e;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package org.start.app.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,18 +12,49 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.multipart.MultipartFile;
+import org.start.app.config.ReadWriteRoutingDataSource;
+import org.start.app.config.WriteBehindConfig;
+import org.start.app.filter.ReadYourWritesFilter;
+import org.start.app.model.BulkMutationRequest;
+import org.start.app.model.DedupPolicy;
+import org.start.app.model.ExportFormat;
+import org.start.app.model.ImportJob;
+import org.start.app.model.InsertMode;
+import org.start.app.model.InvalidRequestException;
+import org.start.app.model.TradeStatsQuery;
+import org.start.app.service.ImportJobService;
+import org.start.app.service.TradeAnalyticsService;
+import org.start.app.service.TradePartitionService;
+import org.start.app.service.TradeBitmapIndexService;
+import org.start.app.service.TradeBulkMutationService;
+import org.start.app.service.TradeRecordExportService;
 import org.start.app.service.TradeRecordService;
+import org.start.app.service.TradeRecordWriteBehind;
+import org.start.app.service.TradeRollupService;
+import org.start.app.service.TradeSearchService;
+import org.start.app.service.WriteBenchmarkService;
 import org.start.app.entity.TradeRecord;
 import org.start.app.model.TradeRecordQuery;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.format.annotation.DateTimeFormat;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Tag(name = "交易记录", description = "交易记录相关接口")
 @RestController
@@ -29,22 +63,90 @@ import java.util.Map;
 public class TradeRecordController {
 
     private final TradeRecordService tradeRecordService;
+    private final ImportJobService importJobService;
+    private final WriteBenchmarkService writeBenchmarkService;
+    private final TradeRecordExportService tradeRecordExportService;
+    private final TradeRollupService tradeRollupService;
+    private final TradeAnalyticsService tradeAnalyticsService;
+    private final TradeBitmapIndexService tradeBitmapIndexService;
+    private final TradeSearchService tradeSearchService;
+    private final TradePartitionService tradePartitionService;
+    private final ReadWriteRoutingDataSource routingDataSource;
+    private final TradeRecordWriteBehind tradeRecordWriteBehind;
+    private final WriteBehindConfig writeBehindConfig;
+    private final TradeBulkMutationService tradeBulkMutationService;
+    private final ReadYourWritesFilter readYourWritesFilter;
 
-    public TradeRecordController(TradeRecordService tradeRecordService) {
+    public TradeRecordController(TradeRecordService tradeRecordService, ImportJobService importJobService,
+                                 WriteBenchmarkService writeBenchmarkService,
+                                 TradeRecordExportService tradeRecordExportService,
+                                 TradeRollupService tradeRollupService,
+                                 TradeAnalyticsService tradeAnalyticsService,
+                                 TradeBitmapIndexService tradeBitmapIndexService,
+                                 TradeSearchService tradeSearchService,
+                                 TradePartitionService tradePartitionService,
+                                 ReadWriteRoutingDataSource routingDataSource,
+                                 TradeRecordWriteBehind tradeRecordWriteBehind,
+                                 WriteBehindConfig writeBehindConfig,
+                                 TradeBulkMutationService tradeBulkMutationService,
+                                 ReadYourWritesFilter readYourWritesFilter) {
         this.tradeRecordService = tradeRecordService;
+        this.importJobService = importJobService;
+        this.writeBenchmarkService = writeBenchmarkService;
+        this.tradeRecordExportService = tradeRecordExportService;
+        this.tradeRollupService = tradeRollupService;
+        this.tradeAnalyticsService = tradeAnalyticsService;
+        this.tradeBitmapIndexService = tradeBitmapIndexService;
+        this.tradeSearchService = tradeSearchService;
+        this.tradePartitionService = tradePartitionService;
+        this.routingDataSource = routingDataSource;
+        this.tradeRecordWriteBehind = tradeRecordWriteBehind;
+        this.writeBehindConfig = writeBehindConfig;
+        this.tradeBulkMutationService = tradeBulkMutationService;
+        this.readYourWritesFilter = readYourWritesFilter;
     }
 
-    @Operation(summary = "导入Excel", description = "导入交易记录Excel文件")
+    @Operation(summary = "导入Excel", description = "导入交易记录Excel文件，同一文件再次导入时从上次失败的位置续传；"
+            + "dedupPolicy指定重复单号的处理方式（NONE/SKIP/UPSERT/REJECT），默认取配置")
     @PostMapping("/import")
-    public ResponseEntity<String> importExcel(@RequestPart("file") MultipartFile file) {
+    public ResponseEntity<String> importExcel(@RequestPart("file") MultipartFile file,
+                                              @RequestParam(defaultValue = "true") boolean resume,
+                                              @RequestParam(required = false) DedupPolicy dedupPolicy) {
         try {
-            tradeRecordService.importExcel(file);
+            tradeRecordService.importExcel(file, resume, dedupPolicy);
             return ResponseEntity.ok("导入成功");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("导入失败：" + e.getMessage());
         }
     }
 
+    @Operation(summary = "提交导入任务", description = "后台异步导入交易记录Excel文件，立即返回任务ID")
+    @PostMapping("/import/jobs")
+    public ResponseEntity<ImportJob> submitImportJob(@RequestPart("file") MultipartFile file,
+                                                     @RequestParam(defaultValue = "true") boolean resume,
+                                                     @RequestParam(required = false) DedupPolicy dedupPolicy)
+            throws IOException {
+        try {
+            return ResponseEntity.ok(importJobService.submit(file, resume, dedupPolicy));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @Operation(summary = "查询导入任务", description = "查询导入任务的状态、进度、速度和预计剩余时间")
+    @GetMapping("/import/jobs/{jobId}")
+    public ResponseEntity<ImportJob> getImportJob(@PathVariable String jobId) {
+        ImportJob job = importJobService.getJob(jobId);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    @Operation(summary = "取消导入任务", description = "取消排队中或执行中的导入任务，已写入的批次保留")
+    @DeleteMapping("/import/jobs/{jobId}")
+    public ResponseEntity<ImportJob> cancelImportJob(@PathVariable String jobId) {
+        ImportJob job = importJobService.cancel(jobId);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
     @Operation(summary = "生成测试Excel", description = "生成包含10000条测试数据的Excel文件")
     @GetMapping("/generate-test")
     public ResponseEntity<String> generateTestExcel() {
@@ -60,17 +162,208 @@ public class TradeRecordController {
         }
     }
 
+    @Operation(summary = "导出记录", description = "按条件导出全部交易记录，format可选XLSX或CSV，边查询边写出，不受分页参数限制")
+    @GetMapping("/export")
+    public void export(TradeRecordQuery query, @RequestParam(defaultValue = "XLSX") ExportFormat format,
+                       HttpServletResponse response) throws IOException {
+        String fileName = "trade_records_" + System.currentTimeMillis() + format.getExtension();
+        response.setContentType(format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(fileName, StandardCharsets.UTF_8).build().toString());
+        tradeRecordExportService.export(query, format, response.getOutputStream());
+    }
+
+    @Operation(summary = "流式查询", description = "按分页查询的条件输出全部记录，NDJSON格式每行一个JSON对象，边读边写，"
+            + "适合集成方拉取大量数据；分页参数不生效")
+    @GetMapping("/stream")
+    public void stream(TradeRecordQuery query, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson;charset=UTF-8");
+        tradeRecordExportService.stream(query, response.getOutputStream());
+    }
+
+    @Operation(summary = "交易统计", description = "按日/月/年或全部时间段统计笔数和金额，groupBy可选tradeType、direction、"
+            + "paymentMethod、status，读汇总表，日期对齐整月时读月汇总")
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats(TradeStatsQuery query) {
+        return ResponseEntity.ok(tradeRollupService.stats(query));
+    }
+
+    @Operation(summary = "重建汇总", description = "后台按月从交易记录重建汇总表，日期为空时覆盖全部数据；已有重建任务运行时返回409")
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildStats(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+        if (!tradeRollupService.rebuild(startDate, endDate)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(tradeRollupService.rebuildStatus());
+        }
+        return ResponseEntity.accepted().body(tradeRollupService.rebuildStatus());
+    }
+
+    @Operation(summary = "重建进度", description = "查询最近一次汇总重建的状态和进度")
+    @GetMapping("/stats/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildStatus() {
+        return ResponseEntity.ok(tradeRollupService.rebuildStatus());
+    }
+
+    @Operation(summary = "列式分析", description = "在内存列式存储上按分页查询的条件过滤后分组统计笔数和金额，groupBy可选tradeType、"
+            + "direction、status、paymentMethod、counterparty；需开启trade.analytics.enabled，加载完成前返回503")
+    @GetMapping("/analytics")
+    public ResponseEntity<Map<String, Object>> analytics(TradeRecordQuery query,
+                                                         @RequestParam(required = false) List<String> groupBy,
+                                                         @RequestParam(defaultValue = "100") int limit) {
+        if (!tradeAnalyticsService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(tradeAnalyticsService.status());
+        }
+        return ResponseEntity.ok(tradeAnalyticsService.aggregate(query, groupBy, limit));
+    }
+
+    @Operation(summary = "列式存储状态", description = "列式存储是否就绪、行数、字典大小和最近刷新时间")
+    @GetMapping("/analytics/status")
+    public ResponseEntity<Map<String, Object>> analyticsStatus() {
+        return ResponseEntity.ok(tradeAnalyticsService.status());
+    }
+
+    @Operation(summary = "位图索引状态", description = "位图索引是否就绪、已索引的记录数、各列取值个数和内存占用")
+    @GetMapping("/index/stats")
+    public ResponseEntity<Map<String, Object>> bitmapIndexStats() {
+        return ResponseEntity.ok(tradeBitmapIndexService.stats());
+    }
+
+    @Operation(summary = "关键词搜索", description = "按交易对方、商品、备注搜索交易记录，中文支持名称片段，字母数字按前缀匹配，"
+            + "多个关键词需全部命中，结果按交易时间倒序；fields可选counterparty、product、remarks；"
+            + "需开启trade.search.enabled，加载完成前返回503")
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> search(@RequestParam String q,
+                                                      @RequestParam(required = false) List<String> fields,
+                                                      @RequestParam(defaultValue = "20") int limit) {
+        if (!tradeSearchService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(tradeSearchService.stats());
+        }
+        return ResponseEntity.ok(tradeSearchService.search(q, fields, limit));
+    }
+
+    @Operation(summary = "重建搜索索引", description = "后台从交易记录重新建立搜索索引，完成后替换旧索引；已有重建任务或未开启时返回409")
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSearch() {
+        if (!tradeSearchService.rebuild()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(tradeSearchService.stats());
+        }
+        return ResponseEntity.accepted().body(tradeSearchService.stats());
+    }
+
+    @Operation(summary = "搜索索引状态", description = "搜索索引是否就绪、已索引的记录数、各字段词项数和内存占用")
+    @GetMapping("/search/stats")
+    public ResponseEntity<Map<String, Object>> searchStats() {
+        return ResponseEntity.ok(tradeSearchService.stats());
+    }
+
+    @Operation(summary = "分区状态", description = "交易记录表的按月分区、估算行数和占用空间，以及最近一次分区维护的结果")
+    @GetMapping("/partitions")
+    public ResponseEntity<Map<String, Object>> partitions() {
+        return ResponseEntity.ok(tradePartitionService.status());
+    }
+
+    @Operation(summary = "维护分区", description = "立即创建未来月份的分区并删除超过保留月数的分区；表未分区时返回409")
+    @PostMapping("/partitions/maintain")
+    public ResponseEntity<Map<String, Object>> maintainPartitions() {
+        try {
+            return ResponseEntity.ok(tradePartitionService.maintain());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(tradePartitionService.status());
+        }
+    }
+
+    @Operation(summary = "连接池状态", description = "主库和各从库连接池的活跃、空闲、等待数，以及读写分离的路由次数")
+    @GetMapping("/datasource/stats")
+    public ResponseEntity<Map<String, Object>> dataSourceStats() {
+        return ResponseEntity.ok(routingDataSource.stats());
+    }
+
+    @Operation(summary = "写库基准测试", description = "对比foreach多行INSERT与JDBC批处理两种写库方式，测试数据写入单独新建的表，测完删除该表")
+    @PostMapping("/benchmark/write")
+    public ResponseEntity<Map<String, Object>> benchmarkWrite(@RequestParam(defaultValue = "20000") int rows) {
+        return ResponseEntity.ok(writeBenchmarkService.compare(rows));
+    }
+
+    @Operation(summary = "缓存统计", description = "按ID/单号查询的两级缓存命中、未命中、淘汰和失效次数")
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(tradeRecordService.cacheStats());
+    }
+
     @Operation(summary = "查询单条记录", description = "根据ID查询交易记录")
     @GetMapping("/{id}")
     public ResponseEntity<TradeRecord> getById(@PathVariable Long id) {
         return ResponseEntity.ok(tradeRecordService.getById(id));
     }
 
-    @Operation(summary = "新增记录", description = "新增交易记录")
+    @Operation(summary = "按单号查询", description = "根据交易单号查询交易记录")
+    @GetMapping("/no/{tradeNo}")
+    public ResponseEntity<TradeRecord> getByTradeNo(@PathVariable String tradeNo) {
+        TradeRecord record = tradeRecordService.getByTradeNo(tradeNo);
+        return record == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(record);
+    }
+
+    @Operation(summary = "按ID批量查询", description = "一次查询多条记录，先查两级缓存，未命中的分批并发查库；"
+            + "返回ID到记录的映射，不存在的ID不返回，个数超过上限时返回400")
+    @PostMapping("/lookup/ids")
+    public ResponseEntity<?> getByIds(@RequestBody List<Long> ids) {
+        try {
+            return ResponseEntity.ok(tradeRecordService.getByIds(ids));
+        } catch (InvalidRequestException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(summary = "按单号批量查询", description = "一次查询多个交易单号，先查两级缓存，未命中的分批并发查库；"
+            + "返回单号到记录的映射，不存在的单号不返回，个数超过上限时返回400")
+    @PostMapping("/lookup/trade-nos")
+    public ResponseEntity<?> getByTradeNos(@RequestBody List<String> tradeNos) {
+        try {
+            return ResponseEntity.ok(tradeRecordService.getByTradeNos(tradeNos));
+        } catch (InvalidRequestException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(summary = "新增记录", description = "新增交易记录；mode指定写入方式：DIRECT逐条提交，"
+            + "GROUP_COMMIT进入写缓冲合并提交并等待所在批次提交，ASYNC进入写缓冲后立即返回，默认取配置")
     @PostMapping
-    public ResponseEntity<String> add(@RequestBody TradeRecord record) {
-        tradeRecordService.insert(record);
-        return ResponseEntity.ok("添加成功");
+    public ResponseEntity<String> add(@RequestBody TradeRecord record,
+                                      @RequestParam(required = false) InsertMode mode) throws InterruptedException {
+        InsertMode insertMode = mode == null ? writeBehindConfig.getDefaultMode() : mode;
+        if (insertMode == InsertMode.DIRECT) {
+            tradeRecordService.insert(record);
+            return ResponseEntity.ok("添加成功");
+        }
+        CompletableFuture<Long> future;
+        try {
+            future = tradeRecordWriteBehind.submit(record);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+        // 变更事件在写线程发布，本请求收不到读主库标记，受理后在请求线程设置；
+        // ASYNC返回时记录可能尚未提交，期限内读主库也可能查不到
+        readYourWritesFilter.markWritten();
+        if (insertMode == InsertMode.ASYNC) {
+            return ResponseEntity.accepted().body("已受理");
+        }
+        try {
+            future.get(writeBehindConfig.getWaitTimeoutMillis(), TimeUnit.MILLISECONDS);
+            return ResponseEntity.ok("添加成功");
+        } catch (TimeoutException e) {
+            return ResponseEntity.accepted().body("已受理，等待提交超时");
+        } catch (ExecutionException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("添加失败：" + e.getCause().getMessage());
+        }
+    }
+
+    @Operation(summary = "写缓冲统计", description = "查询写缓冲的积压记录数、提交批次数和平均批大小")
+    @GetMapping("/write-behind/stats")
+    public ResponseEntity<Map<String, Object>> writeBehindStats() {
+        return ResponseEntity.ok(tradeRecordWriteBehind.stats());
     }
 
     @Operation(summary = "修改记录", description = "修改交易记录")
@@ -87,6 +380,49 @@ public class TradeRecordController {
         return ResponseEntity.ok("删除成功");
     }
 
+    @Operation(summary = "按条件删除", description = "后台按条件分段删除交易记录，每段一个短事务，"
+            + "pauseMillis为段间暂停；至少指定一个条件")
+    @PostMapping("/delete-by-query")
+    public ResponseEntity<?> deleteByQuery(@RequestBody BulkMutationRequest request) {
+        try {
+            if (!tradeBulkMutationService.deleteByQuery(request)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(tradeBulkMutationService.status());
+            }
+        } catch (InvalidRequestException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        return ResponseEntity.accepted().body(tradeBulkMutationService.status());
+    }
+
+    @Operation(summary = "按条件修改", description = "后台按条件分段修改交易记录，只修改changes中的非空字段，"
+            + "不能修改交易单号；至少指定一个条件")
+    @PostMapping("/update-by-query")
+    public ResponseEntity<?> updateByQuery(@RequestBody BulkMutationRequest request) {
+        try {
+            if (!tradeBulkMutationService.updateByQuery(request)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(tradeBulkMutationService.status());
+            }
+        } catch (InvalidRequestException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        return ResponseEntity.accepted().body(tradeBulkMutationService.status());
+    }
+
+    @Operation(summary = "批量删除/修改进度", description = "查询最近一次按条件删除或修改的状态和进度")
+    @GetMapping("/bulk-mutation")
+    public ResponseEntity<Map<String, Object>> bulkMutationStatus() {
+        return ResponseEntity.ok(tradeBulkMutationService.status());
+    }
+
+    @Operation(summary = "取消批量删除/修改", description = "在当前段提交后停止，已提交的段保留")
+    @PostMapping("/bulk-mutation/cancel")
+    public ResponseEntity<Map<String, Object>> cancelBulkMutation() {
+        if (!tradeBulkMutationService.cancel()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(tradeBulkMutationService.status());
+        }
+        return ResponseEntity.accepted().body(tradeBulkMutationService.status());
+    }
+
     @Operation(summary = "批量删除", description = "批量删除交易记录")
     @DeleteMapping("/batch")
     public ResponseEntity<String> batchDelete(@RequestBody List<Long> ids) {
@@ -0,0 +1,29 @@
+package org.start.app.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 秒杀订单实体类
+ * 抢购成功后写入Redis Stream，由订单队列的消费者批量落库
+ */
+@Data
+public class SeckillOrder {
+    /** 主键ID */
+    private Long id;
+
+    /** Stream消息ID，重复投递时据此去重 */
+    private String messageId;
+
+    /** 商品ID */
+    private String productId;
+
+    /** 用户ID */
+    private String userId;
+
+    /** 抢购成功时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date orderTime;
+}
@@ -0,0 +1,34 @@
+package org.start.app.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 交易汇总实体类
+ * 按日或按月、交易类型、收支方向、支付方式、状态汇总的笔数和金额
+ */
+@Data
+public class TradeRollup {
+    /** 统计日期，月汇总为当月第一天 */
+    private LocalDate statDate;
+
+    /** 交易类型 */
+    private String tradeType;
+
+    /** 收支方向 */
+    private String direction;
+
+    /** 支付方式 */
+    private String paymentMethod;
+
+    /** 交易状态 */
+    private String status;
+
+    /** 笔数 */
+    private long tradeCount;
+
+    /** 金额合计 */
+    private BigDecimal amountSum;
+}
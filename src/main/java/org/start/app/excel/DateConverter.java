@@ -1,17 +1,61 @@
 package org.start.app.excel;
 
+import com.alibaba.excel.context.AnalysisContext;
 import com.alibaba.excel.converters.Converter;
 import com.alibaba.excel.converters.ReadConverterContext;
 import com.alibaba.excel.converters.WriteConverterContext;
 import com.alibaba.excel.enums.CellDataTypeEnum;
+import com.alibaba.excel.metadata.data.ReadCellData;
 import com.alibaba.excel.metadata.data.WriteCellData;
+import com.alibaba.excel.util.DateUtils;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
 import java.util.Date;
+import java.util.TimeZone;
 
+/**
+ * 交易时间转换器
+ * 固定格式yyyy-MM-dd HH:mm:ss逐字符解析和格式化，不创建中间对象；
+ * 其他写法（如yyyy/M/d、缺少时分秒）交给共享的不可变DateTimeFormatter兜底；
+ * 数值类型的单元格按Excel日期序列号转换。
+ * 时区取类加载时的默认时区
+ */
 public class DateConverter implements Converter<Date> {
     private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    /** 固定格式的长度 */
+    private static final int DATE_FORMAT_LENGTH = DATE_FORMAT.length();
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    /** 快速解析失败的标记 */
+    private static final long NOT_PARSED = Long.MIN_VALUE;
+
+    private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+    private static final ZoneId ZONE_ID = TIME_ZONE.toZoneId();
+
+    /** 兜底解析格式：年月日分隔符为-或/，月日可为一位，时分秒和毫秒可省略 */
+    private static final DateTimeFormatter FALLBACK_PARSER = new DateTimeFormatterBuilder()
+            .appendPattern("[uuuu-M-d][uuuu/M/d]")
+            .optionalStart()
+            .appendLiteral(' ')
+            .appendPattern("H:m[:s]")
+            .optionalStart()
+            .appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true)
+            .optionalEnd()
+            .optionalEnd()
+            .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+            .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+            .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+            .toFormatter()
+            .withResolverStyle(ResolverStyle.STRICT);
+    /** 兜底格式化，用于快速路径不支持的年份 */
+    private static final DateTimeFormatter FALLBACK_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT)
+            .withZone(ZONE_ID);
 
     @Override
     public Class<?> supportJavaTypeKey() {
@@ -25,13 +69,165 @@ public class DateConverter implements Converter<Date> {
 
     @Override
     public Date convertToJavaData(ReadConverterContext<?> context) throws ParseException {
-        String dateStr = context.getReadCellData().getStringValue();
-        return new SimpleDateFormat(DATE_FORMAT).parse(dateStr);
+        ReadCellData<?> cellData = context.getReadCellData();
+        if (cellData.getType() == CellDataTypeEnum.NUMBER && cellData.getNumberValue() != null) {
+            return DateUtils.getJavaDate(cellData.getNumberValue().doubleValue(),
+                    use1904windowing(context.getAnalysisContext()));
+        }
+        return parse(cellData.getStringValue());
     }
 
     @Override
     public WriteCellData<?> convertToExcelData(WriteConverterContext<Date> context) {
-        Date date = context.getValue();
-        return new WriteCellData<>(new SimpleDateFormat(DATE_FORMAT).format(date));
+        return new WriteCellData<>(format(context.getValue()));
+    }
+
+    /**
+     * 解析日期字符串
+     * @param text 日期字符串
+     * @return 日期，空白字符串返回null
+     * @throws ParseException 无法识别的格式
+     */
+    public static Date parse(String text) throws ParseException {
+        if (text == null) {
+            return null;
+        }
+        long millis = parseFast(text);
+        if (millis != NOT_PARSED) {
+            return new Date(millis);
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        try {
+            LocalDateTime dateTime = LocalDateTime.parse(trimmed, FALLBACK_PARSER);
+            return Date.from(dateTime.atZone(ZONE_ID).toInstant());
+        } catch (DateTimeParseException e) {
+            ParseException parseException = new ParseException("无法解析的日期: " + text, e.getErrorIndex());
+            parseException.initCause(e);
+            throw parseException;
+        }
+    }
+
+    /**
+     * 按yyyy-MM-dd HH:mm:ss格式化日期
+     * @param date 日期
+     * @return 日期字符串，date为null时返回null
+     */
+    public static String format(Date date) {
+        if (date == null) {
+            return null;
+        }
+        long millis = date.getTime();
+        long local = millis + TIME_ZONE.getOffset(millis);
+        long epochDay = Math.floorDiv(local, MILLIS_PER_DAY);
+        int secondOfDay = (int) (Math.floorMod(local, MILLIS_PER_DAY) / 1000);
+
+        // 由纪元日推算公历年月日
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 1 || year > 9999) {
+            return FALLBACK_FORMATTER.format(date.toInstant());
+        }
+
+        char[] chars = new char[DATE_FORMAT_LENGTH];
+        put4(chars, 0, (int) year);
+        chars[4] = '-';
+        put2(chars, 5, month);
+        chars[7] = '-';
+        put2(chars, 8, day);
+        chars[10] = ' ';
+        put2(chars, 11, secondOfDay / 3600);
+        chars[13] = ':';
+        put2(chars, 14, secondOfDay / 60 % 60);
+        chars[16] = ':';
+        put2(chars, 17, secondOfDay % 60);
+        return new String(chars);
+    }
+
+    /**
+     * 逐字符解析yyyy-MM-dd HH:mm:ss
+     * @return 毫秒时间戳，格式或取值不符时返回NOT_PARSED
+     */
+    static long parseFast(CharSequence text) {
+        if (text.length() != DATE_FORMAT_LENGTH
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != ' '
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return NOT_PARSED;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return NOT_PARSED;
+        }
+
+        // 由公历年月日推算纪元日
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long epochDay = era * 146097 + dayOfEra - 719468;
+
+        long local = epochDay * MILLIS_PER_DAY + (hour * 3600L + minute * 60L + second) * 1000L;
+        // 本地时间换算为UTC：先按标准时偏移估算，跨夏令时切换时再用实际偏移修正一次
+        int offset = TIME_ZONE.getOffset(local - TIME_ZONE.getRawOffset());
+        long utc = local - offset;
+        int actualOffset = TIME_ZONE.getOffset(utc);
+        return actualOffset == offset ? utc : local - actualOffset;
+    }
+
+    /**
+     * 读取定长十进制数字，含非数字字符时返回-1
+     */
+    private static int digits(CharSequence text, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    private static void put2(char[] chars, int index, int value) {
+        chars[index] = (char) ('0' + value / 10);
+        chars[index + 1] = (char) ('0' + value % 10);
+    }
+
+    private static void put4(char[] chars, int index, int value) {
+        put2(chars, index, value / 100);
+        put2(chars, index + 2, value % 100);
+    }
+
+    private static boolean use1904windowing(AnalysisContext context) {
+        if (context == null || context.readWorkbookHolder() == null
+                || context.readWorkbookHolder().globalConfiguration() == null) {
+            return false;
+        }
+        return Boolean.TRUE.equals(context.readWorkbookHolder().globalConfiguration().getUse1904windowing());
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package org.start.app.excel;
+
+import java.util.List;
+
+/**
+ * 按REJECT策略导入时发现重复交易单号
+ * 整体预检发现的重复不会写入任何记录；预检之后才出现的重复（并发导入）在批次写入时发现，
+ * 此时之前的批次已经提交，已提交的行数记入committedRows，可用续传或SKIP策略补齐剩余部分
+ */
+public class DuplicateTradeNoException extends RuntimeException {
+    private final List<String> tradeNos;
+    /** 失败前已提交的记录数 */
+    private final long committedRows;
+
+    public DuplicateTradeNoException(List<String> tradeNos) {
+        this(tradeNos, 0);
+    }
+
+    public DuplicateTradeNoException(List<String> tradeNos, long committedRows) {
+        super("存在重复的交易单号: " + tradeNos.subList(0, Math.min(10, tradeNos.size()))
+                + (tradeNos.size() > 10 ? " 等 " + tradeNos.size() + " 个" : "")
+                + (committedRows > 0 ? "，此前已提交 " + committedRows + " 条记录" : ""));
+        this.tradeNos = tradeNos;
+        this.committedRows = committedRows;
+    }
+
+    public List<String> getTradeNos() {
+        return tradeNos;
+    }
+
+    public long getCommittedRows() {
+        return committedRows;
+    }
+}
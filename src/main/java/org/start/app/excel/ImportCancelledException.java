@@ -0,0 +1,10 @@
+package org.start.app.excel;
+
+/**
+ * 导入被取消时抛出，用于中断EasyExcel的解析过程
+ */
+public class ImportCancelledException extends RuntimeException {
+    public ImportCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,167 @@
+package org.start.app.excel;
+
+import org.start.app.util.RedisUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 导入检查点
+ * 以文件哈希为Key记录已提交的数据行（从0开始的数据行序号，不含表头）。
+ * 写入线程并行提交，提交顺序与行顺序不一致，因此除连续提交的水位线外，
+ * 还记录水位线之后零散提交的区间，续传时这些行同样跳过，不会重复插入
+ */
+public class ImportCheckpoint {
+    /** 检查点Key前缀 */
+    private static final String KEY_PREFIX = "import:checkpoint:";
+
+    private final RedisUtil redisUtil;
+    private final String key;
+    private final long ttlHours;
+
+    /** 加载时的水位线快照，用于判断本次需要跳过的行 */
+    private final long resumeWatermark;
+    /** 加载时水位线之后已提交区间的快照，起始行 -> 结束行（不含） */
+    private final TreeMap<Long, Long> resumeRanges;
+
+    /** 当前水位线，[0, watermark) 的行均已提交 */
+    private long watermark;
+    /** 水位线之后已提交的区间，起始行 -> 结束行（不含） */
+    private final TreeMap<Long, Long> ranges;
+
+    private ImportCheckpoint(RedisUtil redisUtil, String fileHash, long ttlHours, long watermark,
+                             TreeMap<Long, Long> ranges) {
+        this.redisUtil = redisUtil;
+        this.key = KEY_PREFIX + fileHash;
+        this.ttlHours = ttlHours;
+        this.resumeWatermark = watermark;
+        this.resumeRanges = new TreeMap<>(ranges);
+        this.watermark = watermark;
+        this.ranges = ranges;
+    }
+
+    /**
+     * 加载文件对应的检查点
+     * @param redisUtil Redis工具
+     * @param fileHash 文件SHA-256
+     * @param resume 是否从已有检查点续传，为false时丢弃已有检查点
+     * @param ttlHours 检查点保留时间（小时）
+     * @return 检查点
+     */
+    public static ImportCheckpoint load(RedisUtil redisUtil, String fileHash, boolean resume, long ttlHours) {
+        long watermark = 0;
+        TreeMap<Long, Long> ranges = new TreeMap<>();
+        if (resume) {
+            Map<Object, Object> fields = redisUtil.hGetAll(KEY_PREFIX + fileHash);
+            if (fields != null && !fields.isEmpty()) {
+                Object storedWatermark = fields.get("watermark");
+                watermark = storedWatermark == null ? 0 : Long.parseLong(storedWatermark.toString());
+                ranges = parseRanges(fields.get("ranges"));
+            }
+        } else {
+            redisUtil.delete(KEY_PREFIX + fileHash);
+        }
+        return new ImportCheckpoint(redisUtil, fileHash, ttlHours, watermark, ranges);
+    }
+
+    /**
+     * 该行在上次导入中是否已提交
+     * 只读取加载时的快照，本次提交的行不会再次出现，解析线程无需加锁
+     * @param row 数据行序号
+     */
+    public boolean isCommitted(long row) {
+        if (row < resumeWatermark) {
+            return true;
+        }
+        Map.Entry<Long, Long> range = resumeRanges.floorEntry(row);
+        return range != null && row < range.getValue();
+    }
+
+    /**
+     * 上次导入已提交的行数
+     */
+    public long getResumeRows() {
+        long rows = resumeWatermark;
+        for (Map.Entry<Long, Long> range : resumeRanges.entrySet()) {
+            rows += range.getValue() - range.getKey();
+        }
+        return rows;
+    }
+
+    /**
+     * 记录一个已提交的连续区间并持久化
+     * @param firstRow 起始行
+     * @param rows 行数
+     */
+    public synchronized void markCommitted(long firstRow, int rows) {
+        long start = firstRow;
+        long end = firstRow + rows;
+        // 与前后相邻或重叠的区间合并
+        Map.Entry<Long, Long> lower = ranges.floorEntry(start);
+        if (lower != null && lower.getValue() >= start) {
+            start = lower.getKey();
+            end = Math.max(end, lower.getValue());
+            ranges.remove(lower.getKey());
+        }
+        Map.Entry<Long, Long> higher = ranges.ceilingEntry(start);
+        while (higher != null && higher.getKey() <= end) {
+            end = Math.max(end, higher.getValue());
+            ranges.remove(higher.getKey());
+            higher = ranges.ceilingEntry(start);
+        }
+        if (start <= watermark) {
+            watermark = Math.max(watermark, end);
+        } else {
+            ranges.put(start, end);
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        fields.put("watermark", String.valueOf(watermark));
+        fields.put("ranges", formatRanges(ranges));
+        fields.put("updateTime", String.valueOf(System.currentTimeMillis()));
+        redisUtil.hSetAll(key, fields);
+        redisUtil.expire(key, ttlHours, TimeUnit.HOURS);
+    }
+
+    /**
+     * 当前水位线
+     */
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * 导入完成后删除检查点
+     */
+    public void complete() {
+        redisUtil.delete(key);
+    }
+
+    private static TreeMap<Long, Long> parseRanges(Object value) {
+        if (value == null || value.toString().isEmpty()) {
+            return new TreeMap<>();
+        }
+        TreeMap<Long, Long> ranges = new TreeMap<>();
+        for (String range : value.toString().split(",")) {
+            int dash = range.indexOf('-');
+            ranges.put(Long.parseLong(range.substring(0, dash)), Long.parseLong(range.substring(dash + 1)));
+        }
+        return ranges;
+    }
+
+    private static String formatRanges(Map<Long, Long> ranges) {
+        if (ranges.isEmpty()) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(range.getKey()).append('-').append(range.getValue());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package org.start.app.excel;
+
+/**
+ * 导入进度监视器
+ * 由导入监听器在每个批次提交后回调，用于上报进度和检查取消请求；导入结束时无论成败再回调一次最终进度
+ */
+public interface ImportMonitor {
+    /** 不上报进度、不可取消的监视器 */
+    ImportMonitor NONE = new ImportMonitor() {
+        @Override
+        public void onProgress(long rowsParsed, long rowsSkipped, long rowsWritten, long rowsDuplicate,
+                               Integer totalRows) {
+        }
+
+        @Override
+        public void onFinish(long rowsParsed, long rowsSkipped, long rowsWritten, long rowsDuplicate,
+                             boolean completed) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * 进度回调
+     * @param rowsParsed 已解析的记录数
+     * @param rowsSkipped 续传时因已提交而跳过的记录数
+     * @param rowsWritten 本次写入数据库的记录数
+     * @param rowsDuplicate 因单号重复而未写入的记录数
+     * @param totalRows 预估总行数（含表头），未知时为null
+     */
+    void onProgress(long rowsParsed, long rowsSkipped, long rowsWritten, long rowsDuplicate, Integer totalRows);
+
+    /**
+     * 导入结束时的最终进度，实现不应节流
+     * @param rowsParsed 已解析的记录数
+     * @param rowsSkipped 续传时因已提交而跳过的记录数
+     * @param rowsWritten 本次写入数据库的记录数
+     * @param rowsDuplicate 因单号重复而未写入的记录数
+     * @param completed 是否读完整个文件，读完时已解析的记录数即总行数
+     */
+    void onFinish(long rowsParsed, long rowsSkipped, long rowsWritten, long rowsDuplicate, boolean completed);
+
+    /**
+     * 是否已请求取消
+     * @return 已请求取消返回true
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,60 @@
+package org.start.app.excel;
+
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.read.listener.ReadListener;
+import org.start.app.entity.TradeRecord;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * REJECT策略的预检监听器
+ * 写库前先把文件读一遍，收集全部交易单号并找出文件内重复的单号；
+ * 续传时跳过检查点中已提交的行，这些行的单号已在库中，不算重复。
+ * 单号全部驻留内存，按每个单号几十字节估算，百万行约占用几十MB
+ */
+public class TradeNoPrescanListener implements ReadListener<TradeRecord> {
+    /** 导入检查点，为null时不跳过任何行 */
+    private final ImportCheckpoint checkpoint;
+    /** 文件中出现的单号 */
+    private final Set<String> tradeNos = new LinkedHashSet<>();
+    /** 文件内重复的单号 */
+    private final List<String> duplicates = new ArrayList<>();
+    /** 下一条数据行的序号 */
+    private long rowIndex;
+
+    public TradeNoPrescanListener(ImportCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public void invoke(TradeRecord data, AnalysisContext context) {
+        long row = rowIndex++;
+        if (checkpoint != null && checkpoint.isCommitted(row)) {
+            return;
+        }
+        if (!tradeNos.add(data.getTradeNo())) {
+            duplicates.add(data.getTradeNo());
+        }
+    }
+
+    @Override
+    public void doAfterAllAnalysed(AnalysisContext context) {
+    }
+
+    /**
+     * 文件中待写入的单号
+     */
+    public Set<String> getTradeNos() {
+        return tradeNos;
+    }
+
+    /**
+     * 文件内重复的单号
+     */
+    public List<String> getDuplicates() {
+        return duplicates;
+    }
+}
@@ -0,0 +1,113 @@
+package org.start.app.excel;
+
+import org.start.app.entity.TradeRecord;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 交易记录CSV写入器
+ * 逐行写入输出流，列与导入模板一致，导出的文件可以直接再导入
+ */
+public class TradeRecordCsvWriter implements Closeable, Flushable {
+    private static final String[] HEADERS = {
+            "交易时间", "交易类型", "交易对方", "商品", "收/支", "金额(元)",
+            "支付方式", "当前状态", "交易单号", "商户单号", "备注"
+    };
+    /** UTF-8 BOM，Excel打开时据此识别编码 */
+    private static final char BOM = '\uFEFF';
+
+    private final Writer writer;
+
+    /**
+     * 构造方法，写入BOM和表头
+     * @param outputStream 输出流，关闭写入器时一并关闭
+     * @throws IOException IO异常
+     */
+    public TradeRecordCsvWriter(OutputStream outputStream) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(BOM);
+        for (int i = 0; i < HEADERS.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(HEADERS[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * 写入一条记录
+     * @param record 交易记录
+     * @throws IOException IO异常
+     */
+    public void write(TradeRecord record) throws IOException {
+        writeField(DateConverter.format(record.getTradeTime()));
+        writer.write(',');
+        writeField(record.getTradeType());
+        writer.write(',');
+        writeField(record.getCounterparty());
+        writer.write(',');
+        writeField(record.getProduct());
+        writer.write(',');
+        writeField(record.getDirection());
+        writer.write(',');
+        BigDecimal amount = record.getAmount();
+        writeField(amount == null ? null : amount.toPlainString());
+        writer.write(',');
+        writeField(record.getPaymentMethod());
+        writer.write(',');
+        writeField(record.getStatus());
+        writer.write(',');
+        writeField(record.getTradeNo());
+        writer.write(',');
+        writeField(record.getMerchantOrderNo());
+        writer.write(',');
+        writeField(record.getRemarks());
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * 按RFC 4180写入字段，含逗号、引号或换行时加引号并转义
+     */
+    private void writeField(String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
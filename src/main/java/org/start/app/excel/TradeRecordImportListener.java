@@ -5,31 +5,49 @@ import com.alibaba.excel.read.listener.ReadListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.start.app.entity.TradeRecord;
-import org.start.app.mapper.TradeRecordMapper;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Excel导入监听器
- * 用于处理Excel文件的读取和数据保存
+ * 解析出的数据按批交给导入流水线，由写入线程异步保存；
+ * 续传时跳过检查点中已提交的行
  */
 public class TradeRecordImportListener implements ReadListener<TradeRecord> {
     private static final Logger logger = LoggerFactory.getLogger(TradeRecordImportListener.class);
-    /** 每批处理的数据量 */
-    private static final int BATCH_SIZE = 1000;
 
+    /** 每批处理的数据量 */
+    private final int batchSize;
+    /** 导入流水线 */
+    private final TradeRecordImportPipeline pipeline;
+    /** 进度监视器 */
+    private final ImportMonitor monitor;
+    /** 导入检查点，为null时不跳过任何行 */
+    private final ImportCheckpoint checkpoint;
     /** 暂存的数据列表 */
-    private final List<TradeRecord> batch = new ArrayList<>(BATCH_SIZE);
-    /** 数据访问层对象 */
-    private final TradeRecordMapper tradeRecordMapper;
+    private List<TradeRecord> batch;
+    /** 暂存批次第一条记录的数据行序号 */
+    private long batchFirstRow;
+    /** 下一条数据行的序号 */
+    private long rowIndex;
+    /** 因已提交而跳过的行数 */
+    private long rowsSkipped;
 
     /**
      * 构造方法
-     * @param tradeRecordMapper Mapper对象
+     * @param pipeline 导入流水线
+     * @param batchSize 每批处理的数据量
+     * @param monitor 进度监视器
+     * @param checkpoint 导入检查点，可为null
      */
-    public TradeRecordImportListener(TradeRecordMapper tradeRecordMapper) {
-        this.tradeRecordMapper = tradeRecordMapper;
+    public TradeRecordImportListener(TradeRecordImportPipeline pipeline, int batchSize, ImportMonitor monitor,
+                                     ImportCheckpoint checkpoint) {
+        this.pipeline = pipeline;
+        this.monitor = monitor;
+        this.checkpoint = checkpoint;
+        this.batchSize = Math.max(1, batchSize);
+        this.batch = new ArrayList<>(this.batchSize);
     }
 
     /**
@@ -37,9 +55,21 @@ public class TradeRecordImportListener implements ReadListener<TradeRecord> {
      */
     @Override
     public void invoke(TradeRecord data, AnalysisContext context) {
+        long row = rowIndex++;
+        if (checkpoint != null && checkpoint.isCommitted(row)) {
+            rowsSkipped++;
+            // 批次内的行必须连续，遇到已提交的行先提交暂存的批次
+            if (!batch.isEmpty()) {
+                submitBatch(context);
+            }
+            return;
+        }
+        if (batch.isEmpty()) {
+            batchFirstRow = row;
+        }
         batch.add(data);
-        if (batch.size() >= BATCH_SIZE) {
-            saveData();
+        if (batch.size() >= batchSize) {
+            submitBatch(context);
         }
     }
 
@@ -49,17 +79,35 @@ public class TradeRecordImportListener implements ReadListener<TradeRecord> {
     @Override
     public void doAfterAllAnalysed(AnalysisContext context) {
         if (!batch.isEmpty()) {
-            saveData();
+            submitBatch(context);
         }
-        logger.info("Excel导入完成");
+        logger.info("Excel解析完成，共 {} 条记录，跳过已提交的 {} 条", rowIndex, rowsSkipped);
     }
 
     /**
-     * 保存数据到数据库
+     * 已解析的行数
      */
-    private void saveData() {
-        logger.info("正在保存 {} 条记录", batch.size());
-        tradeRecordMapper.batchInsert(batch);
-        batch.clear();
+    public long getRowsParsed() {
+        return rowIndex;
+    }
+
+    /**
+     * 因已提交而跳过的行数
+     */
+    public long getRowsSkipped() {
+        return rowsSkipped;
+    }
+
+    /**
+     * 把当前批次交给流水线，批次交出后不再复用
+     */
+    private void submitBatch(AnalysisContext context) {
+        if (monitor.isCancelled()) {
+            throw new ImportCancelledException("导入已取消");
+        }
+        pipeline.submit(batchFirstRow, batch);
+        batch = new ArrayList<>(batchSize);
+        monitor.onProgress(rowIndex, rowsSkipped, pipeline.getRowsWritten(), pipeline.getRowsDuplicate(),
+                context.readSheetHolder().getApproximateTotalRowNumber());
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,239 @@
+package org.start.app.excel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.start.app.entity.TradeRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Excel导入流水线
+ * 解析线程把批次放入有界队列，由多个写入线程并行落库；
+ * 队列满时解析线程阻塞等待（背压），导入耗时取解析与写入中较慢的一方。
+ * 每个批次单独提交，提交后记入检查点，失败的导入可以从检查点续传
+ */
+public class TradeRecordImportPipeline implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TradeRecordImportPipeline.class);
+    /** 解析线程等待队列空位时检查写入异常的间隔（毫秒） */
+    private static final long OFFER_TIMEOUT = 500;
+    /** 中止时等待写入线程结束的时间（秒） */
+    private static final long CLOSE_TIMEOUT = 30;
+    /** 写入线程结束标记 */
+    private static final Chunk POISON = new Chunk(-1, new ArrayList<>(0));
+    /** 流水线序号，用于线程命名 */
+    private static final AtomicInteger PIPELINE_SEQ = new AtomicInteger();
+
+    /** 待写入的批次队列 */
+    private final BlockingQueue<Chunk> queue;
+    /** 写入线程池 */
+    private final ExecutorService writers;
+    /** 写入线程数 */
+    private final int writerThreads;
+    /** 批次写入操作 */
+    private final BatchWriter batchWriter;
+    /** 导入检查点，为null时不记录 */
+    private final ImportCheckpoint checkpoint;
+    /** 第一个写入异常 */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    /** 已提交到队列的记录数 */
+    private final AtomicLong rowsSubmitted = new AtomicLong();
+    /** 已写入数据库的记录数 */
+    private final AtomicLong rowsWritten = new AtomicLong();
+    /** 因单号重复而未写入的记录数 */
+    private final AtomicLong rowsDuplicate = new AtomicLong();
+    /** 是否已正常结束 */
+    private volatile boolean finished;
+
+    /**
+     * 构造方法，启动写入线程
+     * @param writerThreads 写入线程数
+     * @param queueCapacity 队列容量（批次数）
+     * @param batchWriter 批次写入操作
+     * @param checkpoint 导入检查点，可为null
+     */
+    public TradeRecordImportPipeline(int writerThreads, int queueCapacity, BatchWriter batchWriter,
+                                     ImportCheckpoint checkpoint) {
+        this.writerThreads = Math.max(1, writerThreads);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchWriter = batchWriter;
+        this.checkpoint = checkpoint;
+
+        int pipelineId = PIPELINE_SEQ.incrementAndGet();
+        AtomicInteger threadSeq = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(this.writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "import-writer-" + pipelineId + "-" + threadSeq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < this.writerThreads; i++) {
+            writers.execute(this::drain);
+        }
+    }
+
+    /**
+     * 提交一个批次，队列已满时阻塞直到有空位或写入线程出错
+     * @param firstRow 批次第一条记录的数据行序号，批次内的行必须连续
+     * @param batch 记录批次，提交后调用方不得再修改
+     */
+    public void submit(long firstRow, List<TradeRecord> batch) {
+        checkFailure();
+        Chunk chunk = new Chunk(firstRow, batch);
+        try {
+            while (!queue.offer(chunk, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+            rowsSubmitted.addAndGet(batch.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("导入被中断", e);
+        }
+    }
+
+    /**
+     * 等待所有批次写入完成，存在写入异常时抛出
+     */
+    public void finish() {
+        try {
+            for (int i = 0; i < writerThreads; i++) {
+                queue.put(POISON);
+            }
+            writers.shutdown();
+            while (!writers.awaitTermination(OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.debug("等待写入线程完成，已写入 {}/{} 条", rowsWritten.get(), rowsSubmitted.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(e);
+        }
+        checkFailure();
+        finished = true;
+    }
+
+    /**
+     * 中止流水线，丢弃未写入的批次
+     * @param cause 中止原因
+     */
+    public void abort(Throwable cause) {
+        failure.compareAndSet(null, cause);
+        queue.clear();
+        writers.shutdownNow();
+    }
+
+    /**
+     * 未正常结束时中止流水线，并等待进行中的写入结束，保证返回后不再有写库操作
+     */
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        abort(new IllegalStateException("导入未正常结束"));
+        try {
+            if (!writers.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                logger.warn("写入线程未在 {} 秒内结束", CLOSE_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 已提交到队列的记录数
+     */
+    public long getRowsSubmitted() {
+        return rowsSubmitted.get();
+    }
+
+    /**
+     * 已写入数据库的记录数
+     */
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    /**
+     * 因单号重复而未写入的记录数
+     */
+    public long getRowsDuplicate() {
+        return rowsDuplicate.get();
+    }
+
+    /**
+     * 写入线程主循环，出错后继续消费队列但不再写库，避免解析线程在满队列上永久阻塞
+     */
+    private void drain() {
+        try {
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk == POISON) {
+                    return;
+                }
+                if (failure.get() != null) {
+                    continue;
+                }
+                try {
+                    long start = System.currentTimeMillis();
+                    int written = batchWriter.write(chunk.records);
+                    rowsWritten.addAndGet(written);
+                    rowsDuplicate.addAndGet(chunk.records.size() - written);
+                    if (checkpoint != null) {
+                        checkpoint.markCommitted(chunk.firstRow, chunk.records.size());
+                    }
+                    logger.info("已保存第 {} 行起的 {} 条记录，耗时 {}ms", chunk.firstRow, chunk.records.size(),
+                            System.currentTimeMillis() - start);
+                } catch (Throwable e) {
+                    logger.error("批量写入失败", e);
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() {
+        Throwable cause = failure.get();
+        if (cause == null) {
+            return;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new RuntimeException("导入失败: " + cause.getMessage(), cause);
+    }
+
+    /**
+     * 队列中的批次，记录起始行用于检查点
+     */
+    private static class Chunk {
+        private final long firstRow;
+        private final List<TradeRecord> records;
+
+        Chunk(long firstRow, List<TradeRecord> records) {
+            this.firstRow = firstRow;
+            this.records = records;
+        }
+    }
+
+    /**
+     * 批次写入操作接口
+     * 实现需保证一个批次在一个事务内提交
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        /**
+         * @param batch 记录批次
+         * @return 实际写入的记录数，去重跳过的记录不计入
+         */
+        int write(List<TradeRecord> batch);
+    }
+}
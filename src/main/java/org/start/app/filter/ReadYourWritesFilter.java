@@ -0,0 +1,132 @@
+package org.start.app.filter;
+
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.start.app.model.TradeRecordChangeEvent;
+import org.start.app.util.ReadWriteContext;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.UUID;
+
+/**
+ * 读写分离下读取自己的写入
+ * 请求中写入交易记录并提交后，本请求随后的查询读主库，并在响应中设置Cookie；
+ * 调用方在期限内带回Cookie的请求也读主库，避免从库复制延迟导致刚写入的记录查不到。
+ * Cookie的值为期限和HMAC签名，签名不符的Cookie忽略；期限最多取当前时间加一个窗口，
+ * 伪造或篡改的Cookie不能让请求长期读主库
+ */
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    /** 读主库期限（毫秒时间戳）的Cookie名 */
+    private static final String COOKIE_NAME = "read_primary_until";
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final HmacUtils hmac;
+
+    public ReadYourWritesFilter(@Value("${trade.read-write.enabled:false}") boolean enabled,
+                                @Value("${trade.read-write.read-your-writes-millis:3000}") long windowMillis,
+                                @Value("${trade.read-write.cookie-secret:}") String cookieSecret) {
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        String secret = cookieSecret == null || cookieSecret.isEmpty() ? UUID.randomUUID().toString() : cookieSecret;
+        this.hmac = new HmacUtils(HmacAlgorithms.HMAC_SHA_256, secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE_NAME.equals(cookie.getName())) {
+                    long until = verify(cookie.getValue());
+                    if (until > 0) {
+                        ReadWriteContext.stickToPrimaryUntil(Math.min(until, System.currentTimeMillis() + windowMillis));
+                    }
+                }
+            }
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadWriteContext.clear();
+        }
+    }
+
+    /**
+     * 写入提交后标记本线程读主库，在请求线程中时同时设置Cookie
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(TradeRecordChangeEvent event) {
+        markWritten();
+    }
+
+    /**
+     * 标记当前请求写入过：本线程读主库，并在响应中设置Cookie。
+     * 写入在其他线程提交时（如写缓冲的写线程）变更事件不在请求线程发布，由请求线程在受理写入后调用
+     */
+    public void markWritten() {
+        if (!enabled) {
+            return;
+        }
+        long until = System.currentTimeMillis() + windowMillis;
+        ReadWriteContext.stickToPrimaryUntil(until);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+            if (response != null && !response.isCommitted()) {
+                Cookie cookie = new Cookie(COOKIE_NAME, sign(until));
+                cookie.setPath("/");
+                cookie.setMaxAge((int) Math.max(1, (windowMillis + 999) / 1000));
+                cookie.setHttpOnly(true);
+                response.addCookie(cookie);
+            }
+        }
+    }
+
+    private String sign(long until) {
+        String value = String.valueOf(until);
+        return value + "." + hmac.hmacHex(value);
+    }
+
+    /**
+     * 校验Cookie签名
+     * @return 期限（毫秒时间戳），格式或签名无效时返回0
+     */
+    private long verify(String cookieValue) {
+        int dot = cookieValue == null ? -1 : cookieValue.indexOf('.');
+        if (dot <= 0) {
+            return 0;
+        }
+        String value = cookieValue.substring(0, dot);
+        byte[] expected = hmac.hmacHex(value).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = cookieValue.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -13,16 +13,42 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Component
 public class RequestLogFilter extends OncePerRequestFilter {
     private static final Logger logger = LoggerFactory.getLogger(RequestLogFilter.class);
+    /** 流式输出的接口，响应体不缓存，否则整个文件会留在内存里 */
+    private static final Set<String> STREAMING_PATHS = new HashSet<>(Arrays.asList("/trade/export", "/trade/stream"));
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
+        if (STREAMING_PATHS.contains(request.getServletPath())) {
+            long startTime = System.currentTimeMillis();
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                logger.info("\nREQUEST LOG ====================================\n" +
+                        "URI         : {}\n" +
+                        "Method      : {}\n" +
+                        "Parameters  : {}\n" +
+                        "Response    : [stream] status {}\n" +
+                        "Duration    : {}ms\n" +
+                        "===============================================",
+                        request.getRequestURI(),
+                        request.getMethod(),
+                        request.getParameterMap(),
+                        response.getStatus(),
+                        System.currentTimeMillis() - startTime
+                );
+            }
+            return;
+        }
         ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request);
         ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
         
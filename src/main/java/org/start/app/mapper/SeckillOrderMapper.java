@@ -0,0 +1,19 @@
+package org.start.app.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.start.app.entity.SeckillOrder;
+
+import java.util.List;
+
+/**
+ * 秒杀订单数据访问层
+ */
+@Mapper
+public interface SeckillOrderMapper {
+    /**
+     * 批量新增订单，消息ID已存在的订单忽略
+     * @param orders 订单列表
+     * @return 新增行数
+     */
+    int batchInsertIgnore(List<SeckillOrder> orders);
+}
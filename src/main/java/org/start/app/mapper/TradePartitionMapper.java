@@ -0,0 +1,70 @@
+package org.start.app.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.start.app.entity.TradeRecord;
+import org.start.app.model.TradePartition;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 交易记录表分区维护
+ * 分区名和上界由服务按月生成后拼接进DDL，不接受外部输入
+ */
+@Mapper
+public interface TradePartitionMapper {
+    /**
+     * 查询交易记录表的分区，按分区顺序
+     * @return 分区列表；未分区的表返回一行，分区名为null
+     */
+    List<TradePartition> selectPartitions();
+
+    /**
+     * 从p_max中拆分出新的按月分区
+     * @param partitions 新分区，按月份升序，description为上界日期（yyyy-MM-dd）
+     * @return 影响行数
+     */
+    int splitMaxPartition(@Param("partitions") List<TradePartition> partitions);
+
+    /**
+     * 删除分区及其中的全部记录
+     * @param names 分区名
+     * @return 影响行数
+     */
+    int dropPartitions(@Param("names") List<String> names);
+
+    /**
+     * p_max中最早的交易时间，用于确定第一个按月分区
+     * @return 交易时间，没有记录时返回null
+     */
+    Date selectMinTradeTimeInMax();
+
+    /**
+     * 把分区中的记录整体交换到空的中转表trade_record_expired，分区变为空
+     * @param partition 分区名
+     * @return 影响行数
+     */
+    int exchangeToExpired(@Param("partition") String partition);
+
+    /**
+     * 按主键顺序读取中转表中ID之后的记录，只填充ID和交易单号
+     * @param afterId 起始ID（不含）
+     * @param limit 最大行数
+     * @return 交易记录列表
+     */
+    List<TradeRecord> selectExpiredKeys(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 删除交易单号登记，已被交易记录表中的记录重新登记的单号保留
+     * @param tradeNos 交易单号
+     * @return 删除的行数
+     */
+    int deleteRegistry(@Param("tradeNos") List<String> tradeNos);
+
+    /**
+     * 清空中转表
+     * @return 影响行数
+     */
+    int truncateExpired();
+}
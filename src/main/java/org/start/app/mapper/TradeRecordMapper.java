@@ -2,10 +2,13 @@ package org.start.app.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
 import org.start.app.entity.TradeRecord;
 import org.start.app.model.TradeRecordQuery;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 交易记录数据访问层接口
@@ -19,6 +22,34 @@ public interface TradeRecordMapper {
      */
     int batchInsert(List<TradeRecord> records);
     
+    /**
+     * 按trade_record的结构创建写库基准测试用的表
+     * @param table 表名，由服务生成
+     */
+    void createBenchmarkTable(@Param("table") String table);
+
+    /**
+     * 删除写库基准测试用的表
+     * @param table 表名
+     */
+    void dropBenchmarkTable(@Param("table") String table);
+
+    /**
+     * 向指定表插入单条记录，不回填ID，用于写库基准测试
+     * @param table 表名
+     * @param record 交易记录
+     * @return 插入的记录数
+     */
+    int insertInto(@Param("table") String table, @Param("record") TradeRecord record);
+
+    /**
+     * 向指定表批量插入记录，不回填ID，用于写库基准测试
+     * @param table 表名
+     * @param records 交易记录列表
+     * @return 插入的记录数
+     */
+    int batchInsertInto(@Param("table") String table, @Param("records") List<TradeRecord> records);
+
     /**
      * 插入单条交易记录
      * @param record 交易记录
@@ -26,6 +57,22 @@ public interface TradeRecordMapper {
      */
     int insert(TradeRecord record);
     
+    /**
+     * 按ID覆盖已存在的交易记录，交易单号不变；交易时间变化时记录移到对应的分区
+     * @param record 交易记录，需填充已存在记录的ID
+     * @return 影响行数，记录已被删除时为0
+     */
+    int overwrite(TradeRecord record);
+
+    /**
+     * 按ID批量覆盖已存在的交易记录，交易单号不变
+     * 分区表中交易单号只在同一交易时间内唯一，不能用INSERT ... ON DUPLICATE KEY UPDATE按单号覆盖，
+     * 交易时间变化时会插入第二行
+     * @param records 交易记录列表，需填充已存在记录的ID
+     * @return 影响行数
+     */
+    int batchOverwrite(List<TradeRecord> records);
+
     /**
      * 根据ID删除交易记录
      * @param id 记录ID
@@ -40,6 +87,14 @@ public interface TradeRecordMapper {
      */
     int deleteByIds(@Param("ids") List<Long> ids);
     
+    /**
+     * 按ID批量修改，只修改changes中非空的字段，不修改交易单号
+     * @param ids ID列表
+     * @param changes 修改的字段值
+     * @return 修改的记录数
+     */
+    int updateByIds(@Param("ids") List<Long> ids, @Param("changes") TradeRecord changes);
+
     /**
      * 更新交易记录
      * @param record 交易记录
@@ -61,6 +116,40 @@ public interface TradeRecordMapper {
      */
     TradeRecord getByTradeNo(String tradeNo);
     
+    /**
+     * 按ID查询并锁定交易记录，须在事务内调用
+     * @param ids ID列表
+     * @return 交易记录列表
+     */
+    List<TradeRecord> selectByIdsForUpdate(@Param("ids") List<Long> ids);
+
+    /**
+     * 按条件和主键顺序读取scanAfterId之后的scanLimit个ID，不加锁
+     * @param query 查询条件和分段参数
+     * @return 升序的ID列表
+     */
+    List<Long> selectIdsByQuery(TradeRecordQuery query);
+
+    /**
+     * 在scanIds中按条件重新筛选并锁定记录，须在事务内调用
+     * @param query 查询条件和本段ID
+     * @return 仍符合条件的记录
+     */
+    List<TradeRecord> selectByQueryForUpdate(TradeRecordQuery query);
+
+    /**
+     * 查询已存在的交易单号及其ID
+     * @param tradeNos 交易单号列表
+     * @return 已存在的记录，只填充id和tradeNo
+     */
+    List<TradeRecord> selectIdsByTradeNos(@Param("tradeNos") List<String> tradeNos);
+
+    /**
+     * 流式扫描全部交易单号
+     * @param handler 结果处理器
+     */
+    void scanTradeNos(ResultHandler<String> handler);
+
     /**
      * 统计符合条件的记录总数
      * @param query 查询条件
@@ -68,10 +157,69 @@ public interface TradeRecordMapper {
      */
     long countByQuery(TradeRecordQuery query);
     
+    /**
+     * 获取按条件查询的执行计划，用于估算记录数
+     * @param query 查询条件
+     * @return EXPLAIN结果行
+     */
+    List<Map<String, Object>> explainByQuery(TradeRecordQuery query);
+
     /**
      * 分页查询交易记录
      * @param query 查询条件
      * @return 交易记录列表
      */
     List<TradeRecord> selectByQuery(TradeRecordQuery query);
-} 
\ No newline at end of file
+
+    /**
+     * 按条件以游标方式查询，用于导出
+     * 游标须在事务内遍历，遍历完成前连接不会释放
+     * @param query 查询条件，分页参数不生效
+     * @return 交易记录游标
+     */
+    Cursor<TradeRecord> selectCursorByQuery(TradeRecordQuery query);
+
+    /**
+     * 按主键顺序读取ID之后的记录，只填充分析用的列
+     * @param afterId 起始ID（不含）
+     * @param limit 最大行数
+     * @return 交易记录列表
+     */
+    List<TradeRecord> selectAnalyticsAfterId(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 按ID读取记录，只填充分析用的列
+     * @param ids ID列表
+     * @return 交易记录列表，已删除的记录不返回
+     */
+    List<TradeRecord> selectAnalyticsByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 按主键顺序读取ID之后的记录，只填充搜索用的列
+     * @param afterId 起始ID（不含）
+     * @param limit 最大行数
+     * @return 交易记录列表
+     */
+    List<TradeRecord> selectSearchAfterId(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 按ID读取记录，只填充搜索用的列
+     * @param ids ID列表
+     * @return 交易记录列表，已删除的记录不返回
+     */
+    List<TradeRecord> selectSearchByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 按ID读取完整记录
+     * @param ids ID列表
+     * @return 交易记录列表，顺序不定，已删除的记录不返回
+     */
+    List<TradeRecord> selectByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 按交易单号读取完整记录
+     * @param tradeNos 交易单号列表
+     * @return 交易记录列表，顺序不定，不存在的单号不返回
+     */
+    List<TradeRecord> selectByTradeNos(@Param("tradeNos") List<String> tradeNos);
+}
@@ -0,0 +1,89 @@
+package org.start.app.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.start.app.entity.TradeRollup;
+import org.start.app.model.TradeStatsQuery;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 交易汇总数据访问层
+ */
+@Mapper
+public interface TradeRollupMapper {
+    /**
+     * 按增量累加日汇总，汇总行不存在时插入
+     * @param rollups 增量，笔数和金额可为负
+     * @return 影响行数
+     */
+    int upsertDaily(List<TradeRollup> rollups);
+
+    /**
+     * 按增量累加月汇总，汇总行不存在时插入
+     * @param rollups 增量，statDate为当月第一天
+     * @return 影响行数
+     */
+    int upsertMonthly(List<TradeRollup> rollups);
+
+    /**
+     * 汇总统计
+     * @param table 汇总表名
+     * @param dateColumn 汇总表的日期列
+     * @param period 时间段粒度
+     * @param selectColumns 分组维度的查询列（含别名）
+     * @param groupColumns 分组维度的列名
+     * @param start 开始日期（含），为null时不限
+     * @param end 结束日期（含），为null时不限
+     * @param query 维度过滤条件
+     * @return 每个时间段和维度组合一行，含period、各维度、tradeCount、amount
+     */
+    List<Map<String, Object>> selectStats(@Param("table") String table,
+                                          @Param("dateColumn") String dateColumn,
+                                          @Param("period") String period,
+                                          @Param("selectColumns") List<String> selectColumns,
+                                          @Param("groupColumns") List<String> groupColumns,
+                                          @Param("start") LocalDate start,
+                                          @Param("end") LocalDate end,
+                                          @Param("query") TradeStatsQuery query);
+
+    /**
+     * 删除日期范围内的日汇总
+     * @param start 开始日期（含）
+     * @param end 结束日期（不含）
+     * @return 删除行数
+     */
+    int deleteDaily(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    /**
+     * 从交易记录重新生成日期范围内的日汇总
+     * @param start 开始日期（含）
+     * @param end 结束日期（不含）
+     * @return 生成行数
+     */
+    int rebuildDaily(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    /**
+     * 删除月份范围内的月汇总
+     * @param start 开始月份第一天（含）
+     * @param end 结束月份第一天（不含）
+     * @return 删除行数
+     */
+    int deleteMonthly(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    /**
+     * 从日汇总重新生成月份范围内的月汇总
+     * @param start 开始月份第一天（含）
+     * @param end 结束月份第一天（不含）
+     * @return 生成行数
+     */
+    int rebuildMonthly(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    /**
+     * 交易时间范围
+     * @return minTime、maxTime，无数据时为null
+     */
+    Map<String, Object> selectTradeTimeRange();
+}
@@ -0,0 +1,22 @@
+package org.start.app.model;
+
+import lombok.Data;
+import org.start.app.entity.TradeRecord;
+
+/**
+ * 按条件批量删除、修改的请求
+ */
+@Data
+public class BulkMutationRequest {
+    /** 筛选条件，至少指定一个条件；分页和续查参数不生效 */
+    private TradeRecordQuery query;
+
+    /** 修改时要设置的字段，只修改非空字段，不能修改交易单号；删除时忽略 */
+    private TradeRecord changes;
+
+    /** 每段处理的记录数，为null时取配置 */
+    private Integer chunkSize;
+
+    /** 每段提交后暂停的毫秒数，为null时取配置 */
+    private Long pauseMillis;
+}
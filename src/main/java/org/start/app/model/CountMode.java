@@ -0,0 +1,13 @@
+package org.start.app.model;
+
+/**
+ * 分页查询的总数统计方式
+ */
+public enum CountMode {
+    /** 精确统计，结果按查询条件缓存 */
+    EXACT,
+    /** 按索引统计信息估算，不执行COUNT */
+    ESTIMATED,
+    /** 先估算，估算值超过阈值时直接返回估算值，否则精确统计 */
+    AUTO
+}
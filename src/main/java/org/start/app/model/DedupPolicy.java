@@ -0,0 +1,15 @@
+package org.start.app.model;
+
+/**
+ * 导入时交易单号重复的处理策略
+ */
+public enum DedupPolicy {
+    /** 不去重，重复单号由唯一索引拒绝 */
+    NONE,
+    /** 跳过已存在的单号 */
+    SKIP,
+    /** 已存在的单号用新数据覆盖 */
+    UPSERT,
+    /** 存在重复单号时导入失败 */
+    REJECT
+}
@@ -0,0 +1,29 @@
+package org.start.app.model;
+
+/**
+ * 导出文件格式
+ */
+public enum ExportFormat {
+    /** Excel 2007+ */
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", ".xlsx"),
+    /** UTF-8编码的CSV，带BOM以便Excel正确识别中文 */
+    CSV("text/csv;charset=UTF-8", ".csv");
+
+    /** 响应内容类型 */
+    private final String contentType;
+    /** 文件扩展名 */
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
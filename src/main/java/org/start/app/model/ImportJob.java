@@ -0,0 +1,74 @@
+package org.start.app.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 导入任务信息
+ * 状态保存在Redis中，任意节点都可以查询
+ */
+@Data
+public class ImportJob {
+    /** 任务ID */
+    private String jobId;
+
+    /** 上传的文件名 */
+    private String fileName;
+
+    /** 任务状态 */
+    private ImportJobStatus status;
+
+    /** 文件SHA-256，同一文件再次导入时据此续传 */
+    private String fileHash;
+
+    /** 执行任务的节点 */
+    private String node;
+
+    /** 预估总记录数 */
+    private Long rowsTotal;
+
+    /** 已解析的记录数 */
+    private long rowsParsed;
+
+    /** 续传时跳过的已提交记录数 */
+    private long rowsSkipped;
+
+    /** 本次写入数据库的记录数 */
+    private long rowsInserted;
+
+    /** 因单号重复而未写入的记录数 */
+    private long rowsDuplicate;
+
+    /** 重复单号处理策略 */
+    private DedupPolicy dedupPolicy;
+
+    /** 处理速度（条/秒），含跳过的重复记录 */
+    private Double throughput;
+
+    /** 预计剩余时间（秒） */
+    private Long etaSeconds;
+
+    /** 是否已请求取消 */
+    private boolean cancelRequested;
+
+    /** 失败或取消原因 */
+    private String message;
+
+    /** 提交时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date submitTime;
+
+    /** 开始执行时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date startTime;
+
+    /** 最近一次进度更新时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date updateTime;
+
+    /** 结束时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private Date endTime;
+}
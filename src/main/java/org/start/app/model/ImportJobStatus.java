@@ -0,0 +1,24 @@
+package org.start.app.model;
+
+/**
+ * 导入任务状态
+ */
+public enum ImportJobStatus {
+    /** 排队中 */
+    PENDING,
+    /** 执行中 */
+    RUNNING,
+    /** 导入成功 */
+    SUCCESS,
+    /** 导入失败 */
+    FAILED,
+    /** 已取消 */
+    CANCELLED;
+
+    /**
+     * 是否为终止状态
+     */
+    public boolean isFinished() {
+        return this == SUCCESS || this == FAILED || this == CANCELLED;
+    }
+}
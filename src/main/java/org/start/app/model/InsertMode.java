@@ -0,0 +1,13 @@
+package org.start.app.model;
+
+/**
+ * 单条新增的写入方式
+ */
+public enum InsertMode {
+    /** 每条记录单独插入并提交 */
+    DIRECT,
+    /** 进入写缓冲合并提交，等待所在批次提交后返回 */
+    GROUP_COMMIT,
+    /** 进入写缓冲后立即返回，不等待提交 */
+    ASYNC
+}
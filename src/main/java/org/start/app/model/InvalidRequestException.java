@@ -0,0 +1,16 @@
+package org.start.app.model;
+
+/**
+ * 请求参数无效，如分页令牌无效、条件或分组维度不支持、批量个数超过上限
+ * 全局异常处理只把这一类异常转为400并返回消息，其他IllegalArgumentException按内部错误处理
+ */
+public class InvalidRequestException extends IllegalArgumentException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
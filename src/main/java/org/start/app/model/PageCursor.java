@@ -0,0 +1,63 @@
+package org.start.app.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 键集分页的续查位置
+ * 记录上一页最后一条记录的交易时间和ID，编码为不透明的令牌返回给客户端
+ */
+public class PageCursor {
+    /** 令牌格式版本，格式变化时据此拒绝旧令牌 */
+    private static final String VERSION = "1";
+
+    /** 交易时间 */
+    private final Date tradeTime;
+    /** 记录ID */
+    private final long id;
+
+    public PageCursor(Date tradeTime, long id) {
+        this.tradeTime = tradeTime;
+        this.id = id;
+    }
+
+    /**
+     * 以记录的位置生成令牌
+     * @param tradeTime 上一页最后一条记录的交易时间
+     * @param id 上一页最后一条记录的ID
+     * @return 令牌
+     */
+    public static String encode(Date tradeTime, Long id) {
+        String raw = VERSION + ":" + tradeTime.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析令牌
+     * @param token 令牌
+     * @return 续查位置
+     * @throws InvalidRequestException 令牌无效
+     */
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length == 3 && VERSION.equals(parts[0])) {
+                return new PageCursor(new Date(Long.parseLong(parts[1])), Long.parseLong(parts[2]));
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException和Base64解码失败都是IllegalArgumentException
+            throw new InvalidRequestException("无效的分页令牌: " + token, e);
+        }
+        throw new InvalidRequestException("无效的分页令牌: " + token);
+    }
+
+    public Date getTradeTime() {
+        return tradeTime;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,21 @@
+package org.start.app.model;
+
+import lombok.Data;
+
+/**
+ * 交易记录表的分区信息
+ */
+@Data
+public class TradePartition {
+    /** 分区名，按月分区为pYYYYMM，最后一个分区为p_max */
+    private String name;
+
+    /** 分区上界（不含），按月分区为下月第一天，最后一个分区为MAXVALUE */
+    private String description;
+
+    /** 估算行数，来自information_schema，不精确 */
+    private Long rows;
+
+    /** 数据和索引占用字节数 */
+    private Long sizeInBytes;
+}
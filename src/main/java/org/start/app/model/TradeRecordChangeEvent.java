@@ -0,0 +1,42 @@
+package org.start.app.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 交易记录变更事件
+ * 记录写入后发布，监听方在事务提交后收到，用于失效缓存等
+ */
+public class TradeRecordChangeEvent {
+    /** 变更类型 */
+    private final ChangeType type;
+    /** 变更记录的ID，未知时为空 */
+    private final List<Long> ids;
+    /** 变更记录的交易单号，未知时为空 */
+    private final List<String> tradeNos;
+
+    public TradeRecordChangeEvent(ChangeType type, List<Long> ids, List<String> tradeNos) {
+        this.type = type;
+        this.ids = ids == null ? Collections.emptyList() : ids;
+        this.tradeNos = tradeNos == null ? Collections.emptyList() : tradeNos;
+    }
+
+    public ChangeType getType() {
+        return type;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public List<String> getTradeNos() {
+        return tradeNos;
+    }
+
+    /**
+     * 变更类型
+     */
+    public enum ChangeType {
+        INSERT, UPDATE, DELETE, IMPORT
+    }
+}
@@ -1,9 +1,12 @@
 package org.start.app.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.List;
 
 /**
  * 交易记录查询参数类
@@ -25,10 +28,12 @@ public class TradeRecordQuery {
     
     /** 交易开始时间 */
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private Date startTime;
     
     /** 交易结束时间 */
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private Date endTime;
     
     /** 最小金额 */
@@ -52,11 +57,46 @@ public class TradeRecordQuery {
     /** 每页记录数，默认10条 */
     private Integer pageSize = 10;
 
+    /** 总数统计方式，默认精确统计 */
+    private CountMode countMode = CountMode.EXACT;
+
+    /** 续查令牌，取上一页响应中的nextCursor；传入时按键集分页，忽略pageNum */
+    private String cursor;
+
+    /** 由令牌解析出的上一页最后一条记录的交易时间 */
+    @JsonIgnore
+    private Date cursorTradeTime;
+
+    /** 由令牌解析出的上一页最后一条记录的ID */
+    @JsonIgnore
+    private Long cursorId;
+
+    /** 位图索引预选的候选ID，为null时不限 */
+    @JsonIgnore
+    private List<Long> candidateIds;
+
+    /** 位图索引已覆盖的最大ID，更大的ID不受候选ID限制 */
+    @JsonIgnore
+    private Long candidateMaxId;
+
+    /** 按条件批量删除、修改时分段读取ID的起点（不含） */
+    @JsonIgnore
+    private Long scanAfterId;
+
+    /** 按条件批量删除、修改时每段读取的ID数 */
+    @JsonIgnore
+    private Integer scanLimit;
+
+    /** 按条件批量删除、修改时本段要锁定的ID */
+    @JsonIgnore
+    private List<Long> scanIds;
+
     /**
      * 获取分页偏移量
+     * 按long计算，避免页码较大时溢出
      * @return 偏移量
      */
-    public Integer getOffset() {
-        return (pageNum - 1) * pageSize;
+    public Long getOffset() {
+        return (long) (pageNum - 1) * pageSize;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,53 @@
+package org.start.app.model;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 交易统计查询参数类
+ */
+@Data
+public class TradeStatsQuery {
+    /** 统计粒度，默认按月 */
+    private Granularity granularity = Granularity.MONTH;
+
+    /** 分组维度，可选tradeType、direction、paymentMethod、status */
+    private List<String> groupBy;
+
+    /** 开始日期（含） */
+    @DateTimeFormat(pattern = "yyyy-MM-dd")
+    private LocalDate startDate;
+
+    /** 结束日期（含） */
+    @DateTimeFormat(pattern = "yyyy-MM-dd")
+    private LocalDate endDate;
+
+    /** 交易类型 */
+    private String tradeType;
+
+    /** 收支方向 */
+    private String direction;
+
+    /** 支付方式 */
+    private String paymentMethod;
+
+    /** 交易状态 */
+    private String status;
+
+    /**
+     * 统计粒度
+     */
+    public enum Granularity {
+        /** 按日，读日汇总表 */
+        DAY,
+        /** 按月，读月汇总表 */
+        MONTH,
+        /** 按年，读月汇总表 */
+        YEAR,
+        /** 不分时间段，读月汇总表 */
+        ALL
+    }
+}
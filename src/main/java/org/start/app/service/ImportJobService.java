@@ -0,0 +1,333 @@
+package org.start.app.service;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.start.app.config.DedupConfig;
+import org.start.app.config.ImportConfig;
+import org.start.app.excel.ImportCancelledException;
+import org.start.app.excel.ImportMonitor;
+import org.start.app.model.DedupPolicy;
+import org.start.app.model.ImportJob;
+import org.start.app.model.ImportJobStatus;
+import org.start.app.util.RedisUtil;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台导入任务服务
+ * 上传的文件先落到临时文件，再由任务线程池异步导入；
+ * 任务状态和进度写入Redis Hash，任意节点都可以查询和取消
+ */
+@Service
+public class ImportJobService {
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+    /** 任务状态Key前缀 */
+    private static final String JOB_KEY_PREFIX = "import:job:";
+    /** 进度上报的最小间隔（毫秒） */
+    private static final long REPORT_INTERVAL = 1000;
+    /** 当前节点标识 */
+    private static final String NODE = ManagementFactory.getRuntimeMXBean().getName();
+
+    private final TradeRecordService tradeRecordService;
+    private final RedisUtil redisUtil;
+    private final ImportConfig importConfig;
+    private final DedupConfig dedupConfig;
+    /** 导入任务线程池 */
+    private final ThreadPoolExecutor executor;
+    /** 本节点收到取消请求的任务，避免等待下一次Redis轮询 */
+    private final Set<String> localCancels = ConcurrentHashMap.newKeySet();
+
+    public ImportJobService(TradeRecordService tradeRecordService, RedisUtil redisUtil, ImportConfig importConfig,
+                            DedupConfig dedupConfig) {
+        this.tradeRecordService = tradeRecordService;
+        this.redisUtil = redisUtil;
+        this.importConfig = importConfig;
+        this.dedupConfig = dedupConfig;
+
+        AtomicInteger threadSeq = new AtomicInteger();
+        int threads = Math.max(1, importConfig.getJobThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, importConfig.getJobQueueCapacity())),
+                runnable -> new Thread(runnable, "import-job-" + threadSeq.incrementAndGet()));
+    }
+
+    /**
+     * 提交导入任务，立即返回任务信息
+     * @param file Excel文件
+     * @param resume 是否从上次失败的位置续传
+     * @param dedupPolicy 重复单号处理策略，为null时取配置的默认策略
+     * @return 任务信息
+     * @throws IOException 保存临时文件失败
+     * @throws RejectedExecutionException 任务队列已满
+     */
+    public ImportJob submit(MultipartFile file, boolean resume, DedupPolicy dedupPolicy) throws IOException {
+        DedupPolicy policy = dedupPolicy != null ? dedupPolicy : dedupConfig.getDefaultPolicy();
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        Path tempFile = Files.createTempFile("trade-import-" + jobId, ".tmp");
+        try {
+            file.transferTo(tempFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        fields.put("jobId", jobId);
+        fields.put("fileName", String.valueOf(file.getOriginalFilename()));
+        fields.put("status", ImportJobStatus.PENDING.name());
+        fields.put("dedupPolicy", policy.name());
+        fields.put("submitTime", String.valueOf(System.currentTimeMillis()));
+        saveFields(jobId, fields);
+
+        try {
+            executor.execute(() -> runJob(jobId, tempFile, resume, policy));
+        } catch (RejectedExecutionException e) {
+            Files.deleteIfExists(tempFile);
+            finishJob(jobId, ImportJobStatus.FAILED, "导入任务队列已满，请稍后重试");
+            throw e;
+        }
+        logger.info("已提交导入任务 {}，文件 {}", jobId, file.getOriginalFilename());
+        return getJob(jobId);
+    }
+
+    /**
+     * 查询任务
+     * @param jobId 任务ID
+     * @return 任务信息，不存在时返回null
+     */
+    public ImportJob getJob(String jobId) {
+        Map<Object, Object> fields = redisUtil.hGetAll(jobKey(jobId));
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        ImportJob job = new ImportJob();
+        job.setJobId(jobId);
+        job.setFileName(stringField(fields, "fileName"));
+        job.setStatus(ImportJobStatus.valueOf(stringField(fields, "status")));
+        job.setNode(stringField(fields, "node"));
+        job.setRowsTotal(longField(fields, "rowsTotal"));
+        job.setFileHash(stringField(fields, "fileHash"));
+        job.setRowsParsed(longValue(fields, "rowsParsed"));
+        job.setRowsSkipped(longValue(fields, "rowsSkipped"));
+        job.setRowsInserted(longValue(fields, "rowsInserted"));
+        job.setRowsDuplicate(longValue(fields, "rowsDuplicate"));
+        String dedupPolicy = stringField(fields, "dedupPolicy");
+        job.setDedupPolicy(dedupPolicy == null ? null : DedupPolicy.valueOf(dedupPolicy));
+        job.setCancelRequested(Boolean.parseBoolean(stringField(fields, "cancelRequested")));
+        job.setMessage(stringField(fields, "message"));
+        job.setSubmitTime(dateField(fields, "submitTime"));
+        job.setStartTime(dateField(fields, "startTime"));
+        job.setUpdateTime(dateField(fields, "updateTime"));
+        job.setEndTime(dateField(fields, "endTime"));
+
+        if (job.getStartTime() != null) {
+            long end = job.getEndTime() != null ? job.getEndTime().getTime() : System.currentTimeMillis();
+            long elapsed = Math.max(1, end - job.getStartTime().getTime());
+            // 跳过的重复记录同样消耗了解析和确认的时间，计入处理速度
+            long processed = job.getRowsInserted() + job.getRowsDuplicate();
+            double throughput = processed * 1000.0 / elapsed;
+            job.setThroughput(Math.round(throughput * 10) / 10.0);
+            if (job.getStatus() == ImportJobStatus.RUNNING && job.getRowsTotal() != null && throughput > 0) {
+                long remaining = Math.max(0, job.getRowsTotal() - job.getRowsSkipped() - processed);
+                job.setEtaSeconds((long) Math.ceil(remaining / throughput));
+            }
+        }
+        return job;
+    }
+
+    /**
+     * 取消任务
+     * 执行中的任务会在下一个批次提交前停止，已提交的批次保留
+     * @param jobId 任务ID
+     * @return 任务信息，不存在时返回null
+     */
+    public ImportJob cancel(String jobId) {
+        ImportJob job = getJob(jobId);
+        if (job == null || job.getStatus().isFinished()) {
+            return job;
+        }
+        localCancels.add(jobId);
+        redisUtil.hSet(jobKey(jobId), "cancelRequested", "true");
+        logger.info("已请求取消导入任务 {}", jobId);
+        return getJob(jobId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 执行导入任务
+     */
+    private void runJob(String jobId, Path file, boolean resume, DedupPolicy dedupPolicy) {
+        JobMonitor monitor = new JobMonitor(jobId);
+        try {
+            if (monitor.isCancelled()) {
+                finishJob(jobId, ImportJobStatus.CANCELLED, "任务在开始前被取消");
+                return;
+            }
+            String fileHash;
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                fileHash = DigestUtils.sha256Hex(inputStream);
+            }
+            long now = System.currentTimeMillis();
+            Map<String, String> fields = new HashMap<>();
+            fields.put("status", ImportJobStatus.RUNNING.name());
+            fields.put("fileHash", fileHash);
+            fields.put("node", NODE);
+            fields.put("startTime", String.valueOf(now));
+            fields.put("updateTime", String.valueOf(now));
+            saveFields(jobId, fields);
+
+            tradeRecordService.importExcel(new FileSystemResource(file), fileHash, resume, dedupPolicy, monitor);
+            finishJob(jobId, ImportJobStatus.SUCCESS, null);
+            logger.info("导入任务 {} 完成", jobId);
+        } catch (Throwable e) {
+            if (isCancellation(e)) {
+                finishJob(jobId, ImportJobStatus.CANCELLED, "任务已取消");
+                logger.info("导入任务 {} 已取消", jobId);
+            } else {
+                finishJob(jobId, ImportJobStatus.FAILED, e.getMessage());
+                logger.error("导入任务 {} 失败", jobId, e);
+            }
+        } finally {
+            localCancels.remove(jobId);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("删除临时文件失败: {}", file, e);
+            }
+        }
+    }
+
+    private void finishJob(String jobId, ImportJobStatus status, String message) {
+        long now = System.currentTimeMillis();
+        Map<String, String> fields = new HashMap<>();
+        fields.put("status", status.name());
+        fields.put("endTime", String.valueOf(now));
+        fields.put("updateTime", String.valueOf(now));
+        if (message != null) {
+            fields.put("message", message);
+        }
+        saveFields(jobId, fields);
+    }
+
+    private void saveFields(String jobId, Map<String, String> fields) {
+        String key = jobKey(jobId);
+        redisUtil.hSetAll(key, fields);
+        redisUtil.expire(key, importConfig.getJobTtlHours(), TimeUnit.HOURS);
+    }
+
+    private static boolean isCancellation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ImportCancelledException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String jobKey(String jobId) {
+        return JOB_KEY_PREFIX + jobId;
+    }
+
+    private static String stringField(Map<Object, Object> fields, String name) {
+        Object value = fields.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    private static Long longField(Map<Object, Object> fields, String name) {
+        String value = stringField(fields, name);
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    private static long longValue(Map<Object, Object> fields, String name) {
+        Long value = longField(fields, name);
+        return value == null ? 0L : value;
+    }
+
+    private static Date dateField(Map<Object, Object> fields, String name) {
+        Long value = longField(fields, name);
+        return value == null ? null : new Date(value);
+    }
+
+    /**
+     * 任务进度监视器，按固定间隔把进度写入Redis并读取取消标记
+     */
+    private class JobMonitor implements ImportMonitor {
+        private final String jobId;
+        private long lastReport;
+        private volatile boolean cancelled;
+
+        JobMonitor(String jobId) {
+            this.jobId = jobId;
+            this.cancelled = Boolean.parseBoolean(String.valueOf(redisUtil.hGet(jobKey(jobId), "cancelRequested")));
+        }
+
+        @Override
+        public void onProgress(long rowsParsed, long rowsSkipped, long rowsWritten, long rowsDuplicate,
+                               Integer totalRows) {
+            long now = System.currentTimeMillis();
+            if (now - lastReport < REPORT_INTERVAL) {
+                return;
+            }
+            lastReport = now;
+
+            Map<String, String> fields = progressFields(rowsParsed, rowsSkipped, rowsWritten, rowsDuplicate, now);
+            // 预估行数包含表头，表格没有尺寸记录时未知，不写入
+            if (totalRows != null) {
+                fields.put("rowsTotal", String.valueOf(Math.max(rowsParsed, totalRows - 1)));
+            }
+            saveFields(jobId, fields);
+            cancelled = Boolean.parseBoolean(String.valueOf(redisUtil.hGet(jobKey(jobId), "cancelRequested")));
+        }
+
+        @Override
+        public void onFinish(long rowsParsed, long rowsSkipped, long rowsWritten, long rowsDuplicate,
+                             boolean completed) {
+            Map<String, String> fields = progressFields(rowsParsed, rowsSkipped, rowsWritten, rowsDuplicate,
+                    System.currentTimeMillis());
+            if (completed) {
+                fields.put("rowsTotal", String.valueOf(rowsParsed));
+            }
+            saveFields(jobId, fields);
+        }
+
+        private Map<String, String> progressFields(long rowsParsed, long rowsSkipped, long rowsWritten,
+                                                   long rowsDuplicate, long now) {
+            Map<String, String> fields = new HashMap<>();
+            fields.put("rowsParsed", String.valueOf(rowsParsed));
+            fields.put("rowsSkipped", String.valueOf(rowsSkipped));
+            fields.put("rowsInserted", String.valueOf(rowsWritten));
+            fields.put("rowsDuplicate", String.valueOf(rowsDuplicate));
+            fields.put("updateTime", String.valueOf(now));
+            return fields;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled || localCancels.contains(jobId);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.start.app.util.RedisBatch;
+import org.start.app.util.RedisUtil;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis批量操作基准测试
+ * 用相同的键分别走逐条调用、管道、MULTI/EXEC和MSET/MGET四种方式，每种方式先写后读，测完删除测试数据
+ */
+@Service
+public class RedisBenchmarkService {
+    private static final Logger logger = LoggerFactory.getLogger(RedisBenchmarkService.class);
+    /** 单次基准测试的最大键数 */
+    public static final int MAX_KEYS = 100000;
+    /** 每批的最大操作数 */
+    public static final int MAX_BATCH_SIZE = 10000;
+
+    private final RedisUtil redisUtil;
+
+    public RedisBenchmarkService(RedisUtil redisUtil) {
+        this.redisUtil = redisUtil;
+    }
+
+    /**
+     * 对比逐条调用与批量操作
+     * @param keys 键数，每种方式对每个键写一次、读一次
+     * @param batchSize 批量方式每批的键数
+     * @return 各方式的耗时、吞吐量和相对逐条调用的倍数
+     */
+    public Map<String, Object> compare(int keys, int batchSize) {
+        int count = Math.max(1, Math.min(keys, MAX_KEYS));
+        int size = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        String prefix = "bench:redis:" + System.currentTimeMillis() + ":";
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + i);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("keys", count);
+        result.put("batchSize", size);
+        try {
+            long perCall = run(result, "perCall", () -> {
+                for (int i = 0; i < count; i++) {
+                    redisUtil.set(names.get(i), i);
+                }
+                for (String name : names) {
+                    redisUtil.get(name);
+                }
+            }, count, 0);
+            run(result, "pipeline", () -> {
+                for (int from = 0; from < count; from += size) {
+                    RedisBatch batch = redisUtil.batch();
+                    for (int i = from; i < Math.min(from + size, count); i++) {
+                        batch.set(names.get(i), i);
+                    }
+                    batch.execute();
+                }
+                for (int from = 0; from < count; from += size) {
+                    RedisBatch batch = redisUtil.batch();
+                    for (String name : names.subList(from, Math.min(from + size, count))) {
+                        batch.get(name);
+                    }
+                    batch.execute();
+                }
+            }, count, perCall);
+            run(result, "transaction", () -> {
+                for (int from = 0; from < count; from += size) {
+                    RedisBatch batch = redisUtil.batch();
+                    for (int i = from; i < Math.min(from + size, count); i++) {
+                        batch.set(names.get(i), i);
+                    }
+                    batch.executeInTransaction();
+                }
+                for (int from = 0; from < count; from += size) {
+                    RedisBatch batch = redisUtil.batch();
+                    for (String name : names.subList(from, Math.min(from + size, count))) {
+                        batch.get(name);
+                    }
+                    batch.executeInTransaction();
+                }
+            }, count, perCall);
+            run(result, "multiKey", () -> {
+                for (int from = 0; from < count; from += size) {
+                    Map<String, Object> values = new LinkedHashMap<>();
+                    for (int i = from; i < Math.min(from + size, count); i++) {
+                        values.put(names.get(i), i);
+                    }
+                    redisUtil.multiSet(values);
+                }
+                for (int from = 0; from < count; from += size) {
+                    redisUtil.multiGet(names.subList(from, Math.min(from + size, count)));
+                }
+            }, count, perCall);
+            return result;
+        } finally {
+            for (int from = 0; from < count; from += size) {
+                redisUtil.delete(names.subList(from, Math.min(from + size, count)));
+            }
+        }
+    }
+
+    /**
+     * 执行一种方式并记录结果
+     * @return 耗时（纳秒）
+     */
+    private long run(Map<String, Object> result, String mode, Runnable task, int keys, long baselineNanos) {
+        long start = System.nanoTime();
+        task.run();
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        long elapsedMillis = elapsedNanos / 1_000_000;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("millis", elapsedMillis);
+        // 每个键写一次、读一次，共2次操作
+        stats.put("opsPerSecond", keys * 2L * 1_000_000_000L / elapsedNanos);
+        if (baselineNanos > 0) {
+            stats.put("speedup", Math.round(baselineNanos * 10.0 / elapsedNanos) / 10.0);
+        }
+        result.put(mode, stats);
+        logger.info("Redis基准测试 {}：{} 个键，耗时 {}ms", mode, keys, elapsedMillis);
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,277 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.start.app.config.SeckillOrderConfig;
+import org.start.app.entity.SeckillOrder;
+import org.start.app.mapper.SeckillOrderMapper;
+import org.start.app.util.RedisUtil;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 秒杀订单队列
+ * 抢购脚本在扣减库存的同时把订单写入Redis Stream即返回，MySQL的写入延迟不再影响抢购接口。
+ * 本节点的消费者线程在同一个消费者组中按批读取（XREADGROUP COUNT），批量写库后确认并删除消息；
+ * 写库失败的消息不确认，留在待确认列表中重试。消费者名称由主机名和序号组成，重启后先处理自己未确认的消息，
+ * 其他节点读取后长时间未确认的消息由第一个消费者线程转给自己处理。重复投递的订单按消息ID在写库时忽略
+ */
+@Service
+public class SeckillOrderQueue {
+    private static final Logger logger = LoggerFactory.getLogger(SeckillOrderQueue.class);
+    /** 本消费者已读取未确认的消息 */
+    private static final ReadOffset PENDING = ReadOffset.from("0");
+
+    private final RedisUtil redisUtil;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final SeckillOrderMapper seckillOrderMapper;
+    private final SeckillOrderConfig seckillOrderConfig;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private volatile String lastError;
+
+    public SeckillOrderQueue(RedisUtil redisUtil, RedisTemplate<String, Object> redisTemplate,
+                             SeckillOrderMapper seckillOrderMapper, SeckillOrderConfig seckillOrderConfig) {
+        this.redisUtil = redisUtil;
+        this.redisTemplate = redisTemplate;
+        this.seckillOrderMapper = seckillOrderMapper;
+        this.seckillOrderConfig = seckillOrderConfig;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!seckillOrderConfig.isEnabled()) {
+            return;
+        }
+        running = true;
+        redisUtil.xGroupCreate(seckillOrderConfig.getStreamKey(), seckillOrderConfig.getGroup());
+        String host = hostName();
+        for (int i = 0; i < Math.max(1, seckillOrderConfig.getConsumers()); i++) {
+            String consumer = host + "-" + i;
+            boolean claimer = i == 0;
+            Thread worker = new Thread(() -> consume(consumer, claimer), "seckill-order-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 停止读取新消息，等待消费者写完当前批次；已读取未确认的消息在重启后或由其他节点继续处理
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(seckillOrderConfig.getBlockMillis() + seckillOrderConfig.getRetryBackoffMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return seckillOrderConfig.isEnabled();
+    }
+
+    /**
+     * 订单Stream的key，抢购脚本直接向其写入订单，消息字段为productId、userId、time
+     */
+    public String getStreamKey() {
+        return seckillOrderConfig.getStreamKey();
+    }
+
+    /**
+     * 记录一条由抢购脚本写入的订单
+     */
+    public void markEnqueued() {
+        enqueued.increment();
+    }
+
+    /**
+     * 入队、落库统计和队列积压
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", seckillOrderConfig.isEnabled());
+        stats.put("consumers", workers.size());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("persisted", persisted.sum());
+        stats.put("duplicates", duplicates.sum());
+        stats.put("invalid", invalid.sum());
+        stats.put("batches", batches.sum());
+        stats.put("failures", failures.sum());
+        stats.put("claimed", claimed.sum());
+        stats.put("lastError", lastError);
+        if (seckillOrderConfig.isEnabled()) {
+            stats.put("streamLength", redisUtil.xLen(seckillOrderConfig.getStreamKey()));
+            PendingMessagesSummary pending = redisTemplate.opsForStream()
+                    .pending(seckillOrderConfig.getStreamKey(), seckillOrderConfig.getGroup());
+            stats.put("pending", pending == null ? 0 : pending.getTotalPendingMessages());
+        }
+        return stats;
+    }
+
+    private void consume(String consumer, boolean claimer) {
+        String key = seckillOrderConfig.getStreamKey();
+        String group = seckillOrderConfig.getGroup();
+        int batchSize = Math.max(1, seckillOrderConfig.getBatchSize());
+        Duration block = Duration.ofMillis(Math.max(1, seckillOrderConfig.getBlockMillis()));
+        // 先处理本消费者上次读取后未确认的消息
+        boolean recovering = true;
+        long nextClaim = 0;
+        while (running) {
+            try {
+                if (claimer && System.currentTimeMillis() >= nextClaim) {
+                    nextClaim = System.currentTimeMillis() + seckillOrderConfig.getClaimIntervalMillis();
+                    recovering |= claimIdle(consumer, batchSize) > 0;
+                }
+                List<MapRecord<String, Object, Object>> records = recovering
+                        ? redisUtil.xReadGroup(key, group, consumer, PENDING, batchSize, null)
+                        : redisUtil.xReadGroup(key, group, consumer, ReadOffset.lastConsumed(), batchSize, block);
+                if (records.isEmpty()) {
+                    recovering = false;
+                    continue;
+                }
+                persist(records);
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                failures.increment();
+                lastError = e.getMessage();
+                logger.error("秒杀订单写库失败，消息保留待重试，消费者: {}", consumer, e);
+                recovering = true;
+                // 消费者组可能被删除，重建后继续
+                redisUtil.xGroupCreate(key, group);
+                try {
+                    Thread.sleep(seckillOrderConfig.getRetryBackoffMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 一批消息批量写库，写库成功后才确认并删除；格式错误的消息记录日志后直接确认
+     * 写库抛出异常时不确认，消息留在待确认列表中重试
+     */
+    void persist(List<MapRecord<String, Object, Object>> records) {
+        List<SeckillOrder> orders = new ArrayList<>(records.size());
+        String[] ids = new String[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            MapRecord<String, Object, Object> record = records.get(i);
+            ids[i] = record.getId().getValue();
+            SeckillOrder order = toOrder(record);
+            if (order == null) {
+                invalid.increment();
+                logger.warn("丢弃格式错误的秒杀订单消息: {} {}", ids[i], record.getValue());
+            } else {
+                orders.add(order);
+            }
+        }
+        if (!orders.isEmpty()) {
+            int inserted = seckillOrderMapper.batchInsertIgnore(orders);
+            persisted.add(inserted);
+            duplicates.add(orders.size() - inserted);
+        }
+        String key = seckillOrderConfig.getStreamKey();
+        redisUtil.xAck(key, seckillOrderConfig.getGroup(), ids);
+        redisUtil.xDel(key, ids);
+        batches.increment();
+    }
+
+    /**
+     * 把其他消费者读取后超过claimIdleMillis未确认的消息转给本消费者
+     * @return 转移的消息数
+     */
+    private int claimIdle(String consumer, int batchSize) {
+        String key = seckillOrderConfig.getStreamKey();
+        String group = seckillOrderConfig.getGroup();
+        Duration minIdle = Duration.ofMillis(seckillOrderConfig.getClaimIdleMillis());
+        PendingMessages pending = redisTemplate.opsForStream().pending(key, group, Range.unbounded(), batchSize);
+        List<RecordId> idle = pending.stream()
+                .filter(message -> !consumer.equals(message.getConsumerName())
+                        && message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                .map(PendingMessage::getId)
+                .collect(Collectors.toList());
+        if (idle.isEmpty()) {
+            return 0;
+        }
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        List<RecordId> moved = redisTemplate.execute((RedisCallback<List<RecordId>>) connection ->
+                connection.streamCommands().xClaimJustId(rawKey, group, consumer,
+                        XClaimOptions.minIdle(minIdle).ids(idle)));
+        int count = moved == null ? 0 : moved.size();
+        if (count > 0) {
+            claimed.add(count);
+            logger.info("接管 {} 条超时未确认的秒杀订单消息，消费者: {}", count, consumer);
+        }
+        return count;
+    }
+
+    /**
+     * 消息转为订单，缺少字段或时间不是数字时返回null
+     */
+    static SeckillOrder toOrder(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> value = record.getValue();
+        if (value == null || value.get("productId") == null || value.get("userId") == null
+                || value.get("time") == null) {
+            return null;
+        }
+        SeckillOrder order = new SeckillOrder();
+        order.setMessageId(record.getId().getValue());
+        order.setProductId(value.get("productId").toString());
+        order.setUserId(value.get("userId").toString());
+        try {
+            order.setOrderTime(new Date(Long.parseLong(value.get("time").toString())));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return order;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.start.app.config.SeckillConfig;
+import org.start.app.util.RedisBatch;
+import org.start.app.util.RedisUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 秒杀服务
+ * 检查库存、检查重复购买、扣减库存和记录购买用户在一个Lua脚本中原子完成，不使用分布式锁，
+ * 每次抢购只有一次往返。脚本返回售罄后在本节点记下短期的售罄标记，有效期内的请求不再访问Redis；
+ * 重新初始化库存时广播通知，各节点清除该商品的售罄标记。通知不保证送达，标记到期后重新访问Redis确认；
+ * 抢购期间收到重置通知时，本次得到的售罄标记和分片信息可能早于重置，直接丢弃。
+ * 热门商品的库存可拆成多个分片，每个分片的库存key与购买用户key用同一个哈希标签落在同一个槽位，
+ * 不同分片分散到不同槽位和连接：用户按哈希固定归属一个分片，在该分片登记购买并尝试扣减，
+ * 该分片为空时依次从其他分片扣减，全部为空时撤销登记。
+ * 启用订单队列时，订单在扣减库存的同一个脚本中写入Redis Stream（先写订单再扣减，脚本出错时不留下半个结果），
+ * 不会出现库存已扣而订单丢失的情况，由订单队列异步落库。脚本同时访问库存key和订单Stream，
+ * 要求它们在同一个Redis节点上（单机或哨兵部署）。分片时在所属分片登记购买后从其他分片扣减不是原子的，
+ * 两步之间宕机只会留下没有订单的购买登记，不会超卖或丢单，对账时购买人数多于订单数
+ */
+@Service
+public class SeckillService implements MessageListener {
+    private static final Logger logger = LoggerFactory.getLogger(SeckillService.class);
+    /** 库存重置通知频道，消息为商品ID */
+    private static final String STOCK_RESET_CHANNEL = "seckill:stock-reset";
+    /** 最大分片数 */
+    public static final int MAX_SHARDS = 64;
+
+    /** 返回0表示售罄，1表示抢购成功，2表示已购买过 */
+    private static final RedisScript<Long> PURCHASE_SCRIPT = new DefaultRedisScript<>(
+            "local stock = tonumber(redis.call('get', KEYS[1])) "
+                    + "if stock == nil or stock <= 0 then return 0 end "
+                    + "if redis.call('sismember', KEYS[2], ARGV[1]) == 1 then return 2 end "
+                    + addOrder(3)
+                    + "redis.call('decr', KEYS[1]) "
+                    + "redis.call('sadd', KEYS[2], ARGV[1]) "
+                    + "return 1", Long.class);
+    /** 在用户所属分片登记购买并尝试扣减：返回1表示扣减成功，0表示已登记但分片为空，2表示已购买过 */
+    private static final RedisScript<Long> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('sismember', KEYS[2], ARGV[1]) == 1 then return 2 end "
+                    + "local stock = tonumber(redis.call('get', KEYS[1])) "
+                    + "if stock ~= nil and stock > 0 then "
+                    + addOrder(3)
+                    + "redis.call('decr', KEYS[1]) redis.call('sadd', KEYS[2], ARGV[1]) return 1 end "
+                    + "redis.call('sadd', KEYS[2], ARGV[1]) "
+                    + "return 0", Long.class);
+    /** 从一个分片扣减一件：返回1表示成功，0表示分片为空 */
+    private static final RedisScript<Long> TAKE_SCRIPT = new DefaultRedisScript<>(
+            "local stock = tonumber(redis.call('get', KEYS[1])) "
+                    + "if stock ~= nil and stock > 0 then "
+                    + addOrder(2)
+                    + "redis.call('decr', KEYS[1]) return 1 end "
+                    + "return 0", Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisUtil redisUtil;
+    private final SeckillOrderQueue seckillOrderQueue;
+    private final SeckillConfig seckillConfig;
+    /** 本节点已知售罄的商品 -> 标记到期时间 */
+    private final Map<String, Long> soldOut = new ConcurrentHashMap<>();
+    /** 本节点收到的库存重置次数，抢购前后不同表示期间发生过重置 */
+    private final AtomicLong resets = new AtomicLong();
+    /** 商品 -> 分片数，1表示未分片 */
+    private final Map<String, Integer> shardCounts = new ConcurrentHashMap<>();
+    /** 商品 -> 本节点已知为空的分片，扣减时跳过 */
+    private final Map<String, Set<Integer>> emptyShards = new ConcurrentHashMap<>();
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejectedInRedis = new LongAdder();
+    private final LongAdder rejectedLocally = new LongAdder();
+    private final LongAdder fallthroughs = new LongAdder();
+
+    public SeckillService(RedisTemplate<String, Object> redisTemplate, RedisUtil redisUtil,
+                          SeckillOrderQueue seckillOrderQueue, SeckillConfig seckillConfig,
+                          RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        this.redisUtil = redisUtil;
+        this.seckillOrderQueue = seckillOrderQueue;
+        this.seckillConfig = seckillConfig;
+        listenerContainer.addMessageListener(this, new ChannelTopic(STOCK_RESET_CHANNEL));
+    }
+
+    /**
+     * 抢购
+     * @param productId 商品ID
+     * @param userId 用户ID
+     * @return 抢购结果
+     */
+    public SeckillResult purchase(String productId, String userId) {
+        if (isMarkedSoldOut(productId)) {
+            rejectedLocally.increment();
+            return SeckillResult.SOLD_OUT;
+        }
+        long epoch = resets.get();
+        int shards = shardCount(productId);
+        // 订单随扣减写入Stream，订单消息的字段与参数一样经过JSON序列化，和RedisTemplate写入Stream一致
+        String streamKey = seckillOrderQueue.isEnabled() ? seckillOrderQueue.getStreamKey() : null;
+        Object[] args = {userId, productId, String.valueOf(System.currentTimeMillis())};
+        SeckillResult result = shards > 1
+                ? purchaseSharded(productId, userId, shards, streamKey, args)
+                : purchaseSingle(productId, streamKey, args);
+        switch (result) {
+            case SUCCESS:
+                if (streamKey != null) {
+                    seckillOrderQueue.markEnqueued();
+                }
+                succeeded.increment();
+                break;
+            case ALREADY_BOUGHT:
+                duplicates.increment();
+                break;
+            default:
+                rejectedInRedis.increment();
+                if (seckillConfig.getSoldOutTtlMillis() > 0) {
+                    soldOut.put(productId, System.currentTimeMillis() + seckillConfig.getSoldOutTtlMillis());
+                    logger.debug("商品已售罄，本节点短期内直接拒绝: {}", productId);
+                }
+        }
+        // 重置通知先于本次标记到达时，标记和分片信息按重置前的库存得出，丢弃后重新读取
+        if (resets.get() != epoch) {
+            forget(productId);
+        }
+        return result;
+    }
+
+    /**
+     * 初始化商品库存，并通知各节点清除售罄标记
+     * 分片时库存平均分到各分片，余数从第一个分片起各多一件；改变分片数后按新的归属分片判断重复购买
+     * @param productId 商品ID
+     * @param stock 库存
+     * @param shards 分片数，1表示不分片
+     */
+    public void initStock(String productId, int stock, int shards) {
+        int count = Math.max(1, Math.min(shards, MAX_SHARDS));
+        int previous = storedShardCount(productId);
+        RedisBatch batch = redisUtil.batch();
+        if (count == 1) {
+            batch.set(stockKey(productId), stock);
+            batch.delete(shardCountKey(productId));
+        } else {
+            for (int i = 0; i < count; i++) {
+                batch.set(stockKey(productId, i), stock / count + (i < stock % count ? 1 : 0));
+            }
+            batch.set(shardCountKey(productId), count);
+            batch.delete(stockKey(productId));
+        }
+        for (int i = count == 1 ? 0 : count; i < previous; i++) {
+            batch.delete(stockKey(productId, i));
+        }
+        batch.execute();
+        clearLocalState(productId);
+        redisUtil.publish(STOCK_RESET_CHANNEL, productId);
+    }
+
+    /**
+     * 库存对账：各分片的剩余库存和购买人数及合计
+     * @param productId 商品ID
+     * @return shards、stock、bought、perShard
+     */
+    public Map<String, Object> reconcile(String productId) {
+        int shards = storedShardCount(productId);
+        RedisBatch batch = redisUtil.batch();
+        List<RedisBatch.Result<Object>> stocks = new ArrayList<>(shards);
+        List<RedisBatch.Result<Long>> bought = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            stocks.add(batch.get(shards > 1 ? stockKey(productId, i) : stockKey(productId)));
+            bought.add(batch.sSize(shards > 1 ? boughtKey(productId, i) : boughtKey(productId)));
+        }
+        batch.execute();
+
+        long totalStock = 0;
+        long totalBought = 0;
+        List<Map<String, Object>> perShard = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            Object value = stocks.get(i).get();
+            long stock = value instanceof Number ? ((Number) value).longValue() : 0;
+            long users = bought.get(i).get() == null ? 0 : bought.get(i).get();
+            totalStock += stock;
+            totalBought += users;
+            Map<String, Object> shard = new LinkedHashMap<>();
+            shard.put("shard", i);
+            shard.put("stock", stock);
+            shard.put("bought", users);
+            perShard.add(shard);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("productId", productId);
+        result.put("shards", shards);
+        result.put("stock", totalStock);
+        result.put("bought", totalBought);
+        result.put("perShard", perShard);
+        return result;
+    }
+
+    /**
+     * 抢购结果统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("succeeded", succeeded.sum());
+        stats.put("duplicates", duplicates.sum());
+        stats.put("soldOutInRedis", rejectedInRedis.sum());
+        stats.put("soldOutLocally", rejectedLocally.sum());
+        stats.put("shardFallthroughs", fallthroughs.sum());
+        stats.put("soldOutProducts", soldOut.size());
+        return stats;
+    }
+
+    /**
+     * 收到库存重置通知，清除该商品的售罄标记和分片信息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object productId = redisUtil.deserialize(message.getBody());
+        if (productId != null) {
+            clearLocalState(productId.toString());
+        }
+    }
+
+    private SeckillResult purchaseSingle(String productId, String streamKey, Object[] args) {
+        Long code = redisTemplate.execute(PURCHASE_SCRIPT,
+                keys(streamKey, stockKey(productId), boughtKey(productId)), args);
+        if (code != null && code == 1) {
+            return SeckillResult.SUCCESS;
+        }
+        return code != null && code == 2 ? SeckillResult.ALREADY_BOUGHT : SeckillResult.SOLD_OUT;
+    }
+
+    private SeckillResult purchaseSharded(String productId, String userId, int shards, String streamKey,
+                                          Object[] args) {
+        int home = Math.floorMod(userId.hashCode(), shards);
+        String homeBought = boughtKey(productId, home);
+        Long code = redisTemplate.execute(CLAIM_SCRIPT,
+                keys(streamKey, stockKey(productId, home), homeBought), args);
+        if (code != null && code == 1) {
+            return SeckillResult.SUCCESS;
+        }
+        if (code != null && code == 2) {
+            return SeckillResult.ALREADY_BOUGHT;
+        }
+        // 所属分片为空，已登记购买，依次从其他分片扣减；扣减失败或出错时撤销登记，用户可重新抢购
+        Set<Integer> empty = emptyShards.computeIfAbsent(productId, key -> ConcurrentHashMap.newKeySet());
+        empty.add(home);
+        boolean taken = false;
+        try {
+            for (int step = 1; step < shards && !taken; step++) {
+                int shard = (home + step) % shards;
+                if (empty.contains(shard)) {
+                    continue;
+                }
+                fallthroughs.increment();
+                Long result = redisTemplate.execute(TAKE_SCRIPT, keys(streamKey, stockKey(productId, shard)), args);
+                taken = result != null && result == 1;
+                if (!taken) {
+                    empty.add(shard);
+                }
+            }
+        } finally {
+            if (!taken) {
+                redisTemplate.opsForSet().remove(homeBought, userId);
+            }
+        }
+        return taken ? SeckillResult.SUCCESS : SeckillResult.SOLD_OUT;
+    }
+
+    private int shardCount(String productId) {
+        return shardCounts.computeIfAbsent(productId, this::storedShardCount);
+    }
+
+    private int storedShardCount(String productId) {
+        Object value = redisUtil.get(shardCountKey(productId));
+        return value instanceof Number ? Math.max(1, ((Number) value).intValue()) : 1;
+    }
+
+    /**
+     * 是否有未到期的售罄标记，到期的标记连同分片信息一起清除
+     */
+    private boolean isMarkedSoldOut(String productId) {
+        Long expiresAt = soldOut.get(productId);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() < expiresAt) {
+            return true;
+        }
+        if (soldOut.remove(productId, expiresAt)) {
+            shardCounts.remove(productId);
+            emptyShards.remove(productId);
+        }
+        return false;
+    }
+
+    /**
+     * 收到库存重置：先增加重置次数再清除，进行中的抢购据此丢弃重置前得出的本地状态
+     */
+    private void clearLocalState(String productId) {
+        resets.incrementAndGet();
+        forget(productId);
+    }
+
+    private void forget(String productId) {
+        soldOut.remove(productId);
+        shardCounts.remove(productId);
+        emptyShards.remove(productId);
+    }
+
+    private static String stockKey(String productId) {
+        return "product:stock:" + productId;
+    }
+
+    private static String boughtKey(String productId) {
+        return "product:bought:" + productId;
+    }
+
+    /**
+     * 分片库存key，同一分片的库存和购买用户用相同的哈希标签，在集群中落在同一个槽位
+     */
+    private static String stockKey(String productId, int shard) {
+        return "product:stock:{" + productId + ":" + shard + "}";
+    }
+
+    private static String boughtKey(String productId, int shard) {
+        return "product:bought:{" + productId + ":" + shard + "}";
+    }
+
+    private static String shardCountKey(String productId) {
+        return "product:stock:shards:" + productId;
+    }
+
+    /**
+     * 脚本的key列表，启用订单队列时最后追加订单Stream
+     */
+    private static List<String> keys(String streamKey, String... keys) {
+        List<String> list = new ArrayList<>(Arrays.asList(keys));
+        if (streamKey != null) {
+            list.add(streamKey);
+        }
+        return list;
+    }
+
+    /**
+     * 扣减成功时写入订单的脚本片段：KEYS[streamKey]为订单Stream，未传入时不写；ARGV为用户ID、商品ID、抢购时间。
+     * 写订单在扣减之前，XADD出错时脚本中止，库存和购买登记都未改变
+     */
+    private static String addOrder(int streamKey) {
+        return "if KEYS[" + streamKey + "] then redis.call('xadd', KEYS[" + streamKey + "], '*', "
+                + "'productId', ARGV[2], 'userId', ARGV[1], 'time', ARGV[3]) end ";
+    }
+
+    /**
+     * 抢购结果
+     */
+    public enum SeckillResult {
+        SUCCESS("抢购成功"),
+        SOLD_OUT("商品已售罄"),
+        ALREADY_BOUGHT("您已购买过该商品");
+
+        /** 返回给用户的提示 */
+        private final String message;
+
+        SeckillResult(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.start.app.service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.start.app.analytics.Dimension;
+import org.start.app.analytics.TradeColumnStore;
+import org.start.app.config.AnalyticsConfig;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.model.InvalidRequestException;
+import org.start.app.model.TradeRecordChangeEvent;
+import org.start.app.model.TradeRecordQuery;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易记录列式分析服务
+ * 开启后由刷新器在后台按主键分批把交易记录加载到内存列式存储，之后定时按主键追加新记录，
+ * 并根据变更事件重新读取新增、修改、覆盖的记录、标记被删除的记录；所有写入由同一个刷新线程完成。
+ * 其他节点的修改和删除只能由本节点的主键追加感知新增部分，多节点部署时结果为近似值，可配置定时重新全量加载
+ */
+@Service
+public class TradeAnalyticsService {
+
+    private final AnalyticsConfig analyticsConfig;
+    private final int parallelism;
+    private final TradeIndexRefresher<TradeColumnStore> refresher;
+
+    public TradeAnalyticsService(TradeRecordMapper tradeRecordMapper, AnalyticsConfig analyticsConfig,
+                                 TradeWriteGeneration writeGeneration) {
+        this.analyticsConfig = analyticsConfig;
+        this.parallelism = analyticsConfig.getParallelism() > 0
+                ? analyticsConfig.getParallelism() : Runtime.getRuntime().availableProcessors();
+        this.refresher = new TradeIndexRefresher<>("列式存储", "trade-analytics-refresh", analyticsConfig,
+                TradeIndexRefresher.Loader.of(tradeRecordMapper::selectAnalyticsAfterId,
+                        tradeRecordMapper::selectAnalyticsByIds),
+                Long.MAX_VALUE, () -> new TradeColumnStore(analyticsConfig.getInitialCapacity()), writeGeneration);
+    }
+
+    /**
+     * 应用启动后在刷新线程中全量加载，完成后定时增量刷新
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (analyticsConfig.isEnabled()) {
+            refresher.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.stop();
+    }
+
+    /**
+     * 记录新增、修改、覆盖或删除后排队刷新，事务提交后执行
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(TradeRecordChangeEvent event) {
+        refresher.onChange(event);
+    }
+
+    /**
+     * 是否已完成全量加载
+     */
+    public boolean isReady() {
+        return refresher.isReady();
+    }
+
+    /**
+     * 按分页查询的条件过滤后分组统计笔数和金额
+     * @param query 过滤条件，分页和排序参数不生效
+     * @param groupBy 分组维度，可选tradeType、direction、status、paymentMethod、counterparty
+     * @param limit 最多返回的分组数，按笔数降序
+     * @return total、amount、groupCount、groups、scannedRows、elapsedMicros
+     * @throws InvalidRequestException 分组维度或过滤字段不支持
+     * @throws IllegalStateException 未开启或尚未加载完成
+     */
+    public Map<String, Object> aggregate(TradeRecordQuery query, List<String> groupBy, int limit) {
+        TradeColumnStore store = refresher.getIndex();
+        if (!refresher.isReady() || store == null) {
+            throw new IllegalStateException(analyticsConfig.isEnabled() ? "列式存储加载中" : "列式分析未开启");
+        }
+        List<Dimension> dimensions = new ArrayList<>();
+        if (groupBy != null) {
+            for (String field : new LinkedHashSet<>(groupBy)) {
+                dimensions.add(Dimension.ofField(field));
+            }
+        }
+        long start = System.nanoTime();
+        TradeColumnStore.Result result = store.aggregate(query, dimensions, parallelism);
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+        List<Map<String, Object>> groups = new ArrayList<>();
+        for (TradeColumnStore.Group group : result.getGroups()) {
+            if (groups.size() >= limit) {
+                break;
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < dimensions.size(); i++) {
+                row.put(dimensions.get(i).getField(), group.getValues()[i]);
+            }
+            row.put("count", group.getCount());
+            row.put("amount", group.getAmount());
+            groups.add(row);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("total", result.getCount());
+        response.put("amount", result.getAmount());
+        response.put("groupCount", result.getGroups().size());
+        response.put("groups", groups);
+        response.put("scannedRows", result.getScannedRows());
+        response.put("elapsedMicros", elapsedMicros);
+        return response;
+    }
+
+    /**
+     * 列式存储状态
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", analyticsConfig.isEnabled());
+        status.putAll(refresher.stats());
+        TradeColumnStore current = refresher.getIndex();
+        if (current != null) {
+            status.put("liveRows", current.getLiveRows());
+            status.put("dictionarySizes", current.dictionarySizes());
+        }
+        status.put("parallelism", parallelism);
+        return status;
+    }
+}
@@ -0,0 +1,151 @@
+package org.start.app.service;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.start.app.analytics.BitmapIndex;
+import org.start.app.analytics.Dimension;
+import org.start.app.config.BitmapIndexConfig;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.model.TradeRecordChangeEvent;
+import org.start.app.model.TradeRecordQuery;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 交易记录位图索引服务
+ * 由刷新器在启动后按主键分批建立索引，之后定时按主键追加其他节点新写入的记录；
+ * 本节点的新增、导入、修改和删除在事务提交后排队，立即由刷新线程按ID重新读取并更新索引。
+ * 只有等值条件时总数直接由位图求交得出；分页查询在候选ID较少时改写为按ID查找，
+ * 追加位置之后的新记录不受候选ID限制，避免漏掉尚未索引的记录。
+ * 统计和预选只在索引与全部写入同步时使用：其他节点的修改、删除或提交顺序晚于追加位置的新增使索引不同步，
+ * 此时回退到数据库，直到刷新器重新全量加载
+ */
+@Service
+public class TradeBitmapIndexService {
+
+    private final BitmapIndexConfig indexConfig;
+    private final TradeIndexRefresher<BitmapIndex> refresher;
+
+    public TradeBitmapIndexService(TradeRecordMapper tradeRecordMapper, BitmapIndexConfig indexConfig,
+                                   TradeWriteGeneration writeGeneration) {
+        this.indexConfig = indexConfig;
+        this.refresher = new TradeIndexRefresher<>("位图索引", "trade-bitmap-index", indexConfig,
+                TradeIndexRefresher.Loader.of(tradeRecordMapper::selectAnalyticsAfterId,
+                        tradeRecordMapper::selectAnalyticsByIds),
+                BitmapIndex.MAX_ID, BitmapIndex::new, writeGeneration);
+    }
+
+    /**
+     * 应用启动后在后台建立索引，完成后定时追加新记录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (indexConfig.isEnabled()) {
+            refresher.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.stop();
+    }
+
+    /**
+     * 本节点写入后排队更新索引，事务提交后执行
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(TradeRecordChangeEvent event) {
+        refresher.onChange(event);
+    }
+
+    /**
+     * 用位图索引统计总数
+     * @param query 查询条件
+     * @return 总数；索引未就绪、与写入不同步或条件中有索引列以外的字段时返回null，由数据库统计
+     */
+    public Long count(TradeRecordQuery query) {
+        BitmapIndex index = refresher.getIndex();
+        if (index == null || hasOtherConditions(query)) {
+            return null;
+        }
+        Map<Dimension, String> filters = filters(query);
+        if (filters.isEmpty() || !refresher.isCurrent()) {
+            return null;
+        }
+        return index.count(filters);
+    }
+
+    /**
+     * 用位图索引预选分页查询的候选ID
+     * 索引与写入同步、条件中有索引列且候选ID不超过上限时写入query的candidateIds和candidateMaxId，否则清空
+     * @param query 查询条件
+     */
+    public void preselect(TradeRecordQuery query) {
+        query.setCandidateIds(null);
+        query.setCandidateMaxId(null);
+        BitmapIndex index = refresher.getIndex();
+        if (index == null) {
+            return;
+        }
+        Map<Dimension, String> filters = filters(query);
+        if (filters.isEmpty() || !refresher.isCurrent()) {
+            return;
+        }
+        long maxId = refresher.getTailId();
+        RoaringBitmap candidates = index.select(filters);
+        if (candidates.getLongCardinality() > indexConfig.getCandidateLimit()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(candidates.getCardinality());
+        candidates.forEach((int id) -> ids.add(Integer.toUnsignedLong(id)));
+        query.setCandidateIds(ids);
+        query.setCandidateMaxId(maxId);
+    }
+
+    /**
+     * 索引状态
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", indexConfig.isEnabled());
+        stats.putAll(refresher.stats());
+        BitmapIndex index = refresher.getIndex();
+        if (index != null) {
+            stats.putAll(index.stats());
+        }
+        return stats;
+    }
+
+    private static Map<Dimension, String> filters(TradeRecordQuery query) {
+        Map<Dimension, String> filters = new EnumMap<>(Dimension.class);
+        put(filters, Dimension.TRADE_TYPE, query.getTradeType());
+        put(filters, Dimension.DIRECTION, query.getDirection());
+        put(filters, Dimension.STATUS, query.getStatus());
+        put(filters, Dimension.PAYMENT_METHOD, query.getPaymentMethod());
+        return filters;
+    }
+
+    private static void put(Map<Dimension, String> filters, Dimension dimension, String value) {
+        if (value != null && !value.isEmpty()) {
+            filters.put(dimension, value);
+        }
+    }
+
+    private static boolean hasOtherConditions(TradeRecordQuery query) {
+        return notBlank(query.getCounterparty()) || notBlank(query.getTradeNo())
+                || notBlank(query.getMerchantOrderNo()) || query.getStartTime() != null
+                || query.getEndTime() != null || query.getMinAmount() != null || query.getMaxAmount() != null;
+    }
+
+    private static boolean notBlank(String value) {
+        return value != null && !value.isEmpty();
+    }
+}
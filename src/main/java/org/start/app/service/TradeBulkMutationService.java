@@ -0,0 +1,246 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.start.app.config.BulkMutationConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.model.BulkMutationRequest;
+import org.start.app.model.InvalidRequestException;
+import org.start.app.model.TradeRecordChangeEvent;
+import org.start.app.model.TradeRecordChangeEvent.ChangeType;
+import org.start.app.model.TradeRecordQuery;
+import org.start.app.util.LockRetry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按条件批量删除、修改
+ * 按主键顺序分段处理：每段先不加锁读出一段符合条件的ID，再在一个短事务中按主键锁定、
+ * 重新检查条件后删除或修改，同步汇总表并发布变更事件。
+ * 每个事务只持有一段记录的锁，binlog也按段产生，段间可暂停给从库回放留出时间。
+ * 同一时间只执行一个任务，进度可查询，可在段间取消，已提交的段保留
+ */
+@Service
+public class TradeBulkMutationService {
+    private static final Logger logger = LoggerFactory.getLogger(TradeBulkMutationService.class);
+
+    private final TradeRecordMapper tradeRecordMapper;
+    private final TradeRollupService tradeRollupService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BulkMutationConfig bulkMutationConfig;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean cancelRequested;
+    private volatile Map<String, Object> status = Collections.singletonMap("state", "IDLE");
+
+    public TradeBulkMutationService(TradeRecordMapper tradeRecordMapper, TradeRollupService tradeRollupService,
+                                    TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+                                    BulkMutationConfig bulkMutationConfig) {
+        this.tradeRecordMapper = tradeRecordMapper;
+        this.tradeRollupService = tradeRollupService;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.bulkMutationConfig = bulkMutationConfig;
+    }
+
+    /**
+     * 后台按条件删除
+     * @return 已有任务在执行时返回false
+     * @throws InvalidRequestException 未指定任何条件
+     */
+    public boolean deleteByQuery(BulkMutationRequest request) {
+        return start(ChangeType.DELETE, request);
+    }
+
+    /**
+     * 后台按条件修改
+     * @return 已有任务在执行时返回false
+     * @throws InvalidRequestException 未指定任何条件、没有要修改的字段或要修改交易单号
+     */
+    public boolean updateByQuery(BulkMutationRequest request) {
+        TradeRecord changes = request.getChanges();
+        if (changes == null || !hasChanges(changes)) {
+            throw new InvalidRequestException("未指定要修改的字段");
+        }
+        if (changes.getTradeNo() != null) {
+            throw new InvalidRequestException("不能批量修改交易单号");
+        }
+        return start(ChangeType.UPDATE, request);
+    }
+
+    /**
+     * 请求在当前段提交后停止
+     * @return 没有执行中的任务时返回false
+     */
+    public boolean cancel() {
+        if (!running.get()) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    /**
+     * 最近一次任务的状态和进度
+     */
+    public Map<String, Object> status() {
+        return status;
+    }
+
+    private boolean start(ChangeType type, BulkMutationRequest request) {
+        TradeRecordQuery query = request.getQuery();
+        if (query == null || !hasConditions(query)) {
+            throw new InvalidRequestException("至少需要指定一个筛选条件");
+        }
+        int chunkSize = request.getChunkSize() == null ? bulkMutationConfig.getChunkSize() : request.getChunkSize();
+        chunkSize = Math.max(1, Math.min(chunkSize, bulkMutationConfig.getMaxChunkSize()));
+        long pauseMillis = Math.max(0, request.getPauseMillis() == null
+                ? bulkMutationConfig.getPauseMillis() : request.getPauseMillis());
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        cancelRequested = false;
+        Map<String, Object> started = new LinkedHashMap<>();
+        started.put("state", "RUNNING");
+        started.put("type", type.name());
+        started.put("chunkSize", chunkSize);
+        started.put("pauseMillis", pauseMillis);
+        started.put("startedAt", new Date());
+        status = started;
+        int size = chunkSize;
+        Thread thread = new Thread(() -> {
+            try {
+                run(type, query, request.getChanges(), size, pauseMillis);
+            } finally {
+                running.set(false);
+            }
+        }, "trade-bulk-mutation");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void run(ChangeType type, TradeRecordQuery query, TradeRecord changes, int chunkSize, long pauseMillis) {
+        long startedAt = System.currentTimeMillis();
+        long scanned = 0;
+        long affected = 0;
+        int chunks = 0;
+        try {
+            Map<String, Object> progress = new LinkedHashMap<>(status);
+            progress.put("matched", tradeRecordMapper.countByQuery(query));
+            status = progress;
+
+            long afterId = 0;
+            while (!cancelRequested) {
+                query.setScanAfterId(afterId);
+                query.setScanLimit(chunkSize);
+                List<Long> ids = tradeRecordMapper.selectIdsByQuery(query);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                afterId = ids.get(ids.size() - 1);
+                affected += LockRetry.execute(type == ChangeType.DELETE ? "批量删除" : "批量修改", () -> {
+                    Integer rows = transactionTemplate.execute(tx -> writeChunk(type, query, ids, changes));
+                    return rows == null ? 0 : rows;
+                });
+                scanned += ids.size();
+                chunks++;
+
+                progress = new LinkedHashMap<>(status);
+                progress.put("scanned", scanned);
+                progress.put("affected", affected);
+                progress.put("chunks", chunks);
+                progress.put("lastId", afterId);
+                progress.put("elapsedMillis", System.currentTimeMillis() - startedAt);
+                status = progress;
+                if (ids.size() < chunkSize) {
+                    break;
+                }
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+
+            Map<String, Object> finished = new LinkedHashMap<>(status);
+            finished.put("state", cancelRequested ? "CANCELLED" : "COMPLETED");
+            finished.put("finishedAt", new Date());
+            status = finished;
+            logger.info("按条件批量{}{}，{} 段，扫描 {} 条，影响 {} 条，耗时 {}ms",
+                    type == ChangeType.DELETE ? "删除" : "修改", cancelRequested ? "已取消" : "完成",
+                    chunks, scanned, affected, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Map<String, Object> failed = new LinkedHashMap<>(status);
+            failed.put("state", "FAILED");
+            failed.put("error", e.getMessage());
+            failed.put("finishedAt", new Date());
+            status = failed;
+            logger.error("按条件批量{}失败，已提交的段保留", type == ChangeType.DELETE ? "删除" : "修改", e);
+        }
+    }
+
+    /**
+     * 在事务内处理一段：锁定仍符合条件的记录，删除或修改后同步汇总表，提交后发布变更事件
+     */
+    private int writeChunk(ChangeType type, TradeRecordQuery query, List<Long> ids, TradeRecord changes) {
+        query.setScanIds(ids);
+        List<TradeRecord> previous = tradeRecordMapper.selectByQueryForUpdate(query);
+        if (previous.isEmpty()) {
+            return 0;
+        }
+        List<Long> lockedIds = new ArrayList<>(previous.size());
+        List<String> tradeNos = new ArrayList<>(previous.size());
+        for (TradeRecord record : previous) {
+            lockedIds.add(record.getId());
+            tradeNos.add(record.getTradeNo());
+        }
+        int rows;
+        if (type == ChangeType.DELETE) {
+            rows = tradeRecordMapper.deleteByIds(lockedIds);
+            tradeRollupService.apply(tradeRollupService.newDelta().subtract(previous));
+        } else {
+            rows = tradeRecordMapper.updateByIds(lockedIds, changes);
+            if (tradeRollupService.isEnabled()) {
+                tradeRollupService.apply(tradeRollupService.newDelta()
+                        .subtract(previous).add(tradeRecordMapper.selectByIds(lockedIds)));
+            }
+        }
+        eventPublisher.publishEvent(new TradeRecordChangeEvent(type, lockedIds, tradeNos));
+        return rows;
+    }
+
+    private static boolean hasConditions(TradeRecordQuery query) {
+        return notEmpty(query.getTradeType()) || notEmpty(query.getCounterparty())
+                || notEmpty(query.getDirection()) || notEmpty(query.getStatus())
+                || query.getStartTime() != null || query.getEndTime() != null
+                || query.getMinAmount() != null || query.getMaxAmount() != null
+                || notEmpty(query.getPaymentMethod()) || notEmpty(query.getTradeNo())
+                || notEmpty(query.getMerchantOrderNo());
+    }
+
+    private static boolean hasChanges(TradeRecord changes) {
+        return changes.getTradeTime() != null || changes.getTradeType() != null
+                || changes.getCounterparty() != null || changes.getProduct() != null
+                || changes.getDirection() != null || changes.getAmount() != null
+                || changes.getPaymentMethod() != null || changes.getStatus() != null
+                || changes.getTradeNo() != null || changes.getMerchantOrderNo() != null
+                || changes.getRemarks() != null;
+    }
+
+    private static boolean notEmpty(String value) {
+        return value != null && !value.isEmpty();
+    }
+}
@@ -0,0 +1,413 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.start.app.analytics.TradeRecordIndex;
+import org.start.app.config.IndexRefreshConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.model.TradeRecordChangeEvent;
+import org.start.app.model.TradeRecordChangeEvent.ChangeType;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 进程内交易记录索引的刷新器，列式存储、位图索引、倒排索引共用
+ * 所有写入都在同一个刷新线程中完成：首次按主键分批全量加载，之后定时按主键追加新记录；
+ * 本节点的新增、导入、修改和删除在事务提交后排队，立即由刷新线程按ID重新读取，
+ * 重新读取时已不存在的记录按删除处理，提交顺序与主键顺序不一致的新增记录也由此补上。
+ * 重建时加载到新索引，完成后替换旧索引，加载期间提交的变更仍在队列中，替换后补上。
+ * 其他节点的修改、删除和提交顺序晚于追加位置的新增都不会出现在本节点的事件中：
+ * 加载时记下写入代数，之后代数的增量与本节点处理过的事件数相等才认为索引与全部写入同步，
+ * 不同步时由使用方回退到数据库，并按配置的间隔重新全量加载
+ * @param <T> 索引类型
+ */
+public class TradeIndexRefresher<T extends TradeRecordIndex> {
+    private static final Logger logger = LoggerFactory.getLogger(TradeIndexRefresher.class);
+    private static final long UNKNOWN = -1;
+
+    /** 索引名称，用于日志 */
+    private final String name;
+    private final String threadName;
+    private final IndexRefreshConfig config;
+    private final Loader loader;
+    /** 索引能容纳的最大记录ID */
+    private final long maxId;
+    /** 创建空索引 */
+    private final Supplier<T> factory;
+    private final TradeWriteGeneration writeGeneration;
+    /** 待重新读取的记录ID */
+    private final ConcurrentLinkedQueue<Long> pendingReloads = new ConcurrentLinkedQueue<>();
+    /** 待删除的记录ID */
+    private final ConcurrentLinkedQueue<Long> pendingDeletes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    /** 收到的变更事件数，入队后才递增 */
+    private final AtomicLong receivedEvents = new AtomicLong();
+
+    private volatile T index;
+    /** 按主键追加的位置，不大于该ID的记录都已加载 */
+    private volatile long tailId;
+    private volatile boolean ready;
+    /** 记录ID超出索引范围后停用，直到重启 */
+    private volatile boolean disabled;
+    private volatile Date refreshedAt;
+    /** 已写入索引的变更事件数 */
+    private volatile long appliedEvents;
+    /** 上次全量加载开始时的写入代数，未知或之后有变更处理失败时为-1 */
+    private volatile long syncGeneration = UNKNOWN;
+    /** 上次全量加载开始时收到的变更事件数 */
+    private volatile long syncEvents;
+    /** 上次全量加载完成的时间 */
+    private volatile long syncedAt;
+    private ScheduledExecutorService refresher;
+
+    /**
+     * @param name 索引名称，用于日志
+     * @param threadName 刷新线程名
+     * @param config 刷新参数
+     * @param loader 记录读取方式
+     * @param maxId 索引能容纳的最大记录ID，超出后停用
+     * @param factory 创建空索引
+     * @param writeGeneration 写入代数
+     */
+    public TradeIndexRefresher(String name, String threadName, IndexRefreshConfig config, Loader loader, long maxId,
+                               Supplier<T> factory, TradeWriteGeneration writeGeneration) {
+        this.name = name;
+        this.threadName = threadName;
+        this.config = config;
+        this.loader = loader;
+        this.maxId = maxId;
+        this.factory = factory;
+        this.writeGeneration = writeGeneration;
+    }
+
+    /**
+     * 启动刷新线程，立即开始全量加载，完成后定时追加
+     */
+    public void start() {
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, 0, config.getRefreshIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * 变更事件排队，由刷新线程立即处理；没有ID的事件也计数，与写入代数的递增一一对应
+     */
+    public void onChange(TradeRecordChangeEvent event) {
+        if (refresher == null || disabled) {
+            return;
+        }
+        if (event.getType() == ChangeType.DELETE) {
+            pendingDeletes.addAll(event.getIds());
+        } else {
+            pendingReloads.addAll(event.getIds());
+        }
+        receivedEvents.incrementAndGet();
+        refresher.execute(this::applyPendingQuietly);
+    }
+
+    /**
+     * 索引是否包含全部已提交的写入
+     * 队列已处理完，且加载以来写入代数的增量等于本节点处理过的事件数，即没有其他节点的写入；
+     * 读取Redis失败时按不同步处理
+     */
+    public boolean isCurrent() {
+        long base = syncGeneration;
+        long applied = appliedEvents;
+        if (!ready || base == UNKNOWN || applied != receivedEvents.get()) {
+            return false;
+        }
+        try {
+            return writeGeneration.current() - base == applied - syncEvents;
+        } catch (Exception e) {
+            logger.debug("读取写入代数失败，{}按不同步处理: {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 在刷新线程中从表重新加载，完成后替换旧索引
+     * @return 已有重建任务、未启动或已停用时返回false
+     */
+    public boolean rebuild() {
+        if (refresher == null || disabled || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        refresher.execute(() -> {
+            try {
+                reload();
+            } catch (Exception e) {
+                logger.error("{}重建失败，继续使用旧索引", name, e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 当前索引，首次加载完成前为null
+     */
+    public T getIndex() {
+        return index;
+    }
+
+    /**
+     * 按主键追加的位置，不大于该ID的记录都已加载
+     */
+    public long getTailId() {
+        return tailId;
+    }
+
+    /**
+     * 是否已完成首次加载
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 刷新状态
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("disabled", disabled);
+        stats.put("rebuilding", rebuilding.get());
+        stats.put("current", isCurrent());
+        stats.put("tailId", tailId);
+        stats.put("refreshedAt", refreshedAt);
+        stats.put("syncedAt", syncedAt > 0 ? new Date(syncedAt) : null);
+        return stats;
+    }
+
+    /**
+     * 首次加载，之后处理排队的变更并按主键追加新记录；与写入不同步且超过重建间隔时重新全量加载
+     */
+    private void refresh() {
+        if (disabled) {
+            return;
+        }
+        try {
+            if (index == null || resyncDue()) {
+                reload();
+                return;
+            }
+            applyPending();
+            long loaded = load(index, tailId);
+            if (loaded < 0) {
+                return;
+            }
+            tailId = loaded;
+            refreshedAt = new Date();
+        } catch (Exception e) {
+            logger.warn("{}刷新失败，下次继续: {}", name, e.getMessage());
+        }
+    }
+
+    private boolean resyncDue() {
+        long interval = config.getResyncIntervalMillis();
+        return interval > 0 && System.currentTimeMillis() - syncedAt >= interval && !isCurrent();
+    }
+
+    /**
+     * 全量加载到新索引后替换旧索引
+     * 加载前记下写入代数和事件数，加载期间的写入由之后的事件补上，或使代数多出而判为不同步
+     */
+    private void reload() {
+        long start = System.currentTimeMillis();
+        long generation = readGeneration();
+        long events = receivedEvents.get();
+        T rebuilt = factory.get();
+        long loaded = load(rebuilt, 0);
+        if (loaded < 0) {
+            return;
+        }
+        rebuilt.optimize();
+        index = rebuilt;
+        tailId = loaded;
+        syncGeneration = generation;
+        syncEvents = events;
+        syncedAt = System.currentTimeMillis();
+        ready = true;
+        applyPending();
+        refreshedAt = new Date();
+        logger.info("{}加载完成，追加位置 {}，耗时 {}ms", name, loaded, System.currentTimeMillis() - start);
+    }
+
+    private long readGeneration() {
+        try {
+            return writeGeneration.current();
+        } catch (Exception e) {
+            logger.warn("读取写入代数失败，{}在下次重建前按不同步处理: {}", name, e.getMessage());
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * 按主键顺序把afterId之后的记录加入索引
+     * @return 加载到的最大ID；记录ID超出范围时停用并返回-1
+     */
+    private long load(T target, long afterId) {
+        int batchSize = Math.max(1, config.getLoadBatchSize());
+        long loaded = afterId;
+        List<TradeRecord> batch;
+        do {
+            batch = loader.afterId(loaded, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            if (!checkIds(batch)) {
+                return -1;
+            }
+            target.put(batch);
+            loaded = batch.get(batch.size() - 1).getId();
+        } while (batch.size() == batchSize && !Thread.currentThread().isInterrupted());
+        return loaded;
+    }
+
+    private void applyPendingQuietly() {
+        if (disabled) {
+            return;
+        }
+        try {
+            applyPending();
+        } catch (Exception e) {
+            // 失败的ID已出队，下次重建前这些记录可能保持旧值，已由applyPending标记为不同步
+            logger.warn("{}更新失败: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * 处理排队的修改和删除，首次加载完成前保留在队列中；失败时标记为不同步，直到重新全量加载
+     */
+    private void applyPending() {
+        T target = index;
+        if (target == null) {
+            return;
+        }
+        long received = receivedEvents.get();
+        try {
+            if (apply(target)) {
+                appliedEvents = received;
+            }
+        } catch (RuntimeException e) {
+            syncGeneration = UNKNOWN;
+            throw e;
+        }
+    }
+
+    /**
+     * 删除和重新读取出队的记录，重新读取时已不存在的记录按删除处理
+     * @return 是否成功；记录ID超出范围时停用并返回false
+     */
+    private boolean apply(T target) {
+        Set<Long> deletes = drain(pendingDeletes);
+        if (!deletes.isEmpty()) {
+            target.remove(deletes);
+        }
+        Set<Long> reloads = drain(pendingReloads);
+        reloads.removeAll(deletes);
+        if (reloads.isEmpty()) {
+            return true;
+        }
+        List<Long> ids = new ArrayList<>(reloads);
+        int batchSize = Math.max(1, config.getLoadBatchSize());
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            Set<Long> missing = new HashSet<>(chunk);
+            List<TradeRecord> records = loader.byIds(chunk);
+            if (!checkIds(records)) {
+                return false;
+            }
+            target.put(records);
+            for (TradeRecord record : records) {
+                missing.remove(record.getId());
+            }
+            if (!missing.isEmpty()) {
+                target.remove(missing);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 记录ID超出索引范围时停用
+     */
+    private boolean checkIds(List<TradeRecord> records) {
+        for (TradeRecord record : records) {
+            if (record.getId() > maxId) {
+                disabled = true;
+                ready = false;
+                refresher.shutdown();
+                logger.error("记录ID {} 超出{}范围，索引停用", record.getId(), name);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<Long> drain(ConcurrentLinkedQueue<Long> queue) {
+        Set<Long> ids = new LinkedHashSet<>();
+        Long id;
+        while ((id = queue.poll()) != null) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * 记录读取方式，各索引只读取自己需要的列
+     */
+    public interface Loader {
+
+        /**
+         * 按主键顺序读取afterId之后的记录
+         */
+        List<TradeRecord> afterId(long afterId, int limit);
+
+        /**
+         * 按ID读取记录，不存在的ID不返回
+         */
+        List<TradeRecord> byIds(List<Long> ids);
+
+        static Loader of(BiFunction<Long, Integer, List<TradeRecord>> afterId,
+                         Function<List<Long>, List<TradeRecord>> byIds) {
+            return new Loader() {
+                @Override
+                public List<TradeRecord> afterId(long id, int limit) {
+                    return afterId.apply(id, limit);
+                }
+
+                @Override
+                public List<TradeRecord> byIds(List<Long> ids) {
+                    return byIds.apply(ids);
+                }
+            };
+        }
+    }
+}
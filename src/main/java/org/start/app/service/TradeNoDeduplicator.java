@@ -0,0 +1,306 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.start.app.config.DedupConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.excel.DuplicateTradeNoException;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.model.DedupPolicy;
+import org.start.app.util.BloomFilter;
+import org.start.app.util.RedisUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 交易单号去重器
+ * 先用布隆过滤器筛出可能重复的单号，只有这部分到数据库按批确认，再按策略跳过、覆盖或拒绝；
+ * 过滤器启动后从数据库流式预热，预热完成前所有单号都视为可能重复。
+ * 过滤器只增不减，删除记录后的单号会被误判为可能重复，代价只是一次数据库确认；
+ * 其他节点写入的单号若未同步到本地（未开启Redis镜像），插入时由交易单号登记表的主键兜底，冲突后全量确认重试一次
+ */
+@Component
+public class TradeNoDeduplicator {
+    private static final Logger logger = LoggerFactory.getLogger(TradeNoDeduplicator.class);
+    /** Redis位图Key前缀，后缀为位数和哈希函数个数，配置变化后不会读到旧位图 */
+    private static final String MIRROR_KEY_PREFIX = "trade:bloom:trade_no:";
+    /** 预热时每批写入Redis位图的单号数 */
+    private static final int WARM_UP_BATCH = 1000;
+
+    private final TradeRecordMapper tradeRecordMapper;
+    private final RedisUtil redisUtil;
+    private final DedupConfig dedupConfig;
+    /** 本地布隆过滤器 */
+    private final BloomFilter bloomFilter;
+    /** Redis位图Key */
+    private final String mirrorKey;
+    /** 预热是否完成 */
+    private volatile boolean ready;
+
+    public TradeNoDeduplicator(TradeRecordMapper tradeRecordMapper, RedisUtil redisUtil, DedupConfig dedupConfig) {
+        this.tradeRecordMapper = tradeRecordMapper;
+        this.redisUtil = redisUtil;
+        this.dedupConfig = dedupConfig;
+        this.bloomFilter = new BloomFilter(dedupConfig.getExpectedInsertions(), dedupConfig.getFpp());
+        this.mirrorKey = MIRROR_KEY_PREFIX + bloomFilter.getBitSize() + ":" + bloomFilter.getHashCount();
+    }
+
+    /**
+     * 应用启动后在后台线程预热过滤器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread thread = new Thread(this::loadExisting, "trade-no-bloom-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 按策略去重后写入一个批次
+     * @param batch 交易记录批次
+     * @param policy 重复处理策略
+     * @param writer 写入操作，需在一个事务内完成插入和覆盖
+     * @return 写入（插入或覆盖）的记录数，不含跳过的重复记录
+     * @throws DuplicateTradeNoException REJECT策略下存在重复单号
+     */
+    public int write(List<TradeRecord> batch, DedupPolicy policy, ChunkWriter writer) {
+        if (policy == null || policy == DedupPolicy.NONE) {
+            writer.write(batch, Collections.emptyList());
+            record(batch);
+            return batch.size();
+        }
+        List<TradeRecord> unique = dedupWithinBatch(batch, policy);
+        try {
+            return doWrite(unique, policy, writer, false);
+        } catch (DuplicateKeyException e) {
+            // 过滤器漏掉了其他节点或并发批次刚写入的单号，全部到数据库确认后重试
+            logger.warn("批次存在过滤器未识别的重复单号，全量确认后重试: {}", e.getMostSpecificCause().getMessage());
+            return doWrite(unique, policy, writer, true);
+        }
+    }
+
+    /**
+     * 确认一组单号都不在库中，REJECT策略导入前整体预检，保证发现重复时还没有写入任何批次
+     * @param tradeNos 待导入的单号
+     * @throws DuplicateTradeNoException 存在已入库的单号
+     */
+    public void checkAbsent(Collection<String> tradeNos) {
+        Map<String, Long> existing = findExisting(new ArrayList<>(tradeNos), false);
+        if (!existing.isEmpty()) {
+            throw new DuplicateTradeNoException(new ArrayList<>(existing.keySet()));
+        }
+    }
+
+    /**
+     * 记录单条写入的交易单号
+     * @param tradeNo 交易单号
+     */
+    public void record(String tradeNo) {
+        if (tradeNo == null) {
+            return;
+        }
+        long[] indexes = bloomFilter.indexes(tradeNo);
+        bloomFilter.putIndexes(indexes);
+        if (dedupConfig.isRedisMirror()) {
+            redisUtil.setBits(mirrorKey, indexes);
+        }
+    }
+
+    /**
+     * 预热是否完成
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    private int doWrite(List<TradeRecord> records, DedupPolicy policy, ChunkWriter writer, boolean confirmAll) {
+        List<String> tradeNos = new ArrayList<>(records.size());
+        for (TradeRecord record : records) {
+            tradeNos.add(record.getTradeNo());
+        }
+        Map<String, Long> existing = findExisting(tradeNos, confirmAll);
+        if (existing.isEmpty()) {
+            writer.write(records, Collections.emptyList());
+            record(records);
+            return records.size();
+        }
+        if (policy == DedupPolicy.REJECT) {
+            throw new DuplicateTradeNoException(new ArrayList<>(existing.keySet()));
+        }
+
+        List<TradeRecord> inserts = new ArrayList<>(records.size() - existing.size());
+        List<TradeRecord> upserts = new ArrayList<>(existing.size());
+        for (TradeRecord record : records) {
+            Long existingId = existing.get(record.getTradeNo());
+            if (existingId == null) {
+                inserts.add(record);
+            } else if (policy == DedupPolicy.UPSERT) {
+                // 覆盖不改变主键，回填ID供变更事件失效缓存
+                record.setId(existingId);
+                upserts.add(record);
+            }
+        }
+        writer.write(inserts, upserts);
+        record(inserts);
+        logger.debug("批次 {} 条中 {} 条单号已存在，策略 {}", records.size(), existing.size(), policy);
+        return inserts.size() + upserts.size();
+    }
+
+    /**
+     * 批次内按单号去重：SKIP保留第一条，UPSERT保留最后一条，REJECT直接失败
+     */
+    private List<TradeRecord> dedupWithinBatch(List<TradeRecord> batch, DedupPolicy policy) {
+        Map<String, TradeRecord> byTradeNo = new LinkedHashMap<>(batch.size() * 2);
+        List<String> duplicates = new ArrayList<>();
+        for (TradeRecord record : batch) {
+            TradeRecord previous = byTradeNo.putIfAbsent(record.getTradeNo(), record);
+            if (previous != null) {
+                duplicates.add(record.getTradeNo());
+                if (policy == DedupPolicy.UPSERT) {
+                    byTradeNo.put(record.getTradeNo(), record);
+                }
+            }
+        }
+        if (duplicates.isEmpty()) {
+            return batch;
+        }
+        if (policy == DedupPolicy.REJECT) {
+            throw new DuplicateTradeNoException(duplicates);
+        }
+        return new ArrayList<>(byTradeNo.values());
+    }
+
+    /**
+     * 查出已存在于数据库的单号及其ID
+     * @param confirmAll 为true时不经过滤器，全部到数据库确认
+     */
+    private Map<String, Long> findExisting(List<String> tradeNos, boolean confirmAll) {
+        List<String> candidates;
+        if (confirmAll || !ready) {
+            candidates = tradeNos;
+        } else {
+            candidates = new ArrayList<>();
+            screen(tradeNos, candidates);
+        }
+
+        Map<String, Long> existing = new HashMap<>();
+        int chunkSize = Math.max(1, dedupConfig.getConfirmChunkSize());
+        for (int from = 0; from < candidates.size(); from += chunkSize) {
+            for (TradeRecord found : tradeRecordMapper.selectIdsByTradeNos(
+                    candidates.subList(from, Math.min(from + chunkSize, candidates.size())))) {
+                existing.put(found.getTradeNo(), found.getId());
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * 用本地过滤器和Redis位图筛出可能重复的单号
+     * 本地判定不存在的单号再查一次Redis位图（一次管道往返），以识别其他节点新写入的单号
+     */
+    private void screen(List<String> tradeNos, List<String> candidates) {
+        List<String> localMisses = new ArrayList<>();
+        List<long[]> missIndexes = new ArrayList<>();
+        for (String tradeNo : tradeNos) {
+            long[] indexes = bloomFilter.indexes(tradeNo);
+            if (bloomFilter.containsIndexes(indexes)) {
+                candidates.add(tradeNo);
+            } else if (dedupConfig.isRedisMirror()) {
+                localMisses.add(tradeNo);
+                missIndexes.add(indexes);
+            }
+        }
+        if (localMisses.isEmpty()) {
+            return;
+        }
+
+        int hashCount = bloomFilter.getHashCount();
+        long[] offsets = new long[localMisses.size() * hashCount];
+        for (int i = 0; i < missIndexes.size(); i++) {
+            System.arraycopy(missIndexes.get(i), 0, offsets, i * hashCount, hashCount);
+        }
+        List<Boolean> bits = redisUtil.getBits(mirrorKey, offsets);
+        for (int i = 0; i < localMisses.size(); i++) {
+            boolean all = true;
+            for (int j = 0; j < hashCount && all; j++) {
+                all = bits.get(i * hashCount + j);
+            }
+            if (all) {
+                candidates.add(localMisses.get(i));
+                bloomFilter.putIndexes(missIndexes.get(i));
+            }
+        }
+    }
+
+    private void record(List<TradeRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        int hashCount = bloomFilter.getHashCount();
+        long[] offsets = new long[records.size() * hashCount];
+        for (int i = 0; i < records.size(); i++) {
+            long[] indexes = bloomFilter.indexes(records.get(i).getTradeNo());
+            bloomFilter.putIndexes(indexes);
+            System.arraycopy(indexes, 0, offsets, i * hashCount, hashCount);
+        }
+        if (dedupConfig.isRedisMirror()) {
+            redisUtil.setBits(mirrorKey, offsets);
+        }
+    }
+
+    /**
+     * 从数据库流式加载全部单号；开启镜像且Redis位图不存在时同时写入位图
+     */
+    private void loadExisting() {
+        long start = System.currentTimeMillis();
+        try {
+            boolean populateMirror = dedupConfig.isRedisMirror() && !Boolean.TRUE.equals(redisUtil.hasKey(mirrorKey));
+            int hashCount = bloomFilter.getHashCount();
+            long[] pending = new long[WARM_UP_BATCH * hashCount];
+            int[] pendingCount = {0};
+            long[] loaded = {0};
+            tradeRecordMapper.scanTradeNos(context -> {
+                long[] indexes = bloomFilter.indexes(context.getResultObject());
+                bloomFilter.putIndexes(indexes);
+                loaded[0]++;
+                if (populateMirror) {
+                    System.arraycopy(indexes, 0, pending, pendingCount[0] * hashCount, hashCount);
+                    if (++pendingCount[0] == WARM_UP_BATCH) {
+                        redisUtil.setBits(mirrorKey, pending);
+                        pendingCount[0] = 0;
+                    }
+                }
+            });
+            if (populateMirror && pendingCount[0] > 0) {
+                long[] tail = new long[pendingCount[0] * hashCount];
+                System.arraycopy(pending, 0, tail, 0, tail.length);
+                redisUtil.setBits(mirrorKey, tail);
+            }
+            ready = true;
+            logger.info("交易单号布隆过滤器预热完成，加载 {} 个单号，位数 {}，哈希函数 {} 个，耗时 {}ms",
+                    loaded[0], bloomFilter.getBitSize(), hashCount, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 预热失败时保持未就绪，所有单号都到数据库确认，结果依然正确
+            logger.error("交易单号布隆过滤器预热失败，去重将全部走数据库确认", e);
+        }
+    }
+
+    /**
+     * 去重后的写入操作
+     * 实现需保证插入和覆盖在一个事务内提交
+     */
+    @FunctionalInterface
+    public interface ChunkWriter {
+        void write(List<TradeRecord> inserts, List<TradeRecord> upserts);
+    }
+}
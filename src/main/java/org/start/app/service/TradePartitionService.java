@@ -0,0 +1,290 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.start.app.config.PartitionConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.mapper.TradePartitionMapper;
+import org.start.app.model.TradePartition;
+import org.start.app.model.TradeRecordChangeEvent;
+import org.start.app.model.TradeRecordChangeEvent.ChangeType;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 交易记录表按月分区维护服务
+ * 表按交易时间RANGE COLUMNS分区，每月一个分区pYYYYMM，最后是p_max。
+ * 定时从空的p_max中提前拆出未来几个月的分区，使新数据总是落在按月分区中；
+ * 按交易时间范围查询时MySQL只访问与范围重叠的分区。
+ * 超过保留月数的分区先整体交换到中转表再删除空分区，不产生大事务的DELETE；
+ * 之后分批读出中转表中的ID和单号，删除单号登记并发布删除事件失效缓存和内存索引，内存占用只与批大小有关。
+ * 汇总表保留，历史统计不受影响。多个节点同时维护时由MySQL命名锁互斥，持有锁的连接断开后锁自动释放
+ */
+@Service
+public class TradePartitionService {
+    private static final Logger logger = LoggerFactory.getLogger(TradePartitionService.class);
+    private static final String MAX_PARTITION = "p_max";
+    private static final Pattern MONTH_PARTITION = Pattern.compile("p(\\d{6})");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+    /** 分区维护的MySQL命名锁 */
+    private static final String LOCK_NAME = "trade_record_partition_maintain";
+
+    private final TradePartitionMapper tradePartitionMapper;
+    private final DataSource dataSource;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PartitionConfig partitionConfig;
+    private final ZoneId zoneId;
+
+    private volatile Date maintainedAt;
+    private volatile Map<String, Object> lastResult;
+    private volatile String lastError;
+    private ScheduledExecutorService maintainer;
+
+    public TradePartitionService(TradePartitionMapper tradePartitionMapper, DataSource dataSource,
+                                 ApplicationEventPublisher eventPublisher, PartitionConfig partitionConfig) {
+        this.tradePartitionMapper = tradePartitionMapper;
+        this.dataSource = dataSource;
+        this.eventPublisher = eventPublisher;
+        this.partitionConfig = partitionConfig;
+        this.zoneId = ZoneId.of(partitionConfig.getZoneId());
+    }
+
+    /**
+     * 应用启动后立即检查一次，之后定时检查
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!partitionConfig.isEnabled()) {
+            return;
+        }
+        maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "trade-partition");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintainer.scheduleWithFixedDelay(() -> {
+            try {
+                maintain();
+            } catch (Exception e) {
+                logger.error("交易记录分区维护失败，下次继续", e);
+            }
+        }, 0, partitionConfig.getCheckIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (maintainer != null) {
+            maintainer.shutdownNow();
+        }
+    }
+
+    /**
+     * 创建未来月份的分区并删除过期月份的分区，多次执行结果相同
+     * @return created、dropped、droppedRows
+     * @throws IllegalStateException 表未分区、最后一个分区不是p_max或其他节点正在维护
+     */
+    public synchronized Map<String, Object> maintain() {
+        // 命名锁属于连接，持有期间这个连接不执行其他语句，维护用的DDL走连接池的其他连接
+        try (Connection connection = dataSource.getConnection()) {
+            if (!namedLock(connection, "SELECT GET_LOCK(?, 0)")) {
+                throw new IllegalStateException("其他节点正在维护交易记录分区");
+            }
+            try {
+                return doMaintain();
+            } finally {
+                namedLock(connection, "SELECT RELEASE_LOCK(?)");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("获取分区维护锁失败: " + e.getMessage(), e);
+        }
+    }
+
+    private Map<String, Object> doMaintain() {
+        try {
+            List<TradePartition> partitions = tradePartitionMapper.selectPartitions();
+            if (partitions.isEmpty() || partitions.get(0).getName() == null) {
+                throw new IllegalStateException("交易记录表未分区，请先按schema.sql改为分区表");
+            }
+            if (!MAX_PARTITION.equals(partitions.get(partitions.size() - 1).getName())) {
+                throw new IllegalStateException("交易记录表的最后一个分区不是" + MAX_PARTITION);
+            }
+            List<YearMonth> months = new ArrayList<>();
+            for (TradePartition partition : partitions) {
+                Matcher matcher = MONTH_PARTITION.matcher(partition.getName());
+                if (matcher.matches()) {
+                    months.add(YearMonth.parse(matcher.group(1), MONTH_FORMAT));
+                } else if (!MAX_PARTITION.equals(partition.getName())) {
+                    logger.warn("忽略不符合命名规则的分区 {}", partition.getName());
+                }
+            }
+            YearMonth current = YearMonth.now(zoneId);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("created", createAhead(months, current));
+            dropExpired(months, current, result);
+            maintainedAt = new Date();
+            lastResult = result;
+            lastError = null;
+            return result;
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            throw e;
+        }
+    }
+
+    /**
+     * 分区列表和最近一次维护的结果
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", partitionConfig.isEnabled());
+        status.put("aheadMonths", partitionConfig.getAheadMonths());
+        status.put("retentionMonths", partitionConfig.getRetentionMonths());
+        status.put("maintainedAt", maintainedAt);
+        status.put("lastResult", lastResult);
+        status.put("lastError", lastError);
+        status.put("partitions", tradePartitionMapper.selectPartitions());
+        return status;
+    }
+
+    /**
+     * 从p_max中拆出最后一个按月分区之后直到当月加提前月数的分区，新建的月份追加到months
+     * 还没有按月分区时从p_max中最早的交易月份开始，第一个分区同时包含更早的记录
+     * @return 新建的分区名
+     */
+    private List<String> createAhead(List<YearMonth> months, YearMonth current) {
+        YearMonth next;
+        if (months.isEmpty()) {
+            Date minTradeTime = tradePartitionMapper.selectMinTradeTimeInMax();
+            next = minTradeTime == null ? current : YearMonth.from(minTradeTime.toInstant().atZone(zoneId));
+        } else {
+            next = months.get(months.size() - 1).plusMonths(1);
+        }
+        YearMonth target = current.plusMonths(Math.max(0, partitionConfig.getAheadMonths()));
+        List<TradePartition> partitions = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (YearMonth month = next; !month.isAfter(target); month = month.plusMonths(1)) {
+            TradePartition partition = new TradePartition();
+            partition.setName(name(month));
+            partition.setDescription(month.plusMonths(1).atDay(1).toString());
+            partitions.add(partition);
+            names.add(partition.getName());
+            months.add(month);
+        }
+        if (!partitions.isEmpty()) {
+            // p_max此前未拆分到的月份可能已有记录，REORGANIZE会把这些记录移到新分区
+            tradePartitionMapper.splitMaxPartition(partitions);
+            logger.info("新建交易记录分区 {}", names);
+        }
+        return names;
+    }
+
+    /**
+     * 删除保留月数之前的分区，逐个删除，删除后发布删除事件
+     */
+    private void dropExpired(List<YearMonth> months, YearMonth current, Map<String, Object> result) {
+        List<String> dropped = new ArrayList<>();
+        long droppedRows = 0;
+        int retention = partitionConfig.getRetentionMonths();
+        if (retention > 0) {
+            YearMonth cutoff = current.minusMonths(retention - 1);
+            for (YearMonth month : months) {
+                if (!month.isBefore(cutoff)) {
+                    break;
+                }
+                droppedRows += drop(name(month));
+                dropped.add(name(month));
+            }
+        }
+        result.put("dropped", dropped);
+        result.put("droppedRows", droppedRows);
+    }
+
+    /**
+     * 删除一个分区：交换到中转表后删除空分区，再处理中转表中的记录
+     * 交换是DDL，立即生效，交换前写入该月的记录都会被处理，之后写入的记录不再落在该分区
+     * @return 删除的记录数
+     */
+    private long drop(String partition) {
+        long leftover = drainExpired();
+        if (leftover > 0) {
+            logger.warn("中转表中有上次未处理完的 {} 条过期记录，已处理", leftover);
+        }
+        tradePartitionMapper.exchangeToExpired(partition);
+        tradePartitionMapper.dropPartitions(Collections.singletonList(partition));
+        long rows = drainExpired();
+        logger.info("删除过期交易记录分区 {}，{} 条记录", partition, rows);
+        return leftover + rows;
+    }
+
+    /**
+     * 分批读出中转表中的记录，删除单号登记并发布删除事件，全部处理后清空中转表
+     * 中途失败时中转表保留，下次维护先处理完再交换新的分区，重复处理的批次不影响结果
+     * @return 处理的记录数
+     */
+    private long drainExpired() {
+        int batchSize = Math.max(1, partitionConfig.getKeyBatchSize());
+        long rows = 0;
+        long afterId = 0;
+        List<TradeRecord> batch;
+        do {
+            batch = tradePartitionMapper.selectExpiredKeys(afterId, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Long> ids = new ArrayList<>(batch.size());
+            List<String> tradeNos = new ArrayList<>(batch.size());
+            for (TradeRecord record : batch) {
+                ids.add(record.getId());
+                tradeNos.add(record.getTradeNo());
+            }
+            tradePartitionMapper.deleteRegistry(tradeNos);
+            eventPublisher.publishEvent(new TradeRecordChangeEvent(ChangeType.DELETE, ids, tradeNos));
+            rows += batch.size();
+            afterId = ids.get(ids.size() - 1);
+        } while (batch.size() == batchSize);
+        if (rows > 0) {
+            tradePartitionMapper.truncateExpired();
+        }
+        return rows;
+    }
+
+    /**
+     * 执行GET_LOCK或RELEASE_LOCK
+     * @return 是否返回1
+     */
+    private static boolean namedLock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static String name(YearMonth month) {
+        return "p" + month.format(MONTH_FORMAT);
+    }
+}
@@ -0,0 +1,113 @@
+package org.start.app.service;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.start.app.config.ImportConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.mapper.TradeRollupMapper;
+import org.start.app.util.AdaptiveBatchSizer;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 基于JDBC批处理的交易记录写入器
+ * 使用BATCH执行器逐条绑定单行INSERT，按自适应批量大小刷写，
+ * 配合驱动参数rewriteBatchedStatements=true由驱动改写为多行INSERT，
+ * 避免foreach拼接超大SQL带来的渲染开销和max_allowed_packet限制
+ */
+@Component
+public class TradeRecordBatchWriter {
+    /** BATCH执行器，不注册为Bean，避免替换MyBatis默认的SqlSessionTemplate */
+    private final SqlSessionTemplate batchSqlSession;
+    private final TransactionTemplate transactionTemplate;
+    /** 刷写批量大小 */
+    private final AdaptiveBatchSizer batchSizer;
+    /** 汇总服务 */
+    private final TradeRollupService tradeRollupService;
+
+    public TradeRecordBatchWriter(SqlSessionFactory sqlSessionFactory, TransactionTemplate transactionTemplate,
+                                  ImportConfig importConfig, TradeRollupService tradeRollupService) {
+        this.batchSqlSession = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+        this.transactionTemplate = transactionTemplate;
+        this.tradeRollupService = tradeRollupService;
+        this.batchSizer = new AdaptiveBatchSizer(importConfig.getBatchMinSize(), importConfig.getBatchMaxSize(),
+                importConfig.getBatchTargetMillis(), importConfig.getBatchSize());
+    }
+
+    /**
+     * 在一个事务中向指定表批量写入记录，不维护汇总表，用于写库基准测试
+     * 使用调用方的批量大小，测试数据的耗时不影响导入使用的批量大小
+     * @param table 表名
+     * @param records 交易记录列表
+     * @param sizer 刷写批量大小
+     * @return 写入的记录数
+     */
+    public int write(String table, List<TradeRecord> records, AdaptiveBatchSizer sizer) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            TradeRecordMapper mapper = batchSqlSession.getMapper(TradeRecordMapper.class);
+            doWrite(records, record -> mapper.insertInto(table, record), sizer);
+        });
+        return records.size();
+    }
+
+    /**
+     * 在一个事务中批量插入新记录并按ID覆盖已存在的记录
+     * 覆盖和汇总表更新也走BATCH执行器，同一事务内不能混用不同执行器的会话
+     * @param inserts 待插入的记录
+     * @param upserts 单号已存在、待覆盖的记录
+     * @return 写入的记录数
+     */
+    public int write(List<TradeRecord> inserts, List<TradeRecord> upserts) {
+        if (inserts.isEmpty() && upserts.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            TradeRecordMapper mapper = batchSqlSession.getMapper(TradeRecordMapper.class);
+            tradeRollupService.writeChunk(inserts, upserts, mapper,
+                    batchSqlSession.getMapper(TradeRollupMapper.class), () -> {
+                        doWrite(inserts, mapper::insert, batchSizer);
+                        doWrite(upserts, mapper::overwrite, batchSizer);
+                    });
+            batchSqlSession.flushStatements();
+        });
+        return inserts.size() + upserts.size();
+    }
+
+    /**
+     * 当前的刷写批量大小
+     */
+    public int getCurrentBatchSize() {
+        return batchSizer.current();
+    }
+
+    private void doWrite(List<TradeRecord> records, Consumer<TradeRecord> statement, AdaptiveBatchSizer sizer) {
+        int flushSize = sizer.current();
+        int pending = 0;
+        long start = System.nanoTime();
+        for (TradeRecord record : records) {
+            statement.accept(record);
+            if (++pending >= flushSize) {
+                batchSqlSession.flushStatements();
+                sizer.record(pending, System.nanoTime() - start);
+                flushSize = sizer.current();
+                pending = 0;
+                start = System.nanoTime();
+            }
+        }
+        if (pending > 0) {
+            batchSqlSession.flushStatements();
+            // 尾部批次过小时固定开销占比高，不参与采样
+            if (pending >= flushSize / 2) {
+                sizer.record(pending, System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.start.app.service;
+
+import org.springframework.stereotype.Component;
+import org.start.app.config.BulkLookupConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.util.ReadWriteContext;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 按ID或单号批量读库
+ * 键按chunkSize切成多条IN查询，第一批在调用线程执行，其余批次交给固定大小的线程池并发执行；
+ * 线程池满时由调用线程自己执行，不会无限排队
+ */
+@Component
+public class TradeRecordBulkLoader {
+    private final TradeRecordMapper tradeRecordMapper;
+    private final BulkLookupConfig bulkConfig;
+    private final ExecutorService executor;
+
+    public TradeRecordBulkLoader(TradeRecordMapper tradeRecordMapper, BulkLookupConfig bulkConfig) {
+        this.tradeRecordMapper = tradeRecordMapper;
+        this.bulkConfig = bulkConfig;
+        int parallelism = Math.max(1, bulkConfig.getParallelism());
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(parallelism * 4), runnable -> {
+                    Thread thread = new Thread(runnable, "trade-bulk-" + threadNo.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 按ID批量读取
+     * @param ids 不重复的ID
+     * @param replica 是否允许读从库，实际是否读从库还取决于读写分离上下文
+     * @return 存在的记录，顺序不定
+     */
+    public List<TradeRecord> loadByIds(List<Long> ids, boolean replica) {
+        return load(ids, replica, tradeRecordMapper::selectByIds);
+    }
+
+    /**
+     * 按交易单号批量读取
+     * @param tradeNos 不重复的单号
+     * @param replica 是否允许读从库，实际是否读从库还取决于读写分离上下文
+     * @return 存在的记录，顺序不定
+     */
+    public List<TradeRecord> loadByTradeNos(List<String> tradeNos, boolean replica) {
+        return load(tradeNos, replica, tradeRecordMapper::selectByTradeNos);
+    }
+
+    private <K> List<TradeRecord> load(List<K> keys, boolean replica, Function<List<K>, List<TradeRecord>> query) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 线程池中没有调用方的读写分离上下文，在调用线程上先决定读主库还是从库
+        boolean onReplica = replica && ReadWriteContext.onReplica(ReadWriteContext::isReplicaPreferred);
+        Function<List<K>, List<TradeRecord>> routed = onReplica
+                ? chunk -> ReadWriteContext.onReplica(() -> query.apply(chunk))
+                : query;
+
+        int chunkSize = Math.max(1, bulkConfig.getChunkSize());
+        List<CompletableFuture<List<TradeRecord>>> futures = new ArrayList<>();
+        for (int from = chunkSize; from < keys.size(); from += chunkSize) {
+            List<K> chunk = keys.subList(from, Math.min(from + chunkSize, keys.size()));
+            futures.add(CompletableFuture.supplyAsync(() -> routed.apply(chunk), executor));
+        }
+        List<TradeRecord> records = new ArrayList<>(keys.size());
+        records.addAll(routed.apply(keys.subList(0, Math.min(chunkSize, keys.size()))));
+        for (CompletableFuture<List<TradeRecord>> future : futures) {
+            try {
+                records.addAll(future.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        return records;
+    }
+}
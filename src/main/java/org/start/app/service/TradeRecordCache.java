@@ -0,0 +1,397 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.start.app.config.RecordCacheConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.model.TradeRecordChangeEvent;
+import org.start.app.util.NearCache;
+import org.start.app.util.ReadWriteContext;
+import org.start.app.util.RedisUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 交易记录两级缓存
+ * 第一级为进程内近端缓存，第二级为Redis；按ID缓存记录，按单号只缓存单号到ID的映射，
+ * 单号映射命中后再按ID读取并校验单号，单号被修改或记录被删除时自动视为未命中。
+ * 记录变更在事务提交后删除本节点两级缓存，并通过Redis频道广播，其他节点收到后删除各自的近端缓存；
+ * 广播丢失时近端缓存最多在TTL内不一致。
+ * 开启读写分离时，关闭缓存的查询读从库；缓存未命中时仍读主库，否则提交后、从库追上前读到的旧值会被写回缓存直到过期
+ */
+@Component
+public class TradeRecordCache implements MessageListener {
+    private static final Logger logger = LoggerFactory.getLogger(TradeRecordCache.class);
+    /** 按ID缓存记录的Key前缀 */
+    private static final String ID_KEY_PREFIX = "trade:record:id:";
+    /** 按单号缓存ID的Key前缀 */
+    private static final String NO_KEY_PREFIX = "trade:record:no:";
+    /** 失效广播频道 */
+    private static final String INVALIDATE_CHANNEL = "trade:record:invalidate";
+
+    private final TradeRecordMapper tradeRecordMapper;
+    private final TradeRecordBulkLoader bulkLoader;
+    private final RedisUtil redisUtil;
+    private final RecordCacheConfig cacheConfig;
+    /** 近端缓存：ID -> 记录 */
+    private final NearCache<Long, TradeRecord> nearById;
+    /** 近端缓存：单号 -> ID */
+    private final NearCache<String, Long> nearByTradeNo;
+    /** 本节点标识，忽略自己发出的广播 */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+    private final LongAdder dbLoads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    public TradeRecordCache(TradeRecordMapper tradeRecordMapper, TradeRecordBulkLoader bulkLoader, RedisUtil redisUtil,
+                            RecordCacheConfig cacheConfig, RedisMessageListenerContainer listenerContainer) {
+        this.tradeRecordMapper = tradeRecordMapper;
+        this.bulkLoader = bulkLoader;
+        this.redisUtil = redisUtil;
+        this.cacheConfig = cacheConfig;
+        long nearTtlMillis = TimeUnit.SECONDS.toMillis(cacheConfig.getNearTtlSeconds());
+        this.nearById = new NearCache<>(cacheConfig.getNearMaxSize(), nearTtlMillis);
+        this.nearByTradeNo = new NearCache<>(cacheConfig.getNearMaxSize(), nearTtlMillis);
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 按ID查询记录
+     * @param id 记录ID
+     * @return 记录，不存在时返回null
+     */
+    public TradeRecord getById(Long id) {
+        if (!cacheConfig.isEnabled() || id == null) {
+            return ReadWriteContext.onReplica(() -> tradeRecordMapper.getById(id));
+        }
+        TradeRecord record = nearById.get(id);
+        if (record != null) {
+            return record;
+        }
+        record = redisGet(ID_KEY_PREFIX + id, TradeRecord.class);
+        if (record == null) {
+            dbLoads.increment();
+            record = tradeRecordMapper.getById(id);
+            if (record == null) {
+                return null;
+            }
+            redisSet(ID_KEY_PREFIX + id, record);
+        }
+        nearById.put(id, record);
+        return record;
+    }
+
+    /**
+     * 按单号查询记录
+     * @param tradeNo 交易单号
+     * @return 记录，不存在时返回null
+     */
+    public TradeRecord getByTradeNo(String tradeNo) {
+        if (!cacheConfig.isEnabled() || tradeNo == null) {
+            return ReadWriteContext.onReplica(() -> tradeRecordMapper.getByTradeNo(tradeNo));
+        }
+        Long id = nearByTradeNo.get(tradeNo);
+        if (id == null) {
+            Object cached = redisGet(NO_KEY_PREFIX + tradeNo, Object.class);
+            id = cached == null ? null : Long.valueOf(cached.toString());
+        }
+        if (id != null) {
+            TradeRecord record = getById(id);
+            if (record != null && tradeNo.equals(record.getTradeNo())) {
+                nearByTradeNo.put(tradeNo, id);
+                return record;
+            }
+        }
+
+        dbLoads.increment();
+        TradeRecord record = tradeRecordMapper.getByTradeNo(tradeNo);
+        if (record == null) {
+            return null;
+        }
+        redisSet(NO_KEY_PREFIX + tradeNo, String.valueOf(record.getId()));
+        redisSet(ID_KEY_PREFIX + record.getId(), record);
+        nearByTradeNo.put(tradeNo, record.getId());
+        nearById.put(record.getId(), record);
+        return record;
+    }
+
+    /**
+     * 按ID批量查询记录
+     * 依次查近端缓存、Redis（一次MGET），剩余的分批并发查库后写回两级缓存（一次管道）
+     * @param ids 不重复的ID
+     * @return ID -> 记录，不存在的ID不返回
+     */
+    public Map<Long, TradeRecord> getByIds(List<Long> ids) {
+        Map<Long, TradeRecord> found = new HashMap<>(ids.size() * 2);
+        if (!cacheConfig.isEnabled()) {
+            for (TradeRecord record : bulkLoader.loadByIds(ids, true)) {
+                found.put(record.getId(), record);
+            }
+            return found;
+        }
+        List<Long> misses = new ArrayList<>();
+        for (Long id : ids) {
+            TradeRecord record = nearById.get(id);
+            if (record != null) {
+                found.put(id, record);
+            } else {
+                misses.add(id);
+            }
+        }
+        List<String> keys = new ArrayList<>(misses.size());
+        for (Long id : misses) {
+            keys.add(ID_KEY_PREFIX + id);
+        }
+        List<Object> cached = redisMultiGet(keys);
+        List<Long> dbMisses = new ArrayList<>();
+        for (int i = 0; i < misses.size(); i++) {
+            Object value = cached.get(i);
+            if (value instanceof TradeRecord) {
+                found.put(misses.get(i), (TradeRecord) value);
+                nearById.put(misses.get(i), (TradeRecord) value);
+            } else {
+                dbMisses.add(misses.get(i));
+            }
+        }
+        redisHits.add(misses.size() - dbMisses.size());
+        redisMisses.add(dbMisses.size());
+        if (!dbMisses.isEmpty()) {
+            dbLoads.add(dbMisses.size());
+            Map<String, Object> fills = new HashMap<>();
+            for (TradeRecord record : bulkLoader.loadByIds(dbMisses, false)) {
+                found.put(record.getId(), record);
+                nearById.put(record.getId(), record);
+                fills.put(ID_KEY_PREFIX + record.getId(), record);
+            }
+            redisSetAll(fills);
+        }
+        return found;
+    }
+
+    /**
+     * 按单号批量查询记录
+     * 单号映射命中后按ID批量读取并校验单号，其余单号分批并发查库后写回两级缓存
+     * @param tradeNos 不重复的交易单号
+     * @return 单号 -> 记录，不存在的单号不返回
+     */
+    public Map<String, TradeRecord> getByTradeNos(List<String> tradeNos) {
+        Map<String, TradeRecord> found = new HashMap<>(tradeNos.size() * 2);
+        if (!cacheConfig.isEnabled()) {
+            for (TradeRecord record : bulkLoader.loadByTradeNos(tradeNos, true)) {
+                found.put(record.getTradeNo(), record);
+            }
+            return found;
+        }
+        Map<String, Long> idByTradeNo = new HashMap<>(tradeNos.size() * 2);
+        List<String> misses = new ArrayList<>();
+        for (String tradeNo : tradeNos) {
+            Long id = nearByTradeNo.get(tradeNo);
+            if (id != null) {
+                idByTradeNo.put(tradeNo, id);
+            } else {
+                misses.add(tradeNo);
+            }
+        }
+        List<String> keys = new ArrayList<>(misses.size());
+        for (String tradeNo : misses) {
+            keys.add(NO_KEY_PREFIX + tradeNo);
+        }
+        List<Object> cached = redisMultiGet(keys);
+        for (int i = 0; i < misses.size(); i++) {
+            if (cached.get(i) != null) {
+                idByTradeNo.put(misses.get(i), Long.valueOf(cached.get(i).toString()));
+            }
+        }
+        Map<Long, TradeRecord> byId = getByIds(new ArrayList<>(new LinkedHashSet<>(idByTradeNo.values())));
+        List<String> dbMisses = new ArrayList<>();
+        for (String tradeNo : tradeNos) {
+            Long id = idByTradeNo.get(tradeNo);
+            TradeRecord record = id == null ? null : byId.get(id);
+            if (record != null && tradeNo.equals(record.getTradeNo())) {
+                nearByTradeNo.put(tradeNo, id);
+                found.put(tradeNo, record);
+            } else {
+                dbMisses.add(tradeNo);
+            }
+        }
+        if (!dbMisses.isEmpty()) {
+            dbLoads.add(dbMisses.size());
+            Map<String, Object> fills = new HashMap<>();
+            for (TradeRecord record : bulkLoader.loadByTradeNos(dbMisses, false)) {
+                found.put(record.getTradeNo(), record);
+                nearByTradeNo.put(record.getTradeNo(), record.getId());
+                nearById.put(record.getId(), record);
+                fills.put(NO_KEY_PREFIX + record.getTradeNo(), String.valueOf(record.getId()));
+                fills.put(ID_KEY_PREFIX + record.getId(), record);
+            }
+            redisSetAll(fills);
+        }
+        return found;
+    }
+
+    /**
+     * 记录变更后删除两级缓存并广播，事务提交后执行，避免其他请求在提交前把旧值读回缓存
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(TradeRecordChangeEvent event) {
+        if (!cacheConfig.isEnabled() || (event.getIds().isEmpty() && event.getTradeNos().isEmpty())) {
+            return;
+        }
+        invalidateNear(event.getIds(), event.getTradeNos());
+
+        List<String> keys = new ArrayList<>(event.getIds().size() + event.getTradeNos().size());
+        for (Long id : event.getIds()) {
+            keys.add(ID_KEY_PREFIX + id);
+        }
+        for (String tradeNo : event.getTradeNos()) {
+            keys.add(NO_KEY_PREFIX + tradeNo);
+        }
+        try {
+            redisUtil.delete(keys);
+            Map<String, Object> message = new HashMap<>();
+            message.put("node", nodeId);
+            message.put("ids", event.getIds());
+            message.put("tradeNos", event.getTradeNos());
+            redisUtil.publish(INVALIDATE_CHANNEL, message);
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("删除Redis缓存或广播失效消息失败，最长 {} 秒后过期: {}",
+                    cacheConfig.getRedisTtlSeconds(), e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他节点的失效广播，删除本节点的近端缓存
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object body = redisUtil.deserialize(message.getBody());
+            if (!(body instanceof Map)) {
+                return;
+            }
+            Map<String, Object> payload = (Map<String, Object>) body;
+            if (nodeId.equals(payload.get("node"))) {
+                return;
+            }
+            List<Long> ids = new ArrayList<>();
+            Object rawIds = payload.get("ids");
+            if (rawIds instanceof List) {
+                for (Object id : (List<Object>) rawIds) {
+                    ids.add(((Number) id).longValue());
+                }
+            }
+            Object rawTradeNos = payload.get("tradeNos");
+            List<String> tradeNos = rawTradeNos instanceof List ? (List<String>) rawTradeNos : new ArrayList<>();
+            remoteInvalidations.increment();
+            invalidateNear(ids, tradeNos);
+        } catch (Exception e) {
+            logger.warn("处理缓存失效广播失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存统计
+     * @return 近端缓存和Redis缓存的命中、未命中、淘汰等计数
+     */
+    public Map<String, Object> stats() {
+        nearById.cleanUp();
+        nearByTradeNo.cleanUp();
+        Map<String, Object> redis = new LinkedHashMap<>();
+        redis.put("hits", redisHits.sum());
+        redis.put("misses", redisMisses.sum());
+        redis.put("errors", redisErrors.sum());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cacheConfig.isEnabled());
+        stats.put("nearById", nearById.stats());
+        stats.put("nearByTradeNo", nearByTradeNo.stats());
+        stats.put("redis", redis);
+        stats.put("dbLoads", dbLoads.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("remoteInvalidations", remoteInvalidations.sum());
+        return stats;
+    }
+
+    private void invalidateNear(List<Long> ids, List<String> tradeNos) {
+        for (Long id : ids) {
+            nearById.invalidate(id);
+        }
+        for (String tradeNo : tradeNos) {
+            nearByTradeNo.invalidate(tradeNo);
+        }
+        invalidations.add(ids.size() + tradeNos.size());
+    }
+
+    /**
+     * 读Redis缓存，Redis不可用时按未命中处理
+     */
+    private <T> T redisGet(String key, Class<T> type) {
+        try {
+            Object value = redisUtil.get(key);
+            if (type.isInstance(value)) {
+                redisHits.increment();
+                return type.cast(value);
+            }
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("读取Redis缓存失败: {}", e.getMessage());
+        }
+        redisMisses.increment();
+        return null;
+    }
+
+    /**
+     * 批量读Redis缓存，Redis不可用时全部按未命中处理
+     */
+    private List<Object> redisMultiGet(List<String> keys) {
+        if (!keys.isEmpty()) {
+            try {
+                return redisUtil.multiGet(keys);
+            } catch (Exception e) {
+                redisErrors.increment();
+                logger.warn("批量读取Redis缓存失败: {}", e.getMessage());
+            }
+        }
+        return new ArrayList<>(Collections.nCopies(keys.size(), null));
+    }
+
+    private void redisSetAll(Map<String, Object> values) {
+        try {
+            redisUtil.setExAll(values, cacheConfig.getRedisTtlSeconds(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("批量写入Redis缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private void redisSet(String key, Object value) {
+        try {
+            redisUtil.setEx(key, value, cacheConfig.getRedisTtlSeconds(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            redisErrors.increment();
+            logger.warn("写入Redis缓存失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.start.app.service;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.start.app.config.CountConfig;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.model.CountMode;
+import org.start.app.model.TradeRecordQuery;
+import org.start.app.util.ReadWriteContext;
+import org.start.app.util.RedisUtil;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易记录总数统计服务
+ * 精确总数按规范化后的查询条件缓存在Redis中，Key带写入代数，任何写入都会使代数加一，旧缓存自然失效；
+ * 要写入缓存的统计在主库执行，从库的复制延迟不会随缓存保留一个TTL；
+ * 估算模式读取EXPLAIN的行数和过滤比例，不扫描数据，适合条件很宽的列表页；
+ * 只有低基数列等值条件且位图索引与全部写入同步时，精确总数直接由位图求交得出
+ */
+@Service
+public class TradeRecordCountService {
+    private static final Logger logger = LoggerFactory.getLogger(TradeRecordCountService.class);
+    /** 总数缓存Key前缀 */
+    private static final String COUNT_KEY_PREFIX = "trade:count:";
+
+    private final TradeRecordMapper tradeRecordMapper;
+    private final RedisUtil redisUtil;
+    private final CountConfig countConfig;
+    private final TradeBitmapIndexService tradeBitmapIndexService;
+    private final TradeWriteGeneration writeGeneration;
+
+    public TradeRecordCountService(TradeRecordMapper tradeRecordMapper, RedisUtil redisUtil, CountConfig countConfig,
+                                   TradeBitmapIndexService tradeBitmapIndexService,
+                                   TradeWriteGeneration writeGeneration) {
+        this.tradeRecordMapper = tradeRecordMapper;
+        this.redisUtil = redisUtil;
+        this.countConfig = countConfig;
+        this.tradeBitmapIndexService = tradeBitmapIndexService;
+        this.writeGeneration = writeGeneration;
+    }
+
+    /**
+     * 统计符合条件的记录数
+     * @param query 查询条件
+     * @return 总数
+     */
+    public Total count(TradeRecordQuery query) {
+        CountMode mode = query.getCountMode() == null ? CountMode.EXACT : query.getCountMode();
+        if (mode != CountMode.EXACT) {
+            long estimate = estimate(query);
+            if (mode == CountMode.ESTIMATED || estimate >= countConfig.getEstimateThreshold()) {
+                return new Total(estimate, true);
+            }
+        }
+        return new Total(exactCount(query), false);
+    }
+
+    /**
+     * 精确统计，优先用位图索引，其次读缓存；Redis不可用时直接查库
+     */
+    private long exactCount(TradeRecordQuery query) {
+        Long indexed = tradeBitmapIndexService.count(query);
+        if (indexed != null) {
+            return indexed;
+        }
+        String key;
+        try {
+            key = COUNT_KEY_PREFIX + writeGeneration.current() + ":" + DigestUtils.md5Hex(normalize(query));
+            Object cached = redisUtil.get(key);
+            if (cached != null) {
+                return Long.parseLong(cached.toString());
+            }
+        } catch (Exception e) {
+            logger.warn("读取总数缓存失败，直接统计: {}", e.getMessage());
+            return tradeRecordMapper.countByQuery(query);
+        }
+
+        long total = ReadWriteContext.onPrimary(() -> tradeRecordMapper.countByQuery(query));
+        try {
+            redisUtil.setEx(key, String.valueOf(total), countConfig.getCacheTtlSeconds(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.warn("写入总数缓存失败: {}", e.getMessage());
+        }
+        return total;
+    }
+
+    /**
+     * 按执行计划估算：多表/多行计划取第一行（trade_record的访问路径）的rows × filtered%
+     */
+    private long estimate(TradeRecordQuery query) {
+        List<Map<String, Object>> plan = tradeRecordMapper.explainByQuery(query);
+        if (plan.isEmpty()) {
+            return 0;
+        }
+        Map<String, Object> row = plan.get(0);
+        Object rows = row.get("rows");
+        Object filtered = row.get("filtered");
+        if (!(rows instanceof Number)) {
+            return 0;
+        }
+        double ratio = filtered instanceof Number ? ((Number) filtered).doubleValue() / 100.0 : 1.0;
+        return Math.round(((Number) rows).doubleValue() * ratio);
+    }
+
+    /**
+     * 规范化查询条件：只取参与WHERE的字段，空字符串与null等价，金额去掉末尾的0，
+     * 分页参数不参与，翻页时命中同一个缓存
+     */
+    static String normalize(TradeRecordQuery query) {
+        StringBuilder builder = new StringBuilder(128);
+        append(builder, "tradeType", query.getTradeType());
+        append(builder, "counterparty", query.getCounterparty());
+        append(builder, "direction", query.getDirection());
+        append(builder, "status", query.getStatus());
+        append(builder, "startTime", query.getStartTime());
+        append(builder, "endTime", query.getEndTime());
+        append(builder, "minAmount", query.getMinAmount());
+        append(builder, "maxAmount", query.getMaxAmount());
+        append(builder, "paymentMethod", query.getPaymentMethod());
+        append(builder, "tradeNo", query.getTradeNo());
+        append(builder, "merchantOrderNo", query.getMerchantOrderNo());
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, String name, Object value) {
+        String text;
+        if (value == null) {
+            return;
+        } else if (value instanceof Date) {
+            text = String.valueOf(((Date) value).getTime());
+        } else if (value instanceof BigDecimal) {
+            text = ((BigDecimal) value).stripTrailingZeros().toPlainString();
+        } else {
+            text = value.toString();
+        }
+        if (text.isEmpty()) {
+            return;
+        }
+        builder.append(name).append('=').append(text.length()).append(':').append(text).append('&');
+    }
+
+    /**
+     * 统计结果
+     */
+    public static class Total {
+        /** 总数 */
+        private final long value;
+        /** 是否为估算值 */
+        private final boolean estimated;
+
+        public Total(long value, boolean estimated) {
+            this.value = value;
+            this.estimated = estimated;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        public boolean isEstimated() {
+            return estimated;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.start.app.service;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.write.metadata.WriteSheet;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.start.app.entity.TradeRecord;
+import org.start.app.excel.TradeRecordCsvWriter;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.model.ExportFormat;
+import org.start.app.model.TradeRecordQuery;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 交易记录导出服务
+ * 通过MyBatis游标逐行读取查询结果，直接写入响应输出流，内存占用与导出行数无关
+ */
+@Service
+public class TradeRecordExportService {
+    private static final Logger logger = LoggerFactory.getLogger(TradeRecordExportService.class);
+    /** 每次交给EasyExcel的行数 */
+    private static final int WRITE_CHUNK = 1000;
+    /** 单个工作表的最大行数，超过后另起一个工作表（xlsx上限1048576行） */
+    private static final int SHEET_MAX_ROWS = 1_000_000;
+    /** 导出时不输出的字段，保证导出文件与导入模板一致 */
+    private static final List<String> EXCLUDED_FIELDS = Arrays.asList("id", "createTime");
+    /** NDJSON每写出这么多行刷新一次，慢查询时调用方也能及时收到数据 */
+    private static final int STREAM_FLUSH_ROWS = 1000;
+
+    private final TradeRecordMapper tradeRecordMapper;
+    private final ObjectMapper objectMapper;
+    /** 逐行序列化记录，不在每行后刷新输出流 */
+    private final ObjectWriter recordWriter;
+
+    public TradeRecordExportService(TradeRecordMapper tradeRecordMapper, ObjectMapper objectMapper) {
+        this.tradeRecordMapper = tradeRecordMapper;
+        this.objectMapper = objectMapper;
+        this.recordWriter = objectMapper.writerFor(TradeRecord.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * 导出符合条件的全部记录
+     * 游标在只读事务内遍历，导出结束后释放连接；开启读写分离时只读事务读从库
+     * @param query 查询条件，分页参数不生效
+     * @param format 导出格式
+     * @param outputStream 输出流
+     * @return 导出的记录数
+     * @throws IOException 写出失败（如客户端断开）
+     */
+    @Transactional(readOnly = true, rollbackFor = Exception.class)
+    public long export(TradeRecordQuery query, ExportFormat format, OutputStream outputStream) throws IOException {
+        long start = System.currentTimeMillis();
+        long rows;
+        try (Cursor<TradeRecord> cursor = tradeRecordMapper.selectCursorByQuery(query)) {
+            rows = format == ExportFormat.CSV ? writeCsv(cursor, outputStream) : writeExcel(cursor, outputStream);
+        }
+        logger.info("导出 {} 条记录（{}），耗时 {}ms", rows, format, System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    /**
+     * 以NDJSON（每行一个JSON对象）输出符合条件的全部记录
+     * 游标逐行读取，Jackson流式生成器逐行写出，不构造列表，内存占用与记录数无关；
+     * 日期等格式与其他接口一致。开启读写分离时读从库
+     * @param query 查询条件，分页参数不生效
+     * @param outputStream 输出流
+     * @return 输出的记录数
+     * @throws IOException 写出失败（如客户端断开）
+     */
+    @Transactional(readOnly = true, rollbackFor = Exception.class)
+    public long stream(TradeRecordQuery query, OutputStream outputStream) throws IOException {
+        long start = System.currentTimeMillis();
+        long rows = 0;
+        try (Cursor<TradeRecord> cursor = tradeRecordMapper.selectCursorByQuery(query);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // 根值之间默认以空格分隔，改为每条记录后写换行
+            generator.setRootValueSeparator(null);
+            for (TradeRecord record : cursor) {
+                recordWriter.writeValue(generator, record);
+                generator.writeRaw('\n');
+                if (++rows % STREAM_FLUSH_ROWS == 0) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+        logger.info("流式输出 {} 条记录，耗时 {}ms", rows, System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    private long writeCsv(Cursor<TradeRecord> cursor, OutputStream outputStream) throws IOException {
+        long rows = 0;
+        TradeRecordCsvWriter writer = new TradeRecordCsvWriter(outputStream);
+        for (TradeRecord record : cursor) {
+            writer.write(record);
+            rows++;
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private long writeExcel(Cursor<TradeRecord> cursor, OutputStream outputStream) {
+        long rows = 0;
+        ExcelWriter excelWriter = EasyExcel.write(outputStream, TradeRecord.class)
+                .excludeColumnFieldNames(EXCLUDED_FIELDS)
+                .autoCloseStream(false)
+                .build();
+        try {
+            int sheetNo = 0;
+            int sheetRows = 0;
+            WriteSheet sheet = EasyExcel.writerSheet(sheetNo, "交易记录").build();
+            List<TradeRecord> chunk = new ArrayList<>(WRITE_CHUNK);
+            for (TradeRecord record : cursor) {
+                if (sheetRows == SHEET_MAX_ROWS) {
+                    excelWriter.write(chunk, sheet);
+                    chunk.clear();
+                    sheetNo++;
+                    sheetRows = 0;
+                    sheet = EasyExcel.writerSheet(sheetNo, "交易记录" + (sheetNo + 1)).build();
+                }
+                chunk.add(record);
+                sheetRows++;
+                rows++;
+                if (chunk.size() == WRITE_CHUNK) {
+                    excelWriter.write(chunk, sheet);
+                    chunk.clear();
+                }
+            }
+            // 无数据时也写出表头
+            excelWriter.write(chunk, sheet);
+        } finally {
+            excelWriter.finish();
+        }
+        return rows;
+    }
+}
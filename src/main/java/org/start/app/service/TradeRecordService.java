@@ -1,22 +1,48 @@
 package org.start.app.service;
 
 import com.alibaba.excel.EasyExcel;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.start.app.config.BulkLookupConfig;
+import org.start.app.config.DedupConfig;
+import org.start.app.config.ImportConfig;
 import org.start.app.entity.TradeRecord;
+import org.start.app.excel.DuplicateTradeNoException;
+import org.start.app.excel.ImportCheckpoint;
+import org.start.app.excel.ImportMonitor;
+import org.start.app.excel.TradeNoPrescanListener;
 import org.start.app.excel.TradeRecordImportListener;
+import org.start.app.excel.TradeRecordImportPipeline;
 import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.mapper.TradeRollupMapper;
+import org.start.app.model.DedupPolicy;
+import org.start.app.model.InvalidRequestException;
+import org.start.app.model.PageCursor;
+import org.start.app.model.TradeRecordChangeEvent;
+import org.start.app.model.TradeRecordChangeEvent.ChangeType;
 import org.start.app.model.TradeRecordQuery;
 import org.start.app.util.ExcelDataGenerator;
+import org.start.app.util.LockRetry;
+import org.start.app.util.ReadWriteContext;
+import org.start.app.util.RedisUtil;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 交易记录服务层
@@ -28,26 +54,229 @@ public class TradeRecordService {
 
     /** 数据访问层对象 */
     private final TradeRecordMapper tradeRecordMapper;
+    /** JDBC批处理写入器 */
+    private final TradeRecordBatchWriter tradeRecordBatchWriter;
+    /** 导入配置 */
+    private final ImportConfig importConfig;
+    /** Redis工具，用于保存导入检查点 */
+    private final RedisUtil redisUtil;
+    /** 交易单号去重器 */
+    private final TradeNoDeduplicator tradeNoDeduplicator;
+    /** 去重配置 */
+    private final DedupConfig dedupConfig;
+    /** foreach方式下插入与覆盖共用的事务 */
+    private final TransactionTemplate transactionTemplate;
+    /** 总数统计服务 */
+    private final TradeRecordCountService tradeRecordCountService;
+    /** 变更事件发布器 */
+    private final ApplicationEventPublisher eventPublisher;
+    /** 两级缓存 */
+    private final TradeRecordCache tradeRecordCache;
+    /** 汇总服务 */
+    private final TradeRollupService tradeRollupService;
+    /** 汇总表Mapper，foreach方式与记录写入共用会话 */
+    private final TradeRollupMapper tradeRollupMapper;
+    /** 位图索引 */
+    private final TradeBitmapIndexService tradeBitmapIndexService;
+    /** 批量查询配置 */
+    private final BulkLookupConfig bulkConfig;
 
     /**
      * 构造方法，注入依赖
      * @param tradeRecordMapper Mapper对象
+     * @param tradeRecordBatchWriter JDBC批处理写入器
+     * @param importConfig 导入配置
+     * @param redisUtil Redis工具
+     * @param tradeNoDeduplicator 交易单号去重器
+     * @param dedupConfig 去重配置
+     * @param transactionTemplate 事务模板
+     * @param tradeRecordCountService 总数统计服务
+     * @param eventPublisher 变更事件发布器
+     * @param tradeRecordCache 两级缓存
+     * @param tradeRollupService 汇总服务
+     * @param tradeRollupMapper 汇总表Mapper
+     * @param tradeBitmapIndexService 位图索引
+     * @param bulkConfig 批量查询配置
      */
-    public TradeRecordService(TradeRecordMapper tradeRecordMapper) {
+    public TradeRecordService(TradeRecordMapper tradeRecordMapper, TradeRecordBatchWriter tradeRecordBatchWriter,
+                              ImportConfig importConfig, RedisUtil redisUtil, TradeNoDeduplicator tradeNoDeduplicator,
+                              DedupConfig dedupConfig, TransactionTemplate transactionTemplate,
+                              TradeRecordCountService tradeRecordCountService,
+                              ApplicationEventPublisher eventPublisher, TradeRecordCache tradeRecordCache,
+                              TradeRollupService tradeRollupService, TradeRollupMapper tradeRollupMapper,
+                              TradeBitmapIndexService tradeBitmapIndexService, BulkLookupConfig bulkConfig) {
         this.tradeRecordMapper = tradeRecordMapper;
+        this.tradeRecordBatchWriter = tradeRecordBatchWriter;
+        this.importConfig = importConfig;
+        this.redisUtil = redisUtil;
+        this.tradeNoDeduplicator = tradeNoDeduplicator;
+        this.dedupConfig = dedupConfig;
+        this.transactionTemplate = transactionTemplate;
+        this.tradeRecordCountService = tradeRecordCountService;
+        this.eventPublisher = eventPublisher;
+        this.tradeRecordCache = tradeRecordCache;
+        this.tradeRollupService = tradeRollupService;
+        this.tradeRollupMapper = tradeRollupMapper;
+        this.tradeBitmapIndexService = tradeBitmapIndexService;
+        this.bulkConfig = bulkConfig;
     }
 
     /**
      * 导入Excel文件
      * @param file Excel文件
+     * @param resume 是否从上次失败的位置续传
+     * @param dedupPolicy 重复单号处理策略，为null时取配置的默认策略
      * @throws IOException IO异常
      */
-    @Transactional(rollbackFor = Exception.class)
-    public void importExcel(MultipartFile file) throws IOException {
-        EasyExcel.read(file.getInputStream(), TradeRecord.class, 
-                new TradeRecordImportListener(tradeRecordMapper))
-                .sheet()
-                .doRead();
+    public void importExcel(MultipartFile file, boolean resume, DedupPolicy dedupPolicy) throws IOException {
+        String fileHash;
+        try (InputStream inputStream = file.getInputStream()) {
+            fileHash = DigestUtils.sha256Hex(inputStream);
+        }
+        importExcel(file, fileHash, resume, dedupPolicy, ImportMonitor.NONE);
+    }
+
+    /**
+     * 导入Excel数据
+     * 解析与写库并行进行，每个批次由写入线程单独提交并记入检查点；
+     * 同一文件（按哈希识别）再次导入时跳过上次已提交的行，导入成功后删除检查点；
+     * 每个批次写库前按单号去重，重复导入同一账单不会产生重复记录。
+     * REJECT策略先把文件完整读一遍，文件内或库中存在重复单号时不写入任何记录；
+     * 预检之后被并发导入写入的单号只能在批次写入时发现，此时之前的批次已提交，异常中带有已提交的行数
+     * @param source Excel数据源，REJECT策略下会读取两次
+     * @param fileHash 文件SHA-256，为null时不记录检查点
+     * @param resume 是否从上次失败的位置续传
+     * @param dedupPolicy 重复单号处理策略，为null时取配置的默认策略
+     * @param monitor 进度监视器
+     * @return 本次写入的记录数
+     * @throws IOException 读取数据源失败
+     * @throws DuplicateTradeNoException REJECT策略下存在重复单号
+     */
+    public long importExcel(InputStreamSource source, String fileHash, boolean resume, DedupPolicy dedupPolicy,
+                            ImportMonitor monitor) throws IOException {
+        DedupPolicy policy = dedupPolicy != null ? dedupPolicy : dedupConfig.getDefaultPolicy();
+        ImportCheckpoint checkpoint = null;
+        if (importConfig.isCheckpointEnabled() && fileHash != null) {
+            checkpoint = ImportCheckpoint.load(redisUtil, fileHash, resume, importConfig.getCheckpointTtlHours());
+            if (checkpoint.getResumeRows() > 0) {
+                logger.info("从检查点续传，文件 {} 已提交 {} 条记录", fileHash, checkpoint.getResumeRows());
+            }
+        }
+        if (policy == DedupPolicy.REJECT) {
+            prescan(source, checkpoint);
+        }
+
+        TradeRecordImportPipeline pipeline = new TradeRecordImportPipeline(
+                importConfig.getWriterThreads(), importConfig.getQueueCapacity(), batchWriter(policy), checkpoint);
+        TradeRecordImportListener listener = new TradeRecordImportListener(
+                pipeline, importConfig.getBatchSize(), monitor, checkpoint);
+        boolean completed = false;
+        try (InputStream inputStream = source.getInputStream()) {
+            EasyExcel.read(inputStream, TradeRecord.class, listener)
+                    .sheet()
+                    .doRead();
+            pipeline.finish();
+            completed = true;
+            if (checkpoint != null) {
+                checkpoint.complete();
+            }
+            logger.info("Excel导入完成，共写入 {} 条记录，重复 {} 条（策略 {}）",
+                    pipeline.getRowsWritten(), pipeline.getRowsDuplicate(), policy);
+            return pipeline.getRowsWritten();
+        } catch (RuntimeException e) {
+            DuplicateTradeNoException duplicate = findCause(e, DuplicateTradeNoException.class);
+            if (duplicate == null) {
+                throw e;
+            }
+            // 等进行中的批次结束后再取已提交行数
+            pipeline.close();
+            logger.warn("导入因重复单号中止，已提交 {} 条记录", pipeline.getRowsWritten());
+            throw new DuplicateTradeNoException(duplicate.getTradeNos(), pipeline.getRowsWritten());
+        } finally {
+            pipeline.close();
+            monitor.onFinish(listener.getRowsParsed(), listener.getRowsSkipped(), pipeline.getRowsWritten(),
+                    pipeline.getRowsDuplicate(), completed);
+        }
+    }
+
+    /**
+     * REJECT策略的整体预检：文件内重复或库中已存在的单号都在写入前拒绝
+     */
+    private void prescan(InputStreamSource source, ImportCheckpoint checkpoint) throws IOException {
+        long start = System.currentTimeMillis();
+        TradeNoPrescanListener prescan = new TradeNoPrescanListener(checkpoint);
+        try (InputStream inputStream = source.getInputStream()) {
+            EasyExcel.read(inputStream, TradeRecord.class, prescan)
+                    .sheet()
+                    .doRead();
+        }
+        if (!prescan.getDuplicates().isEmpty()) {
+            throw new DuplicateTradeNoException(prescan.getDuplicates());
+        }
+        tradeNoDeduplicator.checkAbsent(prescan.getTradeNos());
+        logger.info("重复单号预检通过，{} 个单号，耗时 {}ms",
+                prescan.getTradeNos().size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 在异常链中查找指定类型，写入线程的异常可能被解析框架包装
+     */
+    private static <T extends Throwable> T findCause(Throwable e, Class<T> type) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按配置选择批量写库方式，写库前经过单号去重
+     * 批次与其他写入争用汇总行发生死锁或锁等待超时时，事务已整体回滚，重新去重后重试
+     */
+    private TradeRecordImportPipeline.BatchWriter batchWriter(DedupPolicy policy) {
+        TradeNoDeduplicator.ChunkWriter chunkWriter;
+        if (importConfig.getWriteMode() == ImportConfig.WriteMode.BATCH) {
+            chunkWriter = tradeRecordBatchWriter::write;
+        } else {
+            chunkWriter = this::writeForeach;
+        }
+        return batch -> {
+            int written = LockRetry.execute("导入批次", () -> tradeNoDeduplicator.write(batch, policy, chunkWriter));
+            if (written > 0) {
+                publishImported(batch);
+            }
+            return written;
+        };
+    }
+
+    /**
+     * 发布导入批次的变更事件
+     * 插入的记录由生成主键回填ID，覆盖的记录由去重器回填ID，跳过的记录没有ID
+     */
+    private void publishImported(List<TradeRecord> batch) {
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (TradeRecord record : batch) {
+            if (record.getId() != null) {
+                ids.add(record.getId());
+            }
+        }
+        eventPublisher.publishEvent(new TradeRecordChangeEvent(ChangeType.IMPORT, ids, null));
+    }
+
+    /**
+     * foreach方式在一个事务中插入新记录、按ID覆盖已存在的记录并更新汇总表
+     */
+    private void writeForeach(List<TradeRecord> inserts, List<TradeRecord> upserts) {
+        transactionTemplate.executeWithoutResult(status -> tradeRollupService.writeChunk(inserts, upserts,
+                tradeRecordMapper, tradeRollupMapper, () -> {
+                    if (!inserts.isEmpty()) {
+                        tradeRecordMapper.batchInsert(inserts);
+                    }
+                    if (!upserts.isEmpty()) {
+                        tradeRecordMapper.batchOverwrite(upserts);
+                    }
+                }));
     }
 
     /**
@@ -66,17 +295,77 @@ public class TradeRecordService {
     }
 
     /**
-     * 根据ID查询记录
+     * 根据ID查询记录，经过两级缓存
      */
     public TradeRecord getById(Long id) {
-        return tradeRecordMapper.getById(id);
+        return tradeRecordCache.getById(id);
     }
 
     /**
-     * 根据交易单号查询记录
+     * 根据交易单号查询记录，经过两级缓存
      */
     public TradeRecord getByTradeNo(String tradeNo) {
-        return tradeRecordMapper.getByTradeNo(tradeNo);
+        return tradeRecordCache.getByTradeNo(tradeNo);
+    }
+
+    /**
+     * 按ID批量查询记录，经过两级缓存，未命中的分批并发查库
+     * @param ids ID列表，重复和null会被忽略
+     * @return ID -> 记录，按请求顺序，不存在的ID不返回
+     * @throws InvalidRequestException ID个数超过上限
+     */
+    public Map<Long, TradeRecord> getByIds(List<Long> ids) {
+        List<Long> keys = distinct(ids);
+        Map<Long, TradeRecord> found = tradeRecordCache.getByIds(keys);
+        Map<Long, TradeRecord> result = new LinkedHashMap<>(found.size() * 2);
+        for (Long id : keys) {
+            TradeRecord record = found.get(id);
+            if (record != null) {
+                result.put(id, record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按交易单号批量查询记录，经过两级缓存，未命中的分批并发查库
+     * @param tradeNos 交易单号列表，重复和null会被忽略
+     * @return 单号 -> 记录，按请求顺序，不存在的单号不返回
+     * @throws InvalidRequestException 单号个数超过上限
+     */
+    public Map<String, TradeRecord> getByTradeNos(List<String> tradeNos) {
+        List<String> keys = distinct(tradeNos);
+        Map<String, TradeRecord> found = tradeRecordCache.getByTradeNos(keys);
+        Map<String, TradeRecord> result = new LinkedHashMap<>(found.size() * 2);
+        for (String tradeNo : keys) {
+            TradeRecord record = found.get(tradeNo);
+            if (record != null) {
+                result.put(tradeNo, record);
+            }
+        }
+        return result;
+    }
+
+    private <K> List<K> distinct(List<K> keys) {
+        Set<K> unique = new LinkedHashSet<>();
+        if (keys != null) {
+            for (K key : keys) {
+                if (key != null) {
+                    unique.add(key);
+                }
+            }
+        }
+        if (unique.size() > bulkConfig.getMaxKeys()) {
+            throw new InvalidRequestException("单次最多查询 " + bulkConfig.getMaxKeys() + " 个，实际 " + unique.size());
+        }
+        return new ArrayList<>(unique);
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> cacheStats() {
+        return tradeRecordCache.stats();
     }
 
     /**
@@ -84,7 +373,31 @@ public class TradeRecordService {
      */
     @Transactional(rollbackFor = Exception.class)
     public int insert(TradeRecord record) {
-        return tradeRecordMapper.insert(record);
+        int rows = tradeRecordMapper.insert(record);
+        tradeRollupService.apply(tradeRollupService.newDelta().add(Collections.singletonList(record)));
+        tradeNoDeduplicator.record(record.getTradeNo());
+        eventPublisher.publishEvent(new TradeRecordChangeEvent(ChangeType.INSERT,
+                Collections.singletonList(record.getId()), Collections.singletonList(record.getTradeNo())));
+        return rows;
+    }
+
+    /**
+     * 在一个事务中新增一批记录，供写缓冲合并提交
+     * 与逐条insert相同，不做单号去重，任一记录违反唯一约束时整批回滚
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int insertBatch(List<TradeRecord> records) {
+        int rows = tradeRecordMapper.batchInsert(records);
+        tradeRollupService.apply(tradeRollupService.newDelta().add(records));
+        List<Long> ids = new ArrayList<>(records.size());
+        List<String> tradeNos = new ArrayList<>(records.size());
+        for (TradeRecord record : records) {
+            tradeNoDeduplicator.record(record.getTradeNo());
+            ids.add(record.getId());
+            tradeNos.add(record.getTradeNo());
+        }
+        eventPublisher.publishEvent(new TradeRecordChangeEvent(ChangeType.INSERT, ids, tradeNos));
+        return rows;
     }
 
     /**
@@ -92,7 +405,17 @@ public class TradeRecordService {
      */
     @Transactional(rollbackFor = Exception.class)
     public int update(TradeRecord record) {
-        return tradeRecordMapper.update(record);
+        List<TradeRecord> previous = lockForRollup(Collections.singletonList(record.getId()));
+        int rows = tradeRecordMapper.update(record);
+        if (rows > 0 && tradeRollupService.isEnabled()) {
+            TradeRecord current = tradeRecordMapper.getById(record.getId());
+            tradeRollupService.apply(tradeRollupService.newDelta()
+                    .subtract(previous).add(Collections.singletonList(current)));
+        }
+        tradeNoDeduplicator.record(record.getTradeNo());
+        eventPublisher.publishEvent(new TradeRecordChangeEvent(ChangeType.UPDATE,
+                Collections.singletonList(record.getId()), Collections.singletonList(record.getTradeNo())));
+        return rows;
     }
 
     /**
@@ -100,7 +423,12 @@ public class TradeRecordService {
      */
     @Transactional(rollbackFor = Exception.class)
     public int deleteById(Long id) {
-        return tradeRecordMapper.deleteById(id);
+        List<TradeRecord> previous = lockForRollup(Collections.singletonList(id));
+        int rows = tradeRecordMapper.deleteById(id);
+        tradeRollupService.apply(tradeRollupService.newDelta().subtract(previous));
+        eventPublisher.publishEvent(new TradeRecordChangeEvent(ChangeType.DELETE,
+                Collections.singletonList(id), null));
+        return rows;
     }
 
     /**
@@ -108,23 +436,66 @@ public class TradeRecordService {
      */
     @Transactional(rollbackFor = Exception.class)
     public int deleteByIds(List<Long> ids) {
-        return tradeRecordMapper.deleteByIds(ids);
+        List<TradeRecord> previous = lockForRollup(ids);
+        int rows = tradeRecordMapper.deleteByIds(ids);
+        tradeRollupService.apply(tradeRollupService.newDelta().subtract(previous));
+        eventPublisher.publishEvent(new TradeRecordChangeEvent(ChangeType.DELETE, ids, null));
+        return rows;
+    }
+
+    /**
+     * 锁定并读出修改或删除前的记录，用于从汇总表中扣除；未开启汇总维护时不查询
+     */
+    private List<TradeRecord> lockForRollup(List<Long> ids) {
+        if (!tradeRollupService.isEnabled() || ids == null || ids.isEmpty() || ids.contains(null)) {
+            return Collections.emptyList();
+        }
+        return tradeRecordMapper.selectByIdsForUpdate(ids);
     }
 
     /**
      * 分页查询
+     * 不带续查令牌时按页码偏移查询并返回总数；带令牌时从上一页末尾继续（键集分页），
+     * 深分页与第一页代价相同，不再统计总数。
+     * 总数按countMode精确统计（带缓存）或估算，估算时totalEstimated为true。
+     * 返回满页时附带nextCursor，用于查询下一页。
+     * 条件含低基数列且位图索引的候选ID较少时，查询限定在候选ID内。
+     * 开启读写分离时记录读从库，可能落后于主库一个复制延迟；精确总数未命中缓存时在主库统计后写入缓存
      * @param query 查询条件
-     * @return 包含总数和记录列表的Map
+     * @return 包含总数、记录列表和续查令牌的Map
+     * @throws InvalidRequestException 续查令牌无效
      */
     public Map<String, Object> queryPage(TradeRecordQuery query) {
+        return ReadWriteContext.onReplica(() -> doQueryPage(query));
+    }
+
+    private Map<String, Object> doQueryPage(TradeRecordQuery query) {
         Map<String, Object> result = new HashMap<>();
-        long total = tradeRecordMapper.countByQuery(query);
         List<TradeRecord> records = Collections.emptyList();
-        if (total > 0) {
+        if (query.getCursor() != null && !query.getCursor().isEmpty()) {
+            PageCursor cursor = PageCursor.decode(query.getCursor());
+            query.setCursorTradeTime(cursor.getTradeTime());
+            query.setCursorId(cursor.getId());
+            tradeBitmapIndexService.preselect(query);
             records = tradeRecordMapper.selectByQuery(query);
+        } else {
+            query.setCursorId(null);
+            TradeRecordCountService.Total total = tradeRecordCountService.count(query);
+            // 估算值可能偏小，不能据此跳过查询
+            if (total.isEstimated() || total.getValue() > query.getOffset()) {
+                tradeBitmapIndexService.preselect(query);
+                records = tradeRecordMapper.selectByQuery(query);
+            }
+            result.put("total", total.getValue());
+            result.put("totalEstimated", total.isEstimated());
+        }
+        String nextCursor = null;
+        if (!records.isEmpty() && records.size() >= query.getPageSize()) {
+            TradeRecord last = records.get(records.size() - 1);
+            nextCursor = PageCursor.encode(last.getTradeTime(), last.getId());
         }
-        result.put("total", total);
         result.put("records", records);
+        result.put("nextCursor", nextCursor);
         return result;
     }
 } 
\ No newline at end of file
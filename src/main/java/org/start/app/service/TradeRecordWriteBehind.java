@@ -0,0 +1,247 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.start.app.config.WriteBehindConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.util.LockRetry;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单条新增的写缓冲（合并提交）
+ * 记录先进入有界缓冲区，由单个写线程攒批后通过batchInsert在一个事务中提交，
+ * 批次达到batchSize或第一条记录等待满maxDelayMillis即提交，把每条记录一次提交合并为每批一次。
+ * 调用方拿到的future在所在批次提交后完成；批次因唯一约束失败时逐条重写，只有冲突的记录失败。
+ * 停机时先拒绝新记录，再写完缓冲区中已接受的记录。
+ * 变更事件在写线程提交后发布，不在调用方线程，读写分离的读主库标记（Cookie）需由调用方在受理后设置
+ */
+@Service
+public class TradeRecordWriteBehind {
+    private static final Logger logger = LoggerFactory.getLogger(TradeRecordWriteBehind.class);
+    /** 空闲时检查停机标志的间隔 */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final TradeRecordService tradeRecordService;
+    private final WriteBehindConfig writeBehindConfig;
+    private final BlockingQueue<Pending> queue;
+    /** 写入时持读锁检查停机标志并入队，停机时持写锁设置标志，保证标志设置后不再有记录入队 */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong committedBatches = new AtomicLong();
+    private final AtomicLong committedRecords = new AtomicLong();
+    private final AtomicLong failedRecords = new AtomicLong();
+    private volatile String lastError;
+    private volatile boolean closed;
+    private Thread flusher;
+
+    public TradeRecordWriteBehind(TradeRecordService tradeRecordService, WriteBehindConfig writeBehindConfig) {
+        this.tradeRecordService = tradeRecordService;
+        this.writeBehindConfig = writeBehindConfig;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, writeBehindConfig.getCapacity()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!writeBehindConfig.isEnabled()) {
+            return;
+        }
+        flusher = new Thread(this::run, "trade-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 停止接受新记录，等待写线程写完缓冲区，超时后剩余记录的future以异常完成
+     */
+    @PreDestroy
+    public void stop() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join(writeBehindConfig.getShutdownTimeoutMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            logger.error("写缓冲停机超时，{} 条记录未写入", remaining.size());
+            fail(remaining, new IllegalStateException("停机超时，记录未写入"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return writeBehindConfig.isEnabled();
+    }
+
+    /**
+     * 放入写缓冲
+     * @param record 待新增的记录，提交后回填ID
+     * @return 所在批次提交后以记录ID完成
+     * @throws IllegalStateException 未启用写缓冲
+     * @throws RejectedExecutionException 缓冲区已满或正在停机
+     */
+    public CompletableFuture<Long> submit(TradeRecord record) {
+        if (!writeBehindConfig.isEnabled()) {
+            throw new IllegalStateException("未启用写缓冲");
+        }
+        Pending pending = new Pending(record);
+        boolean accepted = false;
+        closeLock.readLock().lock();
+        try {
+            if (!closed) {
+                accepted = queue.offer(pending, writeBehindConfig.getOfferTimeoutMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        if (!accepted) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(closed ? "正在停机，拒绝写入" : "写缓冲已满");
+        }
+        submitted.incrementAndGet();
+        return pending.future;
+    }
+
+    /**
+     * 缓冲区和累计写入统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batches = committedBatches.get();
+        long records = committedRecords.get();
+        stats.put("enabled", writeBehindConfig.isEnabled());
+        stats.put("closed", closed);
+        stats.put("queued", queue.size());
+        stats.put("capacity", writeBehindConfig.getCapacity());
+        stats.put("submitted", submitted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("committedBatches", batches);
+        stats.put("committedRecords", records);
+        stats.put("averageBatchSize", batches == 0 ? 0 : (double) records / batches);
+        stats.put("failedRecords", failedRecords.get());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /**
+     * 写线程：取到第一条记录后继续攒批，直到批次满或等待超时；停机后写完缓冲区再退出
+     */
+    private void run() {
+        int batchSize = Math.max(1, writeBehindConfig.getBatchSize());
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(writeBehindConfig.getMaxDelayMillis());
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || closed) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 中断不丢弃已取出和缓冲中的记录，按停机处理
+                closed = true;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        List<TradeRecord> records = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            records.add(pending.record);
+        }
+        try {
+            LockRetry.execute("写缓冲批次", () -> tradeRecordService.insertBatch(records));
+            committedBatches.incrementAndGet();
+            committedRecords.addAndGet(batch.size());
+            for (Pending pending : batch) {
+                pending.future.complete(pending.record.getId());
+            }
+        } catch (DataIntegrityViolationException e) {
+            // 一条记录违反约束会使整批回滚，逐条重写把失败限制在冲突的记录上
+            logger.warn("写缓冲批次违反约束，逐条写入 {} 条记录: {}", batch.size(), e.getMostSpecificCause().getMessage());
+            for (Pending pending : batch) {
+                pending.record.setId(null);
+                try {
+                    tradeRecordService.insert(pending.record);
+                    committedRecords.incrementAndGet();
+                    pending.future.complete(pending.record.getId());
+                } catch (RuntimeException single) {
+                    fail(Collections.singletonList(pending), single);
+                }
+            }
+            committedBatches.incrementAndGet();
+        } catch (RuntimeException e) {
+            logger.error("写缓冲批次写入失败，{} 条记录", batch.size(), e);
+            fail(batch, e);
+        }
+    }
+
+    private void fail(List<Pending> pendings, Throwable cause) {
+        failedRecords.addAndGet(pendings.size());
+        lastError = cause.getMessage();
+        for (Pending pending : pendings) {
+            pending.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 缓冲中的一条记录和等待其提交的future
+     */
+    private static final class Pending {
+        private final TradeRecord record;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        Pending(TradeRecord record) {
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.start.app.service;
+
+import org.start.app.entity.TradeRecord;
+import org.start.app.entity.TradeRollup;
+import org.start.app.mapper.TradeRollupMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一次写入对汇总表的增量
+ * 新增记录计正，删除或被覆盖前的记录计负，同一维度组合合并为一行；
+ * 写入时按日期和维度排序，并发事务以相同顺序加锁，降低死锁概率
+ */
+public class TradeRollupDelta {
+    private final ZoneId zoneId;
+    /** 日期和维度 -> 日增量，按Key排序 */
+    private final Map<String, TradeRollup> daily = new TreeMap<>();
+
+    TradeRollupDelta(ZoneId zoneId) {
+        this.zoneId = zoneId;
+    }
+
+    /**
+     * 计入新增或修改后的记录
+     */
+    public TradeRollupDelta add(List<TradeRecord> records) {
+        for (TradeRecord record : records) {
+            accumulate(record, 1);
+        }
+        return this;
+    }
+
+    /**
+     * 扣除删除或修改前的记录
+     */
+    public TradeRollupDelta subtract(List<TradeRecord> records) {
+        for (TradeRecord record : records) {
+            accumulate(record, -1);
+        }
+        return this;
+    }
+
+    /**
+     * 把增量累加到日汇总和月汇总，须与记录写入在同一事务内调用
+     * @param mapper 汇总表Mapper，BATCH执行器下传入同一批处理会话的Mapper
+     */
+    public void applyTo(TradeRollupMapper mapper) {
+        List<TradeRollup> days = new ArrayList<>(daily.size());
+        Map<String, TradeRollup> monthly = new TreeMap<>();
+        for (TradeRollup day : daily.values()) {
+            if (day.getTradeCount() == 0 && day.getAmountSum().signum() == 0) {
+                continue;
+            }
+            days.add(day);
+            LocalDate month = day.getStatDate().withDayOfMonth(1);
+            TradeRollup rollup = monthly.computeIfAbsent(key(month, day), k -> newRollup(month, day));
+            rollup.setTradeCount(rollup.getTradeCount() + day.getTradeCount());
+            rollup.setAmountSum(rollup.getAmountSum().add(day.getAmountSum()));
+        }
+        if (days.isEmpty()) {
+            return;
+        }
+        mapper.upsertDaily(days);
+        mapper.upsertMonthly(new ArrayList<>(monthly.values()));
+    }
+
+    private void accumulate(TradeRecord record, int sign) {
+        if (record == null || record.getTradeTime() == null) {
+            return;
+        }
+        LocalDate date = record.getTradeTime().toInstant().atZone(zoneId).toLocalDate();
+        TradeRollup template = new TradeRollup();
+        template.setTradeType(record.getTradeType());
+        template.setDirection(record.getDirection());
+        template.setPaymentMethod(record.getPaymentMethod());
+        template.setStatus(record.getStatus());
+        TradeRollup rollup = daily.computeIfAbsent(key(date, template), k -> newRollup(date, template));
+        rollup.setTradeCount(rollup.getTradeCount() + sign);
+        if (record.getAmount() != null) {
+            BigDecimal amount = record.getAmount();
+            rollup.setAmountSum(sign > 0 ? rollup.getAmountSum().add(amount) : rollup.getAmountSum().subtract(amount));
+        }
+    }
+
+    private static String key(LocalDate date, TradeRollup dimensions) {
+        return date + "\u0000" + dimensions.getTradeType() + "\u0000" + dimensions.getDirection()
+                + "\u0000" + dimensions.getPaymentMethod() + "\u0000" + dimensions.getStatus();
+    }
+
+    private static TradeRollup newRollup(LocalDate date, TradeRollup dimensions) {
+        TradeRollup rollup = new TradeRollup();
+        rollup.setStatDate(date);
+        rollup.setTradeType(dimensions.getTradeType());
+        rollup.setDirection(dimensions.getDirection());
+        rollup.setPaymentMethod(dimensions.getPaymentMethod());
+        rollup.setStatus(dimensions.getStatus());
+        rollup.setAmountSum(BigDecimal.ZERO);
+        return rollup;
+    }
+}
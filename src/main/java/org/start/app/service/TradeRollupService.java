@@ -0,0 +1,310 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.start.app.config.RollupConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.mapper.TradeRollupMapper;
+import org.start.app.model.InvalidRequestException;
+import org.start.app.model.TradeStatsQuery;
+import org.start.app.model.TradeStatsQuery.Granularity;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 交易汇总服务
+ * 日汇总和月汇总表随每次写入在同一事务内增量更新，统计接口只读汇总表，不扫描交易记录；
+ * 日期和维度对齐到整月时读月汇总表，否则读日汇总表。
+ * 重建按月进行，每月一个事务：删除该月汇总后从交易记录重新聚合，
+ * INSERT ... SELECT 对扫描到的记录加共享锁，重建期间该月的写入会等待，不会丢失增量
+ */
+@Service
+public class TradeRollupService {
+    private static final Logger logger = LoggerFactory.getLogger(TradeRollupService.class);
+    private static final String DAILY_TABLE = "trade_rollup_daily";
+    private static final String MONTHLY_TABLE = "trade_rollup_monthly";
+    /** 可分组的维度 -> 汇总表列名 */
+    private static final Map<String, String> DIMENSIONS = new LinkedHashMap<>();
+
+    static {
+        DIMENSIONS.put("tradeType", "trade_type");
+        DIMENSIONS.put("direction", "direction");
+        DIMENSIONS.put("paymentMethod", "payment_method");
+        DIMENSIONS.put("status", "status");
+    }
+
+    private final TradeRollupMapper tradeRollupMapper;
+    private final TradeRecordMapper tradeRecordMapper;
+    private final RollupConfig rollupConfig;
+    private final TransactionTemplate transactionTemplate;
+    private final ZoneId zoneId;
+
+    /** 重建任务是否在运行 */
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    /** 最近一次重建的状态 */
+    private volatile Map<String, Object> rebuildStatus = Collections.singletonMap("state", "IDLE");
+
+    public TradeRollupService(TradeRollupMapper tradeRollupMapper, TradeRecordMapper tradeRecordMapper,
+                              RollupConfig rollupConfig, TransactionTemplate transactionTemplate) {
+        this.tradeRollupMapper = tradeRollupMapper;
+        this.tradeRecordMapper = tradeRecordMapper;
+        this.rollupConfig = rollupConfig;
+        this.transactionTemplate = transactionTemplate;
+        this.zoneId = ZoneId.of(rollupConfig.getZoneId());
+    }
+
+    /**
+     * 是否增量维护汇总表
+     */
+    public boolean isEnabled() {
+        return rollupConfig.isEnabled();
+    }
+
+    /**
+     * 新建一次写入的增量
+     */
+    public TradeRollupDelta newDelta() {
+        return new TradeRollupDelta(zoneId);
+    }
+
+    /**
+     * 把一次写入的增量累加到汇总表，未开启增量维护时忽略
+     * 须与记录写入在同一事务内调用
+     */
+    public void apply(TradeRollupDelta delta) {
+        if (isEnabled()) {
+            delta.applyTo(tradeRollupMapper);
+        }
+    }
+
+    /**
+     * 执行导入批次的写入并同步汇总，须在事务内调用
+     * 覆盖前先锁定并读出旧记录，写入后按新记录计正、旧记录计负；
+     * 覆盖按ID更新，交易时间变化时旧日期扣除、新日期计入，已被并发删除的记录不会被覆盖，也不计入
+     * @param inserts 待插入的记录
+     * @param upserts 待覆盖的记录，ID已由去重器回填
+     * @param recordMapper 交易记录Mapper，与write使用同一会话
+     * @param rollupMapper 汇总表Mapper，与write使用同一会话
+     * @param write 写入操作
+     */
+    public void writeChunk(List<TradeRecord> inserts, List<TradeRecord> upserts, TradeRecordMapper recordMapper,
+                           TradeRollupMapper rollupMapper, Runnable write) {
+        if (!isEnabled()) {
+            write.run();
+            return;
+        }
+        List<TradeRecord> previous = Collections.emptyList();
+        List<TradeRecord> overwritten = Collections.emptyList();
+        if (!upserts.isEmpty()) {
+            List<Long> ids = new ArrayList<>(upserts.size());
+            for (TradeRecord record : upserts) {
+                ids.add(record.getId());
+            }
+            previous = recordMapper.selectByIdsForUpdate(ids);
+            Set<Long> existing = new HashSet<>(previous.size() * 2);
+            for (TradeRecord record : previous) {
+                existing.add(record.getId());
+            }
+            overwritten = new ArrayList<>(previous.size());
+            for (TradeRecord record : upserts) {
+                if (existing.contains(record.getId())) {
+                    overwritten.add(record);
+                }
+            }
+        }
+        write.run();
+        newDelta().add(inserts).add(overwritten).subtract(previous).applyTo(rollupMapper);
+    }
+
+    /**
+     * 交易统计
+     * @param query 统计条件
+     * @return granularity、source（读取的汇总表）、rows（每个时间段和维度组合一行）、totalCount、totalAmount
+     * @throws InvalidRequestException 分组维度不支持或日期范围无效
+     */
+    public Map<String, Object> stats(TradeStatsQuery query) {
+        Granularity granularity = query.getGranularity() != null ? query.getGranularity() : Granularity.MONTH;
+        LocalDate start = query.getStartDate();
+        LocalDate end = query.getEndDate();
+        if (start != null && end != null && start.isAfter(end)) {
+            throw new InvalidRequestException("开始日期不能晚于结束日期");
+        }
+
+        List<String> selectColumns = new ArrayList<>();
+        List<String> groupColumns = new ArrayList<>();
+        Set<String> groupBy = query.getGroupBy() == null
+                ? Collections.emptySet() : new LinkedHashSet<>(query.getGroupBy());
+        for (String dimension : groupBy) {
+            String column = DIMENSIONS.get(dimension);
+            if (column == null) {
+                throw new InvalidRequestException("不支持的分组维度: " + dimension + "，可选 " + DIMENSIONS.keySet());
+            }
+            selectColumns.add(column + " AS " + dimension);
+            groupColumns.add(column);
+        }
+
+        boolean monthAligned = (start == null || start.getDayOfMonth() == 1)
+                && (end == null || end.equals(end.with(TemporalAdjusters.lastDayOfMonth())));
+        boolean monthly = granularity != Granularity.DAY && monthAligned;
+        List<Map<String, Object>> rows = monthly
+                ? tradeRollupMapper.selectStats(MONTHLY_TABLE, "stat_month", granularity.name(), selectColumns,
+                        groupColumns, start, end == null ? null : end.withDayOfMonth(1), query)
+                : tradeRollupMapper.selectStats(DAILY_TABLE, "stat_date", granularity.name(), selectColumns,
+                        groupColumns, start, end, query);
+
+        long totalCount = 0;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (Map<String, Object> row : rows) {
+            long count = ((Number) row.get("tradeCount")).longValue();
+            row.put("tradeCount", count);
+            totalCount += count;
+            Object amount = row.get("amount");
+            if (amount instanceof BigDecimal) {
+                totalAmount = totalAmount.add((BigDecimal) amount);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("granularity", granularity);
+        result.put("source", monthly ? MONTHLY_TABLE : DAILY_TABLE);
+        result.put("rows", rows);
+        result.put("totalCount", totalCount);
+        result.put("totalAmount", totalAmount);
+        return result;
+    }
+
+    /**
+     * 在后台按月重建汇总表，同一时间只运行一个重建任务
+     * @param start 开始日期，按所在月份整月重建，为null时取最早的交易时间
+     * @param end 结束日期，按所在月份整月重建，为null时取最晚的交易时间
+     * @return 是否已启动，已有重建任务运行时返回false
+     * @throws InvalidRequestException 日期范围无效
+     */
+    public boolean rebuild(LocalDate start, LocalDate end) {
+        if (start != null && end != null && start.isAfter(end)) {
+            throw new InvalidRequestException("开始日期不能晚于结束日期");
+        }
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", "RUNNING");
+        status.put("startedAt", new Date());
+        rebuildStatus = status;
+        Thread thread = new Thread(() -> {
+            try {
+                doRebuild(start, end);
+            } finally {
+                rebuilding.set(false);
+            }
+        }, "trade-rollup-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 最近一次重建的状态
+     */
+    public Map<String, Object> rebuildStatus() {
+        return rebuildStatus;
+    }
+
+    private void doRebuild(LocalDate start, LocalDate end) {
+        long startedAt = System.currentTimeMillis();
+        Map<String, Object> status = new LinkedHashMap<>(rebuildStatus);
+        try {
+            LocalDate from = start;
+            LocalDate to = end;
+            if (from == null || to == null) {
+                Map<String, Object> range = tradeRollupMapper.selectTradeTimeRange();
+                if (from == null) {
+                    from = range == null ? null : toLocalDate(range.get("minTime"));
+                }
+                if (to == null) {
+                    to = range == null ? null : toLocalDate(range.get("maxTime"));
+                }
+            }
+            if (from == null || to == null) {
+                status = new LinkedHashMap<>(status);
+                status.put("state", "COMPLETED");
+                status.put("months", 0);
+                status.put("finishedAt", new Date());
+                rebuildStatus = status;
+                return;
+            }
+
+            LocalDate month = from.withDayOfMonth(1);
+            LocalDate last = to.withDayOfMonth(1);
+            status.put("startMonth", month.toString());
+            status.put("endMonth", last.toString());
+            int months = 0;
+            long dailyRows = 0;
+            while (!month.isAfter(last)) {
+                LocalDate current = month;
+                LocalDate next = month.plusMonths(1);
+                Integer rows = transactionTemplate.execute(tx -> {
+                    tradeRollupMapper.deleteDaily(current, next);
+                    int inserted = tradeRollupMapper.rebuildDaily(current, next);
+                    tradeRollupMapper.deleteMonthly(current, next);
+                    tradeRollupMapper.rebuildMonthly(current, next);
+                    return inserted;
+                });
+                dailyRows += rows == null ? 0 : rows;
+                months++;
+                Map<String, Object> progress = new LinkedHashMap<>(status);
+                progress.put("currentMonth", current.toString());
+                progress.put("monthsDone", months);
+                progress.put("dailyRows", dailyRows);
+                rebuildStatus = progress;
+                month = next;
+            }
+
+            status = new LinkedHashMap<>(rebuildStatus);
+            status.put("state", "COMPLETED");
+            status.put("finishedAt", new Date());
+            rebuildStatus = status;
+            logger.info("交易汇总重建完成，{} 至 {} 共 {} 个月，日汇总 {} 行，耗时 {}ms",
+                    status.get("startMonth"), status.get("endMonth"), months, dailyRows,
+                    System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            status = new LinkedHashMap<>(rebuildStatus);
+            status.put("state", "FAILED");
+            status.put("error", e.getMessage());
+            status.put("finishedAt", new Date());
+            rebuildStatus = status;
+            logger.error("交易汇总重建失败，已完成的月份保留", e);
+        }
+    }
+
+    private LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toLocalDate();
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toLocalDate();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).toInstant().atZone(zoneId).toLocalDate();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,185 @@
+package org.start.app.service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.start.app.analytics.InvertedIndex;
+import org.start.app.analytics.SearchTokenizer;
+import org.start.app.config.SearchConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.model.InvalidRequestException;
+import org.start.app.model.TradeRecordChangeEvent;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易记录关键词搜索服务
+ * 由刷新器在启动后按主键分批为交易对方、商品、备注建立倒排索引，之后定时按主键追加其他节点新写入的记录；
+ * 本节点的新增、导入、修改和删除在事务提交后排队，立即由刷新线程按ID重新读取并更新。
+ * 索引只追加，修改前的旧词项仍会命中，搜索时按数据库中的原文校验候选记录后再返回；
+ * 重建在刷新线程中从表重新加载，完成后替换旧索引并清理旧词项
+ */
+@Service
+public class TradeSearchService {
+    /** 候选记录校验不足时最多扩大的倍数 */
+    private static final int MAX_FETCH_FACTOR = 16;
+
+    private final TradeRecordMapper tradeRecordMapper;
+    private final SearchConfig searchConfig;
+    private final TradeIndexRefresher<InvertedIndex> refresher;
+
+    public TradeSearchService(TradeRecordMapper tradeRecordMapper, SearchConfig searchConfig,
+                              TradeWriteGeneration writeGeneration) {
+        this.tradeRecordMapper = tradeRecordMapper;
+        this.searchConfig = searchConfig;
+        this.refresher = new TradeIndexRefresher<>("搜索索引", "trade-search-index", searchConfig,
+                TradeIndexRefresher.Loader.of(tradeRecordMapper::selectSearchAfterId,
+                        tradeRecordMapper::selectSearchByIds),
+                InvertedIndex.MAX_ID, () -> new InvertedIndex(searchConfig.getExpectedRows()), writeGeneration);
+    }
+
+    /**
+     * 应用启动后在刷新线程中建立索引，完成后定时追加新记录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (searchConfig.isEnabled()) {
+            refresher.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.stop();
+    }
+
+    /**
+     * 本节点写入后排队，由刷新线程立即处理，事务提交后执行
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(TradeRecordChangeEvent event) {
+        refresher.onChange(event);
+    }
+
+    /**
+     * 是否已完成首次加载
+     */
+    public boolean isReady() {
+        return refresher.isReady();
+    }
+
+    /**
+     * 按关键词搜索交易记录
+     * 中文按字片段匹配，字母数字按词前缀匹配，多个关键词需全部命中，结果按交易时间倒序
+     * @param keyword 关键词
+     * @param fieldNames 搜索的字段，可选counterparty、product、remarks，为空时搜索全部
+     * @param limit 最多返回的记录数，不超过配置的上限
+     * @return total（候选记录数，记录修改后可能偏多）、records、elapsedMicros
+     * @throws InvalidRequestException 关键词为空或字段不支持
+     * @throws IllegalStateException 未开启或尚未加载完成
+     */
+    public Map<String, Object> search(String keyword, List<String> fieldNames, int limit) {
+        InvertedIndex index = refresher.getIndex();
+        if (!refresher.isReady() || index == null) {
+            throw new IllegalStateException(searchConfig.isEnabled() ? "搜索索引加载中" : "搜索索引未开启");
+        }
+        List<SearchTokenizer.Term> terms = SearchTokenizer.query(keyword);
+        if (terms.isEmpty()) {
+            throw new InvalidRequestException("关键词不能为空");
+        }
+        Set<InvertedIndex.Field> fields = EnumSet.noneOf(InvertedIndex.Field.class);
+        if (fieldNames == null || fieldNames.isEmpty()) {
+            fields = EnumSet.allOf(InvertedIndex.Field.class);
+        } else {
+            for (String fieldName : fieldNames) {
+                fields.add(InvertedIndex.Field.ofField(fieldName));
+            }
+        }
+        int size = Math.max(1, Math.min(limit, searchConfig.getMaxLimit()));
+
+        long start = System.nanoTime();
+        List<TradeRecord> records = new ArrayList<>(size);
+        InvertedIndex.Hits hits;
+        int fetch = size;
+        do {
+            // 部分候选可能已修改不再命中，候选不足时扩大范围重新取
+            records.clear();
+            hits = index.search(terms, fields, fetch);
+            verify(hits.getIds(), terms, fields, records, size);
+            fetch *= 2;
+        } while (records.size() < size && hits.getIds().length < hits.getTotal() && fetch <= size * MAX_FETCH_FACTOR);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("total", hits.getTotal());
+        response.put("records", records);
+        response.put("elapsedMicros", TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        return response;
+    }
+
+    /**
+     * 在刷新线程中从表重新建立索引，完成后替换旧索引
+     * @return 已有重建任务或未开启时返回false
+     */
+    public boolean rebuild() {
+        return refresher.rebuild();
+    }
+
+    /**
+     * 索引状态
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", searchConfig.isEnabled());
+        stats.putAll(refresher.stats());
+        InvertedIndex current = refresher.getIndex();
+        if (current != null) {
+            stats.putAll(current.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * 按数据库中的原文校验候选记录，保持候选顺序
+     */
+    private void verify(long[] ids, List<SearchTokenizer.Term> terms, Set<InvertedIndex.Field> fields,
+                        List<TradeRecord> records, int size) {
+        if (ids.length == 0) {
+            return;
+        }
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            idList.add(id);
+        }
+        Map<Long, TradeRecord> byId = new HashMap<>();
+        for (TradeRecord record : tradeRecordMapper.selectByIds(idList)) {
+            byId.put(record.getId(), record);
+        }
+        for (Long id : idList) {
+            TradeRecord record = byId.get(id);
+            if (record == null) {
+                continue;
+            }
+            Set<String> indexed = new HashSet<>();
+            for (InvertedIndex.Field field : fields) {
+                indexed.addAll(SearchTokenizer.index(field.valueOf(record)));
+            }
+            if (SearchTokenizer.matches(indexed, terms)) {
+                records.add(record);
+                if (records.size() >= size) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.start.app.model.TradeRecordChangeEvent;
+import org.start.app.util.RedisUtil;
+
+/**
+ * 交易记录写入代数
+ * 任何节点的每个变更事件在事务提交后使Redis中的代数加一；
+ * 总数缓存的Key带上代数，旧缓存自然失效；进程内索引比较代数的增量和自己处理过的事件数，判断是否漏掉了其他节点的写入
+ */
+@Component
+public class TradeWriteGeneration {
+    private static final Logger logger = LoggerFactory.getLogger(TradeWriteGeneration.class);
+    /** 写入代数Key */
+    private static final String GENERATION_KEY = "trade:count:generation";
+
+    private final RedisUtil redisUtil;
+
+    public TradeWriteGeneration(RedisUtil redisUtil) {
+        this.redisUtil = redisUtil;
+    }
+
+    /**
+     * 交易记录变更后递增写入代数，事务提交后执行
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(TradeRecordChangeEvent event) {
+        try {
+            redisUtil.increment(GENERATION_KEY, 1);
+        } catch (Exception e) {
+            logger.warn("递增写入代数失败，总数缓存将在过期后失效: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 当前写入代数，从未写入时为0
+     * @throws org.springframework.dao.DataAccessException 读取Redis失败
+     */
+    public long current() {
+        Object generation = redisUtil.get(GENERATION_KEY);
+        return generation == null ? 0 : Long.parseLong(generation.toString());
+    }
+}
@@ -0,0 +1,90 @@
+package org.start.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.start.app.config.ImportConfig;
+import org.start.app.entity.TradeRecord;
+import org.start.app.excel.TradeRecordImportPipeline;
+import org.start.app.mapper.TradeRecordMapper;
+import org.start.app.util.AdaptiveBatchSizer;
+import org.start.app.util.ExcelDataGenerator;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 写库方式基准测试
+ * 用相同的数据和分批方式分别走foreach与JDBC批处理两条写入路径。
+ * 每种方式写入一张按trade_record结构新建的表，测完删除整张表：交易记录表、内存索引、总数缓存和导入的批量大小都不受影响。
+ * 连接池中的连接各自独立，临时表（CREATE TEMPORARY TABLE）只对创建它的连接可见，因此用普通表，表名带时间戳
+ */
+@Service
+public class WriteBenchmarkService {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBenchmarkService.class);
+    /** 单次基准测试的最大行数 */
+    public static final int MAX_ROWS = 200000;
+    /** 基准测试表名前缀 */
+    private static final String TABLE_PREFIX = "trade_record_bench_";
+
+    private final TradeRecordMapper tradeRecordMapper;
+    private final TradeRecordBatchWriter tradeRecordBatchWriter;
+    private final ImportConfig importConfig;
+
+    public WriteBenchmarkService(TradeRecordMapper tradeRecordMapper, TradeRecordBatchWriter tradeRecordBatchWriter,
+                                 ImportConfig importConfig) {
+        this.tradeRecordMapper = tradeRecordMapper;
+        this.tradeRecordBatchWriter = tradeRecordBatchWriter;
+        this.importConfig = importConfig;
+    }
+
+    /**
+     * 对比两种写库方式，同一节点上的测试依次执行
+     * @param rows 每种方式写入的行数
+     * @return 各方式的耗时和吞吐量
+     */
+    public synchronized Map<String, Object> compare(int rows) {
+        int count = Math.max(1, Math.min(rows, MAX_ROWS));
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(importConfig.getBatchMinSize(),
+                importConfig.getBatchMaxSize(), importConfig.getBatchTargetMillis(), importConfig.getBatchSize());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rows", count);
+        result.put("chunkSize", importConfig.getBatchSize());
+        result.put("foreach", run("foreach", count,
+                table -> records -> tradeRecordMapper.batchInsertInto(table, records)));
+        result.put("batch", run("batch", count,
+                table -> records -> tradeRecordBatchWriter.write(table, records, sizer)));
+        result.put("adaptiveFlushSize", sizer.current());
+        return result;
+    }
+
+    private Map<String, Object> run(String mode, int rows, Function<String, TradeRecordImportPipeline.BatchWriter> writerFactory) {
+        List<TradeRecord> records = ExcelDataGenerator.generateRecords(rows);
+        String prefix = "BENCH" + System.currentTimeMillis() + "-";
+        for (int i = 0; i < records.size(); i++) {
+            records.get(i).setTradeNo(prefix + i);
+        }
+
+        String table = TABLE_PREFIX + System.currentTimeMillis();
+        tradeRecordMapper.createBenchmarkTable(table);
+        try {
+            TradeRecordImportPipeline.BatchWriter writer = writerFactory.apply(table);
+            int chunkSize = Math.max(1, importConfig.getBatchSize());
+            long start = System.nanoTime();
+            for (int from = 0; from < records.size(); from += chunkSize) {
+                writer.write(records.subList(from, Math.min(from + chunkSize, records.size())));
+            }
+            long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("millis", elapsedMillis);
+            stats.put("rowsPerSecond", rows * 1000L / elapsedMillis);
+            logger.info("写库基准测试 {}：{} 行，耗时 {}ms", mode, rows, elapsedMillis);
+            return stats;
+        } finally {
+            tradeRecordMapper.dropBenchmarkTable(table);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.start.app.util;
+
+/**
+ * 自适应批量大小
+ * 根据实测的每行写入耗时（指数加权平均）计算使单次刷写接近目标耗时的批量大小，
+ * 每次调整幅度不超过当前值的一半，避免在抖动的延迟下来回震荡
+ */
+public class AdaptiveBatchSizer {
+    /** 平滑系数 */
+    private static final double ALPHA = 0.3;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetNanos;
+
+    /** 当前批量大小 */
+    private volatile int current;
+    /** 每行耗时的加权平均（纳秒），未采样时为负数 */
+    private double nanosPerRow = -1;
+
+    /**
+     * @param minSize 最小批量
+     * @param maxSize 最大批量
+     * @param targetMillis 单次刷写的目标耗时（毫秒）
+     * @param initialSize 初始批量
+     */
+    public AdaptiveBatchSizer(int minSize, int maxSize, long targetMillis, int initialSize) {
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.targetNanos = Math.max(1, targetMillis) * 1_000_000L;
+        this.current = clamp(initialSize);
+    }
+
+    /**
+     * 当前批量大小
+     */
+    public int current() {
+        return current;
+    }
+
+    /**
+     * 记录一次刷写的耗时并调整批量大小
+     * @param rows 本次刷写的行数
+     * @param elapsedNanos 本次刷写耗时（纳秒）
+     */
+    public synchronized void record(int rows, long elapsedNanos) {
+        if (rows <= 0 || elapsedNanos <= 0) {
+            return;
+        }
+        double sample = (double) elapsedNanos / rows;
+        nanosPerRow = nanosPerRow < 0 ? sample : nanosPerRow * (1 - ALPHA) + sample * ALPHA;
+
+        long desired = Math.round(targetNanos / nanosPerRow);
+        int size = current;
+        long next;
+        if (desired > size) {
+            next = Math.min(desired, size + Math.max(1, size / 2));
+        } else {
+            next = Math.max(desired, size / 2);
+        }
+        current = clamp(next);
+    }
+
+    private int clamp(long size) {
+        return (int) Math.max(minSize, Math.min(maxSize, size));
+    }
+}
@@ -0,0 +1,122 @@
+package org.start.app.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的布隆过滤器
+ * 位数组按期望元素数和误判率计算，使用两个64位哈希组合出k个位置（Kirsch-Mitzenmacher），
+ * 位置计算公开给调用方，便于把同样的位写入Redis位图
+ */
+public class BloomFilter {
+    private static final long SEED_1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /** 位数组 */
+    private final AtomicLongArray bits;
+    /** 位数 */
+    private final long bitSize;
+    /** 哈希函数个数 */
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 期望元素数
+     * @param fpp 期望误判率
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        double p = Math.min(Math.max(fpp, 1e-9), 0.5);
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        // Redis位图最大2^32位，同时保证数组长度不超过int范围
+        this.bitSize = Math.max(64, Math.min(m, 1L << 32));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((bitSize + 63) >>> 6));
+    }
+
+    /**
+     * 计算元素对应的位位置
+     */
+    public long[] indexes(String value) {
+        long h1 = hash(value, SEED_1);
+        long h2 = hash(value, SEED_2) | 1;
+        long[] indexes = new long[hashCount];
+        for (int i = 0; i < hashCount; i++) {
+            indexes[i] = Math.floorMod(h1 + i * h2, bitSize);
+        }
+        return indexes;
+    }
+
+    /**
+     * 添加元素
+     */
+    public void put(String value) {
+        putIndexes(indexes(value));
+    }
+
+    /**
+     * 按位位置添加元素
+     */
+    public void putIndexes(long[] indexes) {
+        for (long index : indexes) {
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * 元素是否可能存在，返回false时一定不存在
+     */
+    public boolean mightContain(String value) {
+        return containsIndexes(indexes(value));
+    }
+
+    /**
+     * 按位位置判断元素是否可能存在
+     */
+    public boolean containsIndexes(long[] indexes) {
+        for (long index : indexes) {
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 位数
+     */
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    /**
+     * 哈希函数个数
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * 带种子的FNV-1a哈希，再经过MurmurHash3的fmix64打散
+     */
+    private static long hash(String value, long seed) {
+        long h = seed ^ value.length();
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,53 @@
+package org.start.app.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.util.function.Supplier;
+
+/**
+ * 锁冲突重试
+ * 死锁或锁等待超时（PessimisticLockingFailureException）时事务已整体回滚，重新执行整个事务即可；
+ * 操作须自带事务边界，重试前不能有已提交的部分
+ */
+public final class LockRetry {
+    private static final Logger logger = LoggerFactory.getLogger(LockRetry.class);
+    /** 默认最大尝试次数 */
+    public static final int DEFAULT_ATTEMPTS = 3;
+
+    private LockRetry() {
+    }
+
+    /**
+     * 执行操作，锁冲突时最多尝试DEFAULT_ATTEMPTS次
+     * @param operation 操作名称，用于日志
+     * @param action 在一个事务中完成的操作
+     * @return 操作结果
+     * @throws PessimisticLockingFailureException 最后一次尝试仍锁冲突
+     */
+    public static <T> T execute(String operation, Supplier<T> action) {
+        return execute(operation, DEFAULT_ATTEMPTS, action);
+    }
+
+    /**
+     * 执行操作，锁冲突时最多尝试attempts次
+     * @param operation 操作名称，用于日志
+     * @param attempts 最大尝试次数
+     * @param action 在一个事务中完成的操作
+     * @return 操作结果
+     * @throws PessimisticLockingFailureException 最后一次尝试仍锁冲突
+     */
+    public static <T> T execute(String operation, int attempts, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                logger.warn("{}锁冲突，第 {} 次重试: {}", operation, attempt, e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+}
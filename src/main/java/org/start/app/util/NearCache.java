@@ -0,0 +1,130 @@
+package org.start.app.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内近端缓存
+ * 按访问顺序淘汰（LRU），容量超限时淘汰最久未访问的条目，条目写入后超过TTL即失效；
+ * 所有操作在同一把锁内完成，适合读多写少、容量在万级的热点数据
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class NearCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> map;
+
+    private long hits;
+    private long misses;
+    /** 因容量淘汰的条目数 */
+    private long evictions;
+    /** 因过期失效的条目数 */
+    private long expirations;
+
+    /**
+     * @param maxSize 最大条目数
+     * @param ttlMillis 条目存活时间（毫秒）
+     */
+    public NearCache(int maxSize, long ttlMillis) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > NearCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 读取缓存
+     * @return 未命中或已过期时返回null
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expireAt <= System.currentTimeMillis()) {
+            map.remove(key);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * 写入缓存，value为null时不缓存
+     */
+    public synchronized void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        map.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * 删除条目
+     */
+    public synchronized void invalidate(K key) {
+        map.remove(key);
+    }
+
+    /**
+     * 清除已过期的条目
+     */
+    public synchronized void cleanUp() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry<V>> iterator = map.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expireAt <= now) {
+                iterator.remove();
+                expirations++;
+            }
+        }
+    }
+
+    /**
+     * 清空缓存，统计数据保留
+     */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    /**
+     * 统计信息
+     * @return 条目数、命中、未命中、淘汰、过期次数
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", map.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        long requests = hits + misses;
+        stats.put("hitRate", requests == 0 ? 0.0 : Math.round(hits * 10000.0 / requests) / 10000.0);
+        stats.put("evictions", evictions);
+        stats.put("expirations", expirations);
+        return stats;
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expireAt;
+
+        Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
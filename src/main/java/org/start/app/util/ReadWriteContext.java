@@ -0,0 +1,78 @@
+package org.start.app.util;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * 读写分离的线程上下文
+ * 只读查询用onReplica包裹，或在只读事务中执行，获取连接时路由到从库；
+ * 读写事务中一律走主库。本线程刚写入过（或请求带回了写入Cookie）时，在期限内也走主库
+ */
+public final class ReadWriteContext {
+    /** onReplica的嵌套层数 */
+    private static final ThreadLocal<int[]> REPLICA_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+    /** 在此时间（毫秒时间戳）之前读主库 */
+    private static final ThreadLocal<long[]> PRIMARY_UNTIL = ThreadLocal.withInitial(() -> new long[1]);
+
+    private ReadWriteContext() {
+    }
+
+    /**
+     * 在从库上执行只读查询，操作中不得写库
+     */
+    public static <T> T onReplica(Supplier<T> action) {
+        int[] depth = REPLICA_DEPTH.get();
+        depth[0]++;
+        try {
+            return action.get();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * 在主库上执行查询，即使外层用onReplica包裹；结果要写入共享缓存时使用，避免缓存落后于主库的值。
+     * 已在只读事务中时连接已经绑定，不再切换
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        int[] depth = REPLICA_DEPTH.get();
+        int saved = depth[0];
+        depth[0] = 0;
+        try {
+            return action.get();
+        } finally {
+            depth[0] = saved;
+        }
+    }
+
+    /**
+     * 当前获取的连接是否应当来自从库
+     */
+    public static boolean isReplicaPreferred() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return false;
+            }
+        } else if (REPLICA_DEPTH.get()[0] == 0) {
+            return false;
+        }
+        return System.currentTimeMillis() >= PRIMARY_UNTIL.get()[0];
+    }
+
+    /**
+     * 在指定时间之前本线程读主库
+     * @param epochMillis 毫秒时间戳，早于已有期限时不生效
+     */
+    public static void stickToPrimaryUntil(long epochMillis) {
+        long[] until = PRIMARY_UNTIL.get();
+        until[0] = Math.max(until[0], epochMillis);
+    }
+
+    /**
+     * 清除本线程的读主库期限，请求结束时调用
+     */
+    public static void clear() {
+        PRIMARY_UNTIL.remove();
+    }
+}
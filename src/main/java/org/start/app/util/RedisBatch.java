@@ -0,0 +1,336 @@
+package org.start.app.util;
+
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Redis批量操作
+ * 先登记操作，每个操作返回一个结果占位；再通过管道一次往返发送（execute），
+ * 或用MULTI/EXEC原子执行（executeInTransaction），执行后从占位中取出类型化的结果。
+ * 只登记对应单条命令的操作，保证返回结果与操作一一对应。
+ * 非线程安全，一个批次只能执行一次
+ */
+public class RedisBatch {
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final List<Operation<?>> operations = new ArrayList<>();
+    private boolean executed;
+
+    RedisBatch(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    // ====== String类型操作 ======
+
+    /**
+     * 获取值
+     */
+    public Result<Object> get(String key) {
+        return add(ops -> ops.opsForValue().get(key), value -> value);
+    }
+
+    /**
+     * 设置值
+     */
+    public Result<Boolean> set(String key, Object value) {
+        return add(ops -> ops.opsForValue().set(key, value), RedisBatch::toBoolean);
+    }
+
+    /**
+     * 设置带过期时间的值
+     */
+    public Result<Boolean> setEx(String key, Object value, long time, TimeUnit timeUnit) {
+        return add(ops -> ops.opsForValue().set(key, value, time, timeUnit), RedisBatch::toBoolean);
+    }
+
+    /**
+     * 计数器递增
+     */
+    public Result<Long> increment(String key, long delta) {
+        return add(ops -> ops.opsForValue().increment(key, delta), RedisBatch::toLong);
+    }
+
+    /**
+     * 计数器递减
+     */
+    public Result<Long> decrement(String key, long delta) {
+        return add(ops -> ops.opsForValue().decrement(key, delta), RedisBatch::toLong);
+    }
+
+    /**
+     * 删除键，结果为是否删除了键
+     */
+    public Result<Boolean> delete(String key) {
+        return add(ops -> ops.delete(key), RedisBatch::toBoolean);
+    }
+
+    /**
+     * 设置过期时间
+     */
+    public Result<Boolean> expire(String key, long time, TimeUnit timeUnit) {
+        return add(ops -> ops.expire(key, time, timeUnit), RedisBatch::toBoolean);
+    }
+
+    // ====== Hash类型操作 ======
+
+    /**
+     * 设置Hash字段，结果为是否新增了字段
+     */
+    public Result<Boolean> hSet(String key, String field, Object value) {
+        return add(ops -> ops.opsForHash().put(key, field, value), RedisBatch::toBoolean);
+    }
+
+    /**
+     * 获取Hash字段
+     */
+    public Result<Object> hGet(String key, String field) {
+        return add(ops -> ops.opsForHash().get(key, field), value -> value);
+    }
+
+    /**
+     * 获取Hash所有字段
+     */
+    @SuppressWarnings("unchecked")
+    public Result<Map<Object, Object>> hGetAll(String key) {
+        return add(ops -> ops.opsForHash().entries(key),
+                value -> value == null ? new HashMap<>() : (Map<Object, Object>) value);
+    }
+
+    // ====== List、Set、Sorted Set类型操作 ======
+
+    /**
+     * 从左侧插入列表，结果为插入后的长度
+     */
+    public Result<Long> lPush(String key, Object value) {
+        return add(ops -> ops.opsForList().leftPush(key, value), RedisBatch::toLong);
+    }
+
+    /**
+     * 添加Set元素，结果为新增的个数
+     */
+    public Result<Long> sAdd(String key, Object... values) {
+        return add(ops -> ops.opsForSet().add(key, values), RedisBatch::toLong);
+    }
+
+    /**
+     * 判断Set中是否存在某个值
+     */
+    public Result<Boolean> sIsMember(String key, Object value) {
+        return add(ops -> ops.opsForSet().isMember(key, value), RedisBatch::toBoolean);
+    }
+
+    /**
+     * 获取Set的元素个数
+     */
+    public Result<Long> sSize(String key) {
+        return add(ops -> ops.opsForSet().size(key), RedisBatch::toLong);
+    }
+
+    /**
+     * 添加分数，结果为是否新增了元素
+     */
+    public Result<Boolean> zAdd(String key, Object value, double score) {
+        return add(ops -> ops.opsForZSet().add(key, value, score), RedisBatch::toBoolean);
+    }
+
+    // ====== Bitmap、HyperLogLog、Stream操作 ======
+
+    /**
+     * 设置位图中指定位置的值，结果为该位置原来的值
+     */
+    public Result<Boolean> setBit(String key, long offset, boolean value) {
+        return add(ops -> ops.opsForValue().setBit(key, offset, value), RedisBatch::toBoolean);
+    }
+
+    /**
+     * 获取位图中指定位置的值
+     */
+    public Result<Boolean> getBit(String key, long offset) {
+        return add(ops -> ops.opsForValue().getBit(key, offset), RedisBatch::toBoolean);
+    }
+
+    /**
+     * 统计位图中值为1的个数
+     */
+    public Result<Long> bitCount(String key) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        return add(ops -> ops.execute((RedisCallback<Long>) connection -> connection.bitCount(rawKey)),
+                RedisBatch::toLong);
+    }
+
+    /**
+     * 添加元素到HyperLogLog，结果为1表示估算值有变化
+     */
+    public Result<Long> pfAdd(String key, Object... values) {
+        return add(ops -> ops.opsForHyperLogLog().add(key, values), RedisBatch::toLong);
+    }
+
+    /**
+     * 获取HyperLogLog的基数估算值
+     */
+    public Result<Long> pfCount(String key) {
+        return add(ops -> ops.opsForHyperLogLog().size(key), RedisBatch::toLong);
+    }
+
+    /**
+     * 添加消息到Stream，结果为消息ID
+     */
+    public Result<String> xAdd(String key, Map<String, String> message) {
+        Map<String, Object> values = new HashMap<>(message);
+        return add(ops -> ops.opsForStream().add(StreamRecords.newRecord().in(key).ofMap(values)),
+                value -> value == null ? null : value.toString());
+    }
+
+    /**
+     * 已登记的操作数
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * 通过管道一次往返发送全部操作，不保证原子性
+     * @return 与操作一一对应的原始结果
+     * @throws IllegalStateException 批次已执行过，或返回的结果数与操作数不一致
+     */
+    public List<Object> execute() {
+        start();
+        if (operations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                enqueue(operations);
+                return null;
+            }
+        });
+        return complete(results);
+    }
+
+    /**
+     * 用MULTI/EXEC发送全部操作，其他客户端的命令不会穿插其中
+     * @return 与操作一一对应的原始结果
+     * @throws IllegalStateException 批次已执行过，或返回的结果数与操作数不一致
+     */
+    public List<Object> executeInTransaction() {
+        start();
+        if (operations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> results = redisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) {
+                operations.multi();
+                enqueue(operations);
+                return operations.exec();
+            }
+        });
+        return complete(results);
+    }
+
+    private <T> Result<T> add(Consumer<RedisOperations<String, Object>> command, Function<Object, T> converter) {
+        if (executed) {
+            throw new IllegalStateException("批次已执行，不能再登记操作");
+        }
+        Operation<T> operation = new Operation<>(command, converter);
+        operations.add(operation);
+        return operation.result;
+    }
+
+    private void start() {
+        if (executed) {
+            throw new IllegalStateException("批次只能执行一次");
+        }
+        executed = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> void enqueue(RedisOperations<K, V> operations) {
+        RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+        for (Operation<?> operation : this.operations) {
+            operation.command.accept(ops);
+        }
+    }
+
+    private List<Object> complete(List<Object> results) {
+        if (results == null || results.size() != operations.size()) {
+            throw new IllegalStateException("批量操作返回 " + (results == null ? 0 : results.size())
+                    + " 个结果，登记了 " + operations.size() + " 个操作");
+        }
+        for (int i = 0; i < results.size(); i++) {
+            operations.get(i).complete(results.get(i));
+        }
+        return results;
+    }
+
+    private static Boolean toBoolean(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue() != 0;
+        }
+        // SET等命令的状态回复为OK
+        return "OK".equals(value.toString());
+    }
+
+    private static Long toLong(Object value) {
+        if (value == null || value instanceof Long) {
+            return (Long) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.valueOf(value.toString());
+    }
+
+    /**
+     * 登记的一个操作
+     */
+    private static final class Operation<T> {
+        private final Consumer<RedisOperations<String, Object>> command;
+        private final Function<Object, T> converter;
+        private final Result<T> result = new Result<>();
+
+        Operation(Consumer<RedisOperations<String, Object>> command, Function<Object, T> converter) {
+            this.command = command;
+            this.converter = converter;
+        }
+
+        void complete(Object value) {
+            result.value = converter.apply(value);
+            result.done = true;
+        }
+    }
+
+    /**
+     * 一个操作的结果，批次执行后可取值
+     */
+    public static final class Result<T> {
+        private T value;
+        private boolean done;
+
+        /**
+         * @throws IllegalStateException 批次尚未执行
+         */
+        public T get() {
+            if (!done) {
+                throw new IllegalStateException("批次尚未执行");
+            }
+            return value;
+        }
+    }
+}
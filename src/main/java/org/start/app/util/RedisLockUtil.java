@@ -2,29 +2,97 @@ package org.start.app.util;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Redis分布式锁工具类
+ * 锁的值是每次加锁生成的唯一令牌，释放和续期都由Lua脚本先比较令牌再操作，不会误删其他节点的锁。
+ * 释放时在同一脚本中广播释放通知，等待方收到通知后立即重试，不再固定间隔轮询；
+ * 通知丢失或持有方宕机时，等待方最晚在锁过期时重试。
+ * 同一线程可重入，持有期间由看门狗按租期的1/3续期，执行时间超过租期也不会被其他节点抢占
  */
 @Component
-public class RedisLockUtil {
+public class RedisLockUtil implements MessageListener {
     private static final Logger logger = LoggerFactory.getLogger(RedisLockUtil.class);
-    
-    private final RedisTemplate<String, Object> redisTemplate;
-    
-    /** 默认锁的超时时间（秒） */
+
+    /** 默认锁的租期（秒），持有期间自动续期 */
     private static final long DEFAULT_LOCK_TIMEOUT = 30;
-    /** 默认获取锁的重试间隔（毫秒） */
-    private static final long DEFAULT_RETRY_INTERVAL = 100;
     /** 默认获取锁的超时时间（秒） */
     private static final long DEFAULT_ACQUIRE_TIMEOUT = 3;
+    /** 锁的剩余时间未知时，两次重试之间的最长等待（毫秒） */
+    private static final long MAX_WAIT_SLICE = 1000;
+    /** 释放通知频道，消息为锁的key */
+    private static final String RELEASE_CHANNEL = "lock:released";
+
+    /** 令牌相同才删除，并广播释放通知 */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "redis.call('del', KEYS[1]) "
+                    + "redis.call('publish', '" + RELEASE_CHANNEL + "', ARGV[2]) "
+                    + "return 1 end "
+                    + "return 0", Long.class);
+    /** 令牌相同才续期 */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('pexpire', KEYS[1], ARGV[2]) end "
+                    + "return 0", Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisUtil redisUtil;
+    /** 当前线程持有的锁，用于重入 */
+    private final ThreadLocal<Map<String, Hold>> holds = ThreadLocal.withInitial(HashMap::new);
+    /** 本节点等待中的锁 -> 下一次释放通知 */
+    private final Map<String, CountDownLatch> releases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService watchdog;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder reentered = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder renewals = new LongAdder();
+    private final LongAdder lostLeases = new LongAdder();
+    private final LongAdder waitMillis = new LongAdder();
+    private final LongAdder holdMillis = new LongAdder();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final AtomicLong maxHoldMillis = new AtomicLong();
 
-    public RedisLockUtil(RedisTemplate<String, Object> redisTemplate) {
+    public RedisLockUtil(RedisTemplate<String, Object> redisTemplate, RedisUtil redisUtil,
+                         RedisMessageListenerContainer listenerContainer) {
         this.redisTemplate = redisTemplate;
+        this.redisUtil = redisUtil;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-lock-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listenerContainer.addMessageListener(this, new ChannelTopic(RELEASE_CHANNEL));
+    }
+
+    @PreDestroy
+    public void stop() {
+        watchdog.shutdownNow();
     }
 
     /**
@@ -40,41 +108,149 @@ public class RedisLockUtil {
     /**
      * 获取分布式锁并执行（带超时时间）
      * @param lockKey 锁的key
-     * @param lockTimeout 锁的超时时间（秒）
+     * @param lockTimeout 锁的租期（秒），持有期间自动续期，节点宕机后最多经过一个租期释放
      * @param acquireTimeout 获取锁的超时时间（秒）
      * @param action 要执行的操作
      * @return 操作结果
      */
     public <T> T executeWithLock(String lockKey, long lockTimeout, long acquireTimeout, LockAction<T> action) {
         String finalLockKey = "lock:" + lockKey;
-        long startTime = System.currentTimeMillis();
-        boolean locked = false;
+        Map<String, Hold> held = holds.get();
+        Hold hold = held.get(finalLockKey);
+        if (hold != null) {
+            // 当前线程已持有，重入不再访问Redis，由最外层释放
+            reentered.increment();
+            return action.execute();
+        }
 
+        long leaseMillis = TimeUnit.SECONDS.toMillis(lockTimeout);
+        hold = acquire(finalLockKey, leaseMillis, TimeUnit.SECONDS.toMillis(acquireTimeout));
+        held.put(finalLockKey, hold);
         try {
-            // 尝试获取锁，直到超时
-            while (!locked && System.currentTimeMillis() - startTime < acquireTimeout * 1000) {
-                locked = redisTemplate.opsForValue().setIfAbsent(finalLockKey, Thread.currentThread().getId(), lockTimeout, TimeUnit.SECONDS);
-                if (!locked) {
-                    logger.debug("等待获取锁: {}", finalLockKey);
-                    Thread.sleep(DEFAULT_RETRY_INTERVAL);
-                }
-            }
+            return action.execute();
+        } finally {
+            held.remove(finalLockKey);
+            release(finalLockKey, hold);
+        }
+    }
 
-            if (!locked) {
-                throw new RuntimeException("获取锁超时: " + finalLockKey);
-            }
+    /**
+     * 锁的等待、持有和续期统计
+     */
+    public Map<String, Object> stats() {
+        long acquiredCount = acquired.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("acquired", acquiredCount);
+        stats.put("reentered", reentered.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("releaseNotifications", notifications.sum());
+        stats.put("renewals", renewals.sum());
+        stats.put("lostLeases", lostLeases.sum());
+        stats.put("averageWaitMillis", acquiredCount == 0 ? 0 : waitMillis.sum() / acquiredCount);
+        stats.put("maxWaitMillis", maxWaitMillis.get());
+        stats.put("averageHoldMillis", acquiredCount == 0 ? 0 : holdMillis.sum() / acquiredCount);
+        stats.put("maxHoldMillis", maxHoldMillis.get());
+        return stats;
+    }
 
-            logger.debug("成功获取锁: {}", finalLockKey);
-            return action.execute();
+    /**
+     * 收到释放通知，唤醒本节点等待该锁的线程
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object lockKey = redisUtil.deserialize(message.getBody());
+        if (lockKey == null) {
+            return;
+        }
+        CountDownLatch latch = releases.remove(lockKey.toString());
+        if (latch != null) {
+            notifications.increment();
+            latch.countDown();
+        }
+    }
 
+    private Hold acquire(String lockKey, long leaseMillis, long acquireTimeoutMillis) {
+        String token = UUID.randomUUID().toString();
+        long start = System.currentTimeMillis();
+        long deadline = start + acquireTimeoutMillis;
+        try {
+            while (true) {
+                // 先取通知再尝试加锁，加锁失败到开始等待之间的释放也能收到
+                CountDownLatch latch = releases.computeIfAbsent(lockKey, key -> new CountDownLatch(1));
+                if (Boolean.TRUE.equals(redisTemplate.opsForValue()
+                        .setIfAbsent(lockKey, token, leaseMillis, TimeUnit.MILLISECONDS))) {
+                    break;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    timeouts.increment();
+                    throw new RuntimeException("获取锁超时: " + lockKey);
+                }
+                // 持有方宕机时没有释放通知，最晚在锁过期时重试
+                Long ttl = redisTemplate.getExpire(lockKey, TimeUnit.MILLISECONDS);
+                long slice = ttl == null || ttl < 0 ? MAX_WAIT_SLICE : Math.max(1, ttl);
+                logger.debug("等待释放锁: {}", lockKey);
+                latch.await(Math.min(remaining, slice), TimeUnit.MILLISECONDS);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new RuntimeException("获取锁被中断: " + finalLockKey, e);
-        } finally {
-            if (locked) {
-                redisTemplate.delete(finalLockKey);
-                logger.debug("释放锁: {}", finalLockKey);
+            throw new RuntimeException("获取锁被中断: " + lockKey, e);
+        }
+
+        long waited = System.currentTimeMillis() - start;
+        acquired.increment();
+        waitMillis.add(waited);
+        maxWaitMillis.accumulateAndGet(waited, Math::max);
+        Hold hold = new Hold(token);
+        long period = Math.max(1, leaseMillis / 3);
+        hold.renewal = watchdog.scheduleAtFixedRate(() -> renew(lockKey, hold, leaseMillis),
+                period, period, TimeUnit.MILLISECONDS);
+        logger.debug("成功获取锁: {}，等待 {}ms", lockKey, waited);
+        return hold;
+    }
+
+    private void renew(String lockKey, Hold hold, long leaseMillis) {
+        try {
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(lockKey),
+                    hold.token, leaseMillis);
+            if (renewed != null && renewed == 1) {
+                renewals.increment();
+                return;
             }
+            lostLeases.increment();
+            hold.renewal.cancel(false);
+            logger.warn("锁已过期或被其他节点持有，停止续期: {}", lockKey);
+        } catch (Exception e) {
+            // 续期失败时下个周期再试，租期内恢复即可
+            logger.warn("锁续期失败: {}", lockKey, e);
+        }
+    }
+
+    private void release(String lockKey, Hold hold) {
+        hold.renewal.cancel(false);
+        long held = System.currentTimeMillis() - hold.acquiredAt;
+        holdMillis.add(held);
+        maxHoldMillis.accumulateAndGet(held, Math::max);
+        Long released = redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(lockKey),
+                hold.token, lockKey);
+        if (released == null || released == 0) {
+            lostLeases.increment();
+            logger.warn("释放锁时锁已过期或被其他节点持有: {}，持有 {}ms", lockKey, held);
+        } else {
+            logger.debug("释放锁: {}，持有 {}ms", lockKey, held);
+        }
+    }
+
+    /**
+     * 当前线程持有的一把锁
+     */
+    private static final class Hold {
+        private final String token;
+        private final long acquiredAt = System.currentTimeMillis();
+        private volatile ScheduledFuture<?> renewal;
+
+        Hold(String token) {
+            this.token = token;
         }
     }
 
@@ -85,4 +261,4 @@ public class RedisLockUtil {
     public interface LockAction<T> {
         T execute();
     }
-} 
\ No newline at end of file
+}
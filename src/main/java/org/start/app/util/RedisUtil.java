@@ -1,16 +1,25 @@
 package org.start.app.util;
 
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.connection.stream.Consumer;
 import org.springframework.data.redis.connection.stream.ReadOffset;
 import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
 import org.springframework.data.redis.connection.stream.Record;
 import org.springframework.data.redis.connection.stream.StreamRecords;
 import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StreamOperations;
 import org.springframework.data.domain.Range;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -38,6 +47,92 @@ public class RedisUtil {
         redisTemplate.opsForValue().set(key, value, time, timeUnit);
     }
 
+    /**
+     * 批量获取值（MGET），一次往返完成
+     *
+     * @param keys 键
+     * @return 与键一一对应的值，不存在的为null
+     */
+    public List<Object> multiGet(List<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        return values == null ? new ArrayList<>(Collections.nCopies(keys.size(), null)) : values;
+    }
+
+    /**
+     * 批量设置带过期时间的缓存，通过管道一次往返完成
+     *
+     * @param values 键 -> 值
+     */
+    public void setExAll(Map<String, ?> values, long time, TimeUnit timeUnit) {
+        if (values.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Map.Entry<String, ?> entry : values.entrySet()) {
+                    ops.opsForValue().set(entry.getKey(), entry.getValue(), time, timeUnit);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 批量设置值（MSET），一次往返完成
+     *
+     * @param values 键 -> 值
+     */
+    public void multiSet(Map<String, ?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        redisTemplate.opsForValue().multiSet(values);
+    }
+
+    /**
+     * 新建批量操作
+     * 登记多个操作后调用execute通过管道一次往返发送，或调用executeInTransaction用MULTI/EXEC原子执行
+     *
+     * @return 空的批次
+     */
+    public RedisBatch batch() {
+        return new RedisBatch(redisTemplate);
+    }
+
+    /**
+     * 判断Key是否存在
+     */
+    public Boolean hasKey(String key) {
+        return redisTemplate.hasKey(key);
+    }
+
+    /**
+     * 删除缓存
+     */
+    public Boolean delete(String key) {
+        return redisTemplate.delete(key);
+    }
+
+    /**
+     * 批量删除缓存
+     */
+    public Long delete(Collection<String> keys) {
+        return redisTemplate.delete(keys);
+    }
+
+    /**
+     * 设置过期时间
+     */
+    public Boolean expire(String key, long time, TimeUnit timeUnit) {
+        return redisTemplate.expire(key, time, timeUnit);
+    }
+
     /**
      * 计数器
      */
@@ -54,6 +149,20 @@ public class RedisUtil {
         redisTemplate.opsForHash().put(key, field, value);
     }
 
+    /**
+     * 批量设置Hash字段
+     */
+    public void hSetAll(String key, Map<String, ?> values) {
+        redisTemplate.opsForHash().putAll(key, values);
+    }
+
+    /**
+     * 获取Hash字段
+     */
+    public Object hGet(String key, String field) {
+        return redisTemplate.opsForHash().get(key, field);
+    }
+
     /**
      * 获取Hash所有字段
      */
@@ -162,6 +271,50 @@ public class RedisUtil {
         return redisTemplate.opsForValue().getBit(key, offset);
     }
 
+    /**
+     * 批量设置位图中多个位置为1，通过管道一次往返完成
+     *
+     * @param key     键
+     * @param offsets 偏移量
+     */
+    public void setBits(String key, long... offsets) {
+        if (offsets.length == 0) {
+            return;
+        }
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long offset : offsets) {
+                connection.setBit(rawKey, offset, true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 批量获取位图中多个位置的值，通过管道一次往返完成
+     *
+     * @param key     键
+     * @param offsets 偏移量
+     * @return 与偏移量一一对应的值
+     */
+    public List<Boolean> getBits(String key, long... offsets) {
+        if (offsets.length == 0) {
+            return new ArrayList<>();
+        }
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long offset : offsets) {
+                connection.getBit(rawKey, offset);
+            }
+            return null;
+        });
+        List<Boolean> bits = new ArrayList<>(results.size());
+        for (Object result : results) {
+            bits.add(Boolean.TRUE.equals(result));
+        }
+        return bits;
+    }
+
     /**
      * 统计位图中值为1的个数
      *
@@ -256,8 +409,11 @@ public class RedisUtil {
      * @return 是否创建成功
      */
     public String xGroupCreate(String key, String groupName) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
         try {
-            redisTemplate.opsForStream().createGroup(key, ReadOffset.from("0-0"), groupName);
+            // Stream不存在时一并创建（MKSTREAM），消费者可先于第一条消息启动
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                .xGroupCreate(rawKey, groupName, ReadOffset.from("0-0"), true));
             return groupName;
         } catch (Exception e) {
             return null;
@@ -275,12 +431,7 @@ public class RedisUtil {
      */
     public List<Map<String, String>> xReadGroup(String key, String groupName, 
                                               String consumerName, int count) {
-        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
-            .read(Consumer.from(groupName, consumerName),
-                StreamOffset.create(key, ReadOffset.lastConsumed()));
-        
-        return records.stream()
-            .limit(count)
+        return xReadGroup(key, groupName, consumerName, ReadOffset.lastConsumed(), count, null).stream()
             .map(record -> {
                 Map<Object, Object> value = record.getValue();
                 Map<String, String> result = new HashMap<>();
@@ -290,6 +441,28 @@ public class RedisUtil {
             .collect(Collectors.toList());
     }
 
+    /**
+     * 读取消费者组中的消息，保留消息ID用于确认
+     *
+     * @param key 键
+     * @param groupName 消费者组名称
+     * @param consumerName 消费者名称
+     * @param offset 读取位置：lastConsumed读取新消息，from("0")读取本消费者已读取未确认的消息
+     * @param count 最多获取的消息数量，由Redis按COUNT限制
+     * @param block 没有新消息时最多阻塞的时间，为null时不阻塞；阻塞读取使用独立连接
+     * @return 消息列表
+     */
+    public List<MapRecord<String, Object, Object>> xReadGroup(String key, String groupName, String consumerName,
+                                                              ReadOffset offset, int count, Duration block) {
+        StreamReadOptions options = StreamReadOptions.empty().count(count);
+        if (block != null) {
+            options = options.block(block);
+        }
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+            .read(Consumer.from(groupName, consumerName), options, StreamOffset.create(key, offset));
+        return records == null ? Collections.emptyList() : records;
+    }
+
     /**
      * 确认消息已处理
      *
@@ -301,4 +474,47 @@ public class RedisUtil {
     public Long xAck(String key, String groupName, String... recordIds) {
         return redisTemplate.opsForStream().acknowledge(key, groupName, recordIds);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 删除Stream中的消息
+     *
+     * @param key 键
+     * @param recordIds 消息ID列表
+     * @return 删除的消息数量
+     */
+    public Long xDel(String key, String... recordIds) {
+        return redisTemplate.opsForStream().delete(key, recordIds);
+    }
+
+    /**
+     * 获取Stream的消息数量
+     *
+     * @param key 键
+     * @return 消息数量
+     */
+    public Long xLen(String key) {
+        return redisTemplate.opsForStream().size(key);
+    }
+
+    // ====== 发布订阅 ======
+
+    /**
+     * 向频道发布消息，消息按值序列化方式（JSON）编码
+     *
+     * @param channel 频道
+     * @param message 消息
+     */
+    public void publish(String channel, Object message) {
+        redisTemplate.convertAndSend(channel, message);
+    }
+
+    /**
+     * 按值序列化方式解码订阅收到的消息
+     *
+     * @param body 消息体
+     * @return 消息对象
+     */
+    public Object deserialize(byte[] body) {
+        return redisTemplate.getValueSerializer().deserialize(body);
+    }
+}
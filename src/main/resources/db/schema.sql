@@ -12,6 +12,103 @@ CREATE TABLE IF NOT EXISTS `trade_record` (
   `merchant_order_no` varchar(100) COMMENT '商户单号',
   `remarks` varchar(500) COMMENT '备注',
   `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`, `trade_time`),
+  UNIQUE KEY `uk_trade_no` (`trade_no`, `trade_time`),
+  KEY `idx_trade_time` (`trade_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='交易记录表'
+-- 按交易时间月分区，分区名为pYYYYMM；按月的分区由分区维护任务提前从p_max拆分，过期月份整分区删除
+-- 分区表的唯一键必须包含分区列，uk_trade_no只在同一交易时间内唯一；交易单号的全局唯一由下面的登记表保证
+PARTITION BY RANGE COLUMNS(`trade_time`) (
+  PARTITION `p_max` VALUES LESS THAN (MAXVALUE)
+);
+
+-- 交易单号登记表，不分区，主键保证交易单号全局唯一
+-- 由trade_record的触发器在同一语句内维护：插入重复单号时整条语句以唯一键冲突失败，修改单号时同步修改，删除时同步删除；
+-- 删除分区不触发触发器，由分区维护任务按过期记录的单号删除
+CREATE TABLE IF NOT EXISTS `trade_no_registry` (
+  `trade_no` varchar(100) NOT NULL COMMENT '交易单号',
+  PRIMARY KEY (`trade_no`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='交易单号登记表';
+
+DROP TRIGGER IF EXISTS `trg_trade_record_insert`;
+CREATE TRIGGER `trg_trade_record_insert` AFTER INSERT ON `trade_record` FOR EACH ROW
+  INSERT INTO `trade_no_registry` (`trade_no`) VALUES (NEW.`trade_no`);
+
+DROP TRIGGER IF EXISTS `trg_trade_record_update`;
+CREATE TRIGGER `trg_trade_record_update` AFTER UPDATE ON `trade_record` FOR EACH ROW
+  UPDATE `trade_no_registry` SET `trade_no` = NEW.`trade_no`
+  WHERE `trade_no` = OLD.`trade_no` AND NEW.`trade_no` <> OLD.`trade_no`;
+
+DROP TRIGGER IF EXISTS `trg_trade_record_delete`;
+CREATE TRIGGER `trg_trade_record_delete` AFTER DELETE ON `trade_record` FOR EACH ROW
+  DELETE FROM `trade_no_registry` WHERE `trade_no` = OLD.`trade_no`;
+
+-- 过期分区的中转表，结构和索引须与trade_record一致但不分区，不建触发器
+-- 分区维护任务把过期分区交换到这里后删除空分区，再分批读出ID和单号失效缓存、删除登记，最后清空
+CREATE TABLE IF NOT EXISTS `trade_record_expired` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `trade_time` datetime NOT NULL COMMENT '交易时间',
+  `trade_type` varchar(50) NOT NULL COMMENT '交易类型',
+  `counterparty` varchar(100) NOT NULL COMMENT '交易对方',
+  `product` varchar(200) NOT NULL COMMENT '商品',
+  `direction` varchar(10) NOT NULL COMMENT '收/支',
+  `amount` decimal(10,2) NOT NULL COMMENT '金额(元)',
+  `payment_method` varchar(50) NOT NULL COMMENT '支付方式',
+  `status` varchar(50) NOT NULL COMMENT '当前状态',
+  `trade_no` varchar(100) NOT NULL COMMENT '交易单号',
+  `merchant_order_no` varchar(100) COMMENT '商户单号',
+  `remarks` varchar(500) COMMENT '备注',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`, `trade_time`),
+  UNIQUE KEY `uk_trade_no` (`trade_no`, `trade_time`),
+  KEY `idx_trade_time` (`trade_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='过期交易记录中转表';
+
+-- 已有表补充交易时间索引（二级索引隐含主键，按 trade_time DESC, id DESC 分页可直接走索引）
+-- ALTER TABLE `trade_record` ADD KEY `idx_trade_time` (`trade_time`);
+
+-- 已有表改为按月分区（会重建整张表，需在低峰期执行），之后由分区维护任务按最早交易月份拆分
+-- ALTER TABLE `trade_record` DROP PRIMARY KEY, ADD PRIMARY KEY (`id`, `trade_time`),
+--   DROP KEY `uk_trade_no`, ADD UNIQUE KEY `uk_trade_no` (`trade_no`, `trade_time`);
+-- ALTER TABLE `trade_record` PARTITION BY RANGE COLUMNS(`trade_time`) (PARTITION `p_max` VALUES LESS THAN (MAXVALUE));
+-- 已有表在建触发器之前登记现有单号；存在重复单号时此语句失败，需先清理重复记录
+-- INSERT INTO `trade_no_registry` (`trade_no`) SELECT `trade_no` FROM `trade_record`;
+
+-- 交易日汇总表，由写入操作增量维护，可按月重建
+CREATE TABLE IF NOT EXISTS `trade_rollup_daily` (
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `trade_type` varchar(50) NOT NULL COMMENT '交易类型',
+  `direction` varchar(10) NOT NULL COMMENT '收/支',
+  `payment_method` varchar(50) NOT NULL COMMENT '支付方式',
+  `status` varchar(50) NOT NULL COMMENT '当前状态',
+  `trade_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '笔数',
+  `amount_sum` decimal(18,2) NOT NULL DEFAULT 0 COMMENT '金额合计',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`stat_date`, `trade_type`, `direction`, `payment_method`, `status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='交易日汇总表';
+
+-- 交易月汇总表，stat_month为当月第一天
+CREATE TABLE IF NOT EXISTS `trade_rollup_monthly` (
+  `stat_month` date NOT NULL COMMENT '统计月份（当月第一天）',
+  `trade_type` varchar(50) NOT NULL COMMENT '交易类型',
+  `direction` varchar(10) NOT NULL COMMENT '收/支',
+  `payment_method` varchar(50) NOT NULL COMMENT '支付方式',
+  `status` varchar(50) NOT NULL COMMENT '当前状态',
+  `trade_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '笔数',
+  `amount_sum` decimal(18,2) NOT NULL DEFAULT 0 COMMENT '金额合计',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`stat_month`, `trade_type`, `direction`, `payment_method`, `status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='交易月汇总表';
+
+-- 秒杀订单表，由订单队列的消费者从Redis Stream批量写入；重复投递的消息按Stream消息ID忽略
+CREATE TABLE IF NOT EXISTS `seckill_order` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `message_id` varchar(32) NOT NULL COMMENT 'Stream消息ID',
+  `product_id` varchar(64) NOT NULL COMMENT '商品ID',
+  `user_id` varchar(64) NOT NULL COMMENT '用户ID',
+  `order_time` datetime(3) NOT NULL COMMENT '抢购成功时间',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   PRIMARY KEY (`id`),
-  UNIQUE KEY `uk_trade_no` (`trade_no`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='交易记录表'; 
\ No newline at end of file
+  UNIQUE KEY `uk_message_id` (`message_id`),
+  KEY `idx_product_user` (`product_id`, `user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='秒杀订单表';
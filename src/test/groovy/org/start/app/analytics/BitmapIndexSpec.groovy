@@ -0,0 +1,58 @@
+package org.start.app.analytics
+
+import org.start.app.entity.TradeRecord
+import spock.lang.Specification
+
+class BitmapIndexSpec extends Specification {
+
+    def index = new BitmapIndex()
+
+    def setup() {
+        index.put([
+                record(1, "商户消费", "支出", "支付成功", "零钱"),
+                record(2, "商户消费", "支出", "支付成功", "银行卡"),
+                record(3, "转账", "收入", "已存入零钱", "零钱"),
+                record(4, "商户消费", "支出", "已全额退款", "零钱")
+        ])
+    }
+
+    def "多个等值条件的总数为位图求交"() {
+        expect:
+        index.count([(Dimension.TRADE_TYPE): "商户消费"]) == 3
+        index.count([(Dimension.TRADE_TYPE): "商户消费", (Dimension.PAYMENT_METHOD): "零钱"]) == 2
+        index.count([(Dimension.TRADE_TYPE): "商户消费", (Dimension.STATUS): "支付成功",
+                     (Dimension.PAYMENT_METHOD): "零钱"]) == 1
+        index.count([(Dimension.STATUS): "不存在"]) == 0
+        index.select([(Dimension.DIRECTION): "支出", (Dimension.PAYMENT_METHOD): "零钱"]).toArray() == [1, 4] as int[]
+    }
+
+    def "更新后从旧取值的位图中移除"() {
+        when:
+        index.put([record(1, "转账", "收入", "已存入零钱", "零钱")])
+
+        then:
+        index.count([(Dimension.TRADE_TYPE): "商户消费"]) == 2
+        index.count([(Dimension.TRADE_TYPE): "转账"]) == 2
+        index.count([:]) == 4
+    }
+
+    def "删除后不再计数"() {
+        when:
+        index.remove([2L, 3L, 99L])
+
+        then:
+        index.count([:]) == 2
+        index.count([(Dimension.DIRECTION): "收入"]) == 0
+        index.select([(Dimension.TRADE_TYPE): "商户消费"]).toArray() == [1, 4] as int[]
+    }
+
+    private static TradeRecord record(long id, String type, String direction, String status, String paymentMethod) {
+        def record = new TradeRecord()
+        record.id = id
+        record.tradeType = type
+        record.direction = direction
+        record.status = status
+        record.paymentMethod = paymentMethod
+        return record
+    }
+}
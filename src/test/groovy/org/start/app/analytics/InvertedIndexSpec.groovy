@@ -0,0 +1,80 @@
+package org.start.app.analytics
+
+import org.start.app.entity.TradeRecord
+import spock.lang.Specification
+
+import java.text.SimpleDateFormat
+
+class InvertedIndexSpec extends Specification {
+
+    def index = new InvertedIndex(16)
+
+    def setup() {
+        index.put([
+                record(1, "2024-01-01 10:00", "星巴克咖啡", "拿铁", null),
+                record(2, "2024-03-01 10:00", "瑞幸咖啡", "Coffee Latte", "会员折扣"),
+                record(3, "2024-02-01 10:00", "Starbucks Shanghai", "美式", "星巴克门店"),
+                record(4, "2024-02-01 10:00", "美团", "外卖", "订单12345")
+        ])
+    }
+
+    def "中文按单字和相邻二字切分，全角字母转为半角小写"() {
+        expect:
+        SearchTokenizer.index("星巴克Ｃｏｆｆｅｅ") as List == ["星", "星巴", "巴", "巴克", "克", "coffee"]
+        SearchTokenizer.query("星巴克 star")*.text == ["星巴", "巴克", "star"]
+        SearchTokenizer.query("咖")*.prefix == [false]
+        SearchTokenizer.query(" ，") == []
+    }
+
+    def "中文片段命中，结果按交易时间倒序"() {
+        expect:
+        ids("咖啡", InvertedIndex.Field.values()) == [2, 1]
+        ids("星巴克", InvertedIndex.Field.values()) == [3, 1]
+        ids("星巴克", [InvertedIndex.Field.COUNTERPARTY]) == [1]
+        ids("巴克咖", InvertedIndex.Field.values()) == [1]
+    }
+
+    def "字母数字按前缀匹配，多个关键词需全部命中"() {
+        expect:
+        ids("star", InvertedIndex.Field.values()) == [3]
+        ids("STARBUCKS shang", InvertedIndex.Field.values()) == [3]
+        ids("starbucks beijing", InvertedIndex.Field.values()) == []
+        ids("1234", InvertedIndex.Field.values()) == [4]
+        ids("cof", [InvertedIndex.Field.PRODUCT]) == [2]
+    }
+
+    def "按limit取交易时间最新的记录，总数为全部候选"() {
+        when:
+        def hits = index.search(SearchTokenizer.query("咖啡"), InvertedIndex.Field.values() as List, 1)
+
+        then:
+        hits.total == 2
+        hits.ids == [2L] as long[]
+    }
+
+    def "删除后不再命中，修改后旧词项仍是候选需按原文校验"() {
+        when:
+        index.remove([2L])
+        index.put([record(1, "2024-01-01 10:00", "麦当劳", "汉堡", null)])
+
+        then:
+        ids("咖啡", InvertedIndex.Field.values()) == [1]
+        ids("麦当劳", InvertedIndex.Field.values()) == [1]
+        !SearchTokenizer.matches(SearchTokenizer.index("麦当劳"), SearchTokenizer.query("咖啡"))
+        SearchTokenizer.matches(SearchTokenizer.index("Starbucks 星巴克"), SearchTokenizer.query("星巴 star"))
+    }
+
+    private List<Long> ids(String keyword, def fields) {
+        index.search(SearchTokenizer.query(keyword), fields as List, 10).ids as List
+    }
+
+    private static TradeRecord record(long id, String time, String counterparty, String product, String remarks) {
+        def record = new TradeRecord()
+        record.id = id
+        record.tradeTime = new SimpleDateFormat("yyyy-MM-dd HH:mm").parse(time)
+        record.counterparty = counterparty
+        record.product = product
+        record.remarks = remarks
+        record
+    }
+}
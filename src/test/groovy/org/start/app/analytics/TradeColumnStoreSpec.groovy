@@ -0,0 +1,106 @@
+package org.start.app.analytics
+
+import org.start.app.entity.TradeRecord
+import org.start.app.model.InvalidRequestException
+import org.start.app.model.TradeRecordQuery
+import spock.lang.Specification
+
+import java.text.SimpleDateFormat
+
+class TradeColumnStoreSpec extends Specification {
+
+    def store = new TradeColumnStore(16)
+
+    def setup() {
+        store.upsert(record(1, "2024-01-01 10:00:00", "商户消费", "支出", "12.50", "支付成功"))
+        store.upsert(record(2, "2024-01-02 11:00:00", "商户消费", "支出", "7.50", "支付成功"))
+        store.upsert(record(3, "2024-01-03 12:00:00", "转账", "收入", "100.00", "已存入零钱"))
+        store.upsert(record(4, "2024-02-01 09:00:00", "商户消费", "支出", "30.00", "已全额退款"))
+    }
+
+    def "按维度分组统计笔数和金额"() {
+        when:
+        def result = store.aggregate(new TradeRecordQuery(), [Dimension.TRADE_TYPE], 4)
+
+        then:
+        result.count == 4
+        result.amount == new BigDecimal("150.00")
+        result.groups*.values*.getAt(0) == ["商户消费", "转账"]
+        result.groups*.count == [3L, 1L]
+        result.groups[0].amount == new BigDecimal("50.00")
+    }
+
+    def "时间、金额和维度条件与分页查询一致"() {
+        given:
+        def query = new TradeRecordQuery()
+        query.direction = "支出"
+        query.startTime = date("2024-01-02 00:00:00")
+        query.minAmount = new BigDecimal("7.5")
+
+        when:
+        def result = store.aggregate(query, [], 2)
+
+        then:
+        result.count == 2
+        result.amount == new BigDecimal("37.50")
+    }
+
+    def "维度值不在字典中时结果为空"() {
+        given:
+        def query = new TradeRecordQuery()
+        query.status = "不存在的状态"
+
+        expect:
+        store.aggregate(query, [Dimension.STATUS], 1).count == 0
+    }
+
+    def "覆盖和删除后重新统计"() {
+        when:
+        store.upsert(record(1, "2024-01-01 10:00:00", "转账", "收入", "20.00", "已存入零钱"))
+        store.delete(4)
+        def result = store.aggregate(new TradeRecordQuery(), [Dimension.TRADE_TYPE], 1)
+
+        then:
+        store.liveRows == 3
+        result.count == 3
+        result.groups.find { it.values[0] == "转账" }.amount == new BigDecimal("120.00")
+    }
+
+    def "扩容后保留已有数据"() {
+        when:
+        (5..3000).each { store.upsert(record(it, "2024-03-01 00:00:00", "商户消费", "支出", "1.00", "支付成功")) }
+
+        then:
+        store.maxId == 3000
+        store.aggregate(new TradeRecordQuery(), [], 4).count == 3000
+    }
+
+    def "不支持按交易单号过滤"() {
+        given:
+        def query = new TradeRecordQuery()
+        query.tradeNo = "T1"
+
+        when:
+        store.aggregate(query, [], 1)
+
+        then:
+        thrown(InvalidRequestException)
+    }
+
+    private static TradeRecord record(long id, String time, String type, String direction, String amount, String status) {
+        def record = new TradeRecord()
+        record.id = id
+        record.tradeTime = date(time)
+        record.tradeType = type
+        record.direction = direction
+        record.amount = new BigDecimal(amount)
+        record.status = status
+        record.paymentMethod = "零钱"
+        record.counterparty = "商户" + (id % 3)
+        return record
+    }
+
+    private static Date date(String text) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(text)
+    }
+}
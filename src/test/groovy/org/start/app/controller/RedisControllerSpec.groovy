@@ -8,11 +8,17 @@ import org.springframework.http.MediaType
 import org.springframework.test.web.servlet.MockMvc
 import org.springframework.test.web.servlet.MvcResult
 import org.start.app.config.TestConfig
+import org.start.app.service.RedisBenchmarkService
+import org.start.app.service.SeckillOrderQueue
+import org.start.app.service.SeckillService
 import org.start.app.util.RedisUtil
 import org.start.app.util.RedisLockUtil
 import spock.lang.Specification
 import org.springframework.boot.test.mock.mockito.MockBean
+import org.start.app.mapper.SeckillOrderMapper
+import org.start.app.mapper.TradePartitionMapper
 import org.start.app.mapper.TradeRecordMapper
+import org.start.app.mapper.TradeRollupMapper
 import org.apache.catalina.connector.ClientAbortException
 
 import java.util.concurrent.TimeUnit
@@ -35,9 +41,27 @@ class RedisControllerSpec extends Specification {
     @SpringBean
     RedisLockUtil redisLockUtil = Mock()
 
+    @SpringBean
+    RedisBenchmarkService redisBenchmarkService = Mock()
+
+    @SpringBean
+    SeckillService seckillService = Mock()
+
+    @SpringBean
+    SeckillOrderQueue seckillOrderQueue = Mock()
+
     @MockBean
     TradeRecordMapper tradeRecordMapper
 
+    @MockBean
+    TradeRollupMapper tradeRollupMapper
+
+    @MockBean
+    TradePartitionMapper tradePartitionMapper
+
+    @MockBean
+    SeckillOrderMapper seckillOrderMapper
+
     def setup() {
         // 设置默认的Mock行为
         redisUtil.increment(_, _) >> 1L
@@ -280,10 +304,6 @@ class RedisControllerSpec extends Specification {
         given: "准备测试数据"
         def productId = "prod123"
         def userId = "user123"
-        def expectedResult = "抢购成功"
-
-        and: "设置Mock行为"
-        redisLockUtil.executeWithLock(_, _) >> expectedResult
 
         when: "调用秒杀接口"
         def result = performRequest(post("/redis/lock/seckill")
@@ -291,12 +311,18 @@ class RedisControllerSpec extends Specification {
                 .param("productId", productId)
                 .param("userId", userId))
 
-        then: "验证结果"
-        1 * redisLockUtil.executeWithLock(_, _) >> expectedResult
+        then: "一次原子脚本完成抢购，不加分布式锁"
+        1 * seckillService.purchase(productId, userId) >> outcome
+        0 * redisLockUtil.executeWithLock(*_)
         if (result != null) {
             result.response.status == 200
-            result.response.contentAsString == expectedResult
+            result.response.contentAsString == outcome.message
         }
+
+        where:
+        outcome << [SeckillService.SeckillResult.SUCCESS,
+                    SeckillService.SeckillResult.SOLD_OUT,
+                    SeckillService.SeckillResult.ALREADY_BOUGHT]
     }
 
     def "测试初始化商品库存"() {
@@ -311,7 +337,7 @@ class RedisControllerSpec extends Specification {
                 .param("stock", stock.toString()))
 
         then: "验证结果"
-        1 * redisUtil.set("product:stock:" + productId, stock)
+        1 * seckillService.initStock(productId, stock, 1)
         if (result != null) {
             result.response.status == 200
             result.response.contentAsString == "库存初始化成功"
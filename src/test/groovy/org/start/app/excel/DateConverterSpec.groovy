@@ -0,0 +1,53 @@
+package org.start.app.excel
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.text.ParseException
+import java.text.SimpleDateFormat
+
+class DateConverterSpec extends Specification {
+
+    def format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
+
+    @Unroll
+    def "快速路径解析结果与SimpleDateFormat一致: #text"() {
+        expect:
+        DateConverter.parse(text) == format.parse(text)
+        DateConverter.format(format.parse(text)) == text
+
+        where:
+        text << ["2024-02-29 23:59:59", "2000-01-01 00:00:00", "1999-12-31 12:30:45", "2023-07-15 08:05:09"]
+    }
+
+    @Unroll
+    def "非标准写法走兜底解析: #text"() {
+        expect:
+        DateConverter.parse(text) == format.parse(expected)
+
+        where:
+        text                    | expected
+        "2023/7/5 8:05:09"      | "2023-07-05 08:05:09"
+        "2023-7-5"              | "2023-07-05 00:00:00"
+        " 2023-07-05 08:05:09 " | "2023-07-05 08:05:09"
+        "2023-07-05 08:05"      | "2023-07-05 08:05:00"
+    }
+
+    def "空白字符串返回null"() {
+        expect:
+        DateConverter.parse(null) == null
+        DateConverter.parse("  ") == null
+    }
+
+    @Unroll
+    def "非法日期抛出ParseException: #text"() {
+        when:
+        DateConverter.parse(text)
+
+        then:
+        thrown(ParseException)
+
+        where:
+        text << ["2023-02-30 00:00:00", "2023-13-01 00:00:00", "abc"]
+    }
+}
@@ -0,0 +1,73 @@
+package org.start.app.filter
+
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.web.context.request.RequestContextHolder
+import org.springframework.web.context.request.ServletRequestAttributes
+import org.start.app.util.ReadWriteContext
+import spock.lang.Specification
+
+import javax.servlet.http.Cookie
+import javax.servlet.FilterChain
+import javax.servlet.ServletRequest
+import javax.servlet.ServletResponse
+
+class ReadYourWritesFilterSpec extends Specification {
+
+    def filter = new ReadYourWritesFilter(true, 3000, "secret")
+
+    def cleanup() {
+        RequestContextHolder.resetRequestAttributes()
+        ReadWriteContext.clear()
+    }
+
+    def "签发的Cookie带回时读主库"() {
+        given:
+        def cookie = issueCookie(filter)
+
+        expect:
+        !replicaPreferredWith(filter, cookie.value)
+    }
+
+    def "篡改或伪造的Cookie被忽略"() {
+        given:
+        def cookie = issueCookie(filter)
+        def dot = cookie.value.indexOf('.')
+        def until = Long.parseLong(cookie.value.substring(0, dot))
+        def signature = cookie.value.substring(dot + 1)
+
+        expect: "未签名、改了期限、签名无效都按没有Cookie处理"
+        replicaPreferredWith(filter, String.valueOf(until))
+        replicaPreferredWith(filter, (until + 60000) + "." + signature)
+        replicaPreferredWith(filter, until + ".00")
+        replicaPreferredWith(filter, "abc")
+    }
+
+    def "其他密钥签发的Cookie被忽略"() {
+        given:
+        def cookie = issueCookie(new ReadYourWritesFilter(true, 3000, "other"))
+
+        expect:
+        replicaPreferredWith(filter, cookie.value)
+    }
+
+    private static Cookie issueCookie(ReadYourWritesFilter issuer) {
+        def response = new MockHttpServletResponse()
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), response))
+        issuer.markWritten()
+        RequestContextHolder.resetRequestAttributes()
+        ReadWriteContext.clear()
+        return response.getCookie("read_primary_until")
+    }
+
+    private static boolean replicaPreferredWith(ReadYourWritesFilter filter, String cookieValue) {
+        def request = new MockHttpServletRequest()
+        request.setCookies(new Cookie("read_primary_until", cookieValue))
+        boolean preferred = true
+        FilterChain chain = { ServletRequest req, ServletResponse res ->
+            preferred = ReadWriteContext.onReplica({ ReadWriteContext.isReplicaPreferred() })
+        } as FilterChain
+        filter.doFilter(request, new MockHttpServletResponse(), chain)
+        return preferred
+    }
+}
@@ -0,0 +1,48 @@
+package org.start.app.service
+
+import org.start.app.config.DedupConfig
+import org.start.app.config.ImportConfig
+import org.start.app.util.RedisUtil
+import spock.lang.Specification
+
+class ImportJobServiceSpec extends Specification {
+
+    def redisUtil = Mock(RedisUtil)
+    def service = new ImportJobService(Mock(TradeRecordService), redisUtil, new ImportConfig(), new DedupConfig())
+
+    def "总行数未知时进度仍按间隔写入"() {
+        given:
+        def monitor = new ImportJobService.JobMonitor(service, "job1")
+
+        when: "表格没有尺寸记录，预估总行数为null"
+        monitor.onProgress(100, 0, 100, 0, null)
+        monitor.onProgress(200, 0, 200, 0, null)
+        monitor.onProgress(300, 0, 300, 0, null)
+
+        then: "间隔内只写一次，未知总行数不写入"
+        1 * redisUtil.hSetAll(_, { it.rowsParsed == "100" && !it.containsKey("rowsTotal") })
+        1 * redisUtil.hGet(_, "cancelRequested")
+    }
+
+    def "最终进度不节流，读完文件时写入总行数"() {
+        given:
+        def monitor = new ImportJobService.JobMonitor(service, "job1")
+        monitor.onProgress(100, 0, 100, 0, 501)
+
+        when:
+        monitor.onFinish(450, 0, 440, 10, completed)
+
+        then:
+        1 * redisUtil.hSetAll(_, { it.rowsInserted == "440" && it.rowsTotal == rowsTotal })
+        0 * redisUtil.hGet(*_)
+
+        where:
+        completed | rowsTotal
+        true      | "450"
+        false     | null
+    }
+
+    def cleanup() {
+        service.shutdown()
+    }
+}
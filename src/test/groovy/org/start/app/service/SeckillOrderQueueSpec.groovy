@@ -0,0 +1,82 @@
+package org.start.app.service
+
+import org.springframework.data.redis.connection.stream.MapRecord
+import org.springframework.data.redis.connection.stream.RecordId
+import org.springframework.data.redis.connection.stream.StreamRecords
+import org.springframework.data.redis.core.RedisTemplate
+import org.start.app.config.SeckillOrderConfig
+import org.start.app.mapper.SeckillOrderMapper
+import org.start.app.util.RedisUtil
+import spock.lang.Specification
+
+class SeckillOrderQueueSpec extends Specification {
+
+    def redisUtil = Mock(RedisUtil)
+    def mapper = Mock(SeckillOrderMapper)
+    def config = new SeckillOrderConfig(enabled: false, streamKey: "orders", group: "writer")
+    def queue = new SeckillOrderQueue(redisUtil, Mock(RedisTemplate), mapper, config)
+
+    def "写库成功后才确认并删除"() {
+        when:
+        queue.persist([message("1-0", "p1", "u1", "1700000000000"), message("1-1", "p1", "u2", "1700000000001")])
+
+        then:
+        1 * mapper.batchInsertIgnore({ it*.messageId == ["1-0", "1-1"] && it*.userId == ["u1", "u2"] }) >> 2
+
+        then:
+        1 * redisUtil.xAck("orders", "writer", "1-0", "1-1")
+
+        then:
+        1 * redisUtil.xDel("orders", "1-0", "1-1")
+    }
+
+    def "写库失败时不确认"() {
+        when:
+        queue.persist([message("1-0", "p1", "u1", "1700000000000")])
+
+        then:
+        1 * mapper.batchInsertIgnore(_) >> { throw new IllegalStateException("db down") }
+        thrown(IllegalStateException)
+        0 * redisUtil.xAck(*_)
+        0 * redisUtil.xDel(*_)
+    }
+
+    def "格式错误的消息不写库但确认"() {
+        when:
+        queue.persist([message("1-0", "p1", null, "1700000000000"), message("1-1", "p1", "u2", "abc"),
+                       message("1-2", "p1", "u3", "1700000000000")])
+
+        then:
+        1 * mapper.batchInsertIgnore({ it*.messageId == ["1-2"] }) >> 1
+        1 * redisUtil.xAck("orders", "writer", "1-0", "1-1", "1-2")
+        queue.stats().invalid == 2L
+        queue.stats().persisted == 1L
+    }
+
+    def "重复投递的消息计为重复"() {
+        when:
+        queue.persist([message("1-0", "p1", "u1", "1700000000000"), message("1-1", "p1", "u2", "1700000000001")])
+
+        then: "其中一条此前已写入，INSERT IGNORE只插入一条"
+        1 * mapper.batchInsertIgnore(_) >> 1
+        queue.stats().persisted == 1L
+        queue.stats().duplicates == 1L
+        queue.stats().batches == 1L
+    }
+
+    def "消息转为订单"() {
+        when:
+        def order = SeckillOrderQueue.toOrder(message("5-3", "p9", "u7", "1700000000000"))
+
+        then:
+        order.messageId == "5-3"
+        order.productId == "p9"
+        order.userId == "u7"
+        order.orderTime == new Date(1700000000000L)
+    }
+
+    private static MapRecord<String, Object, Object> message(String id, String productId, String userId, String time) {
+        Map<Object, Object> value = [productId: productId, userId: userId, time: time].findAll { it.value != null }
+        return StreamRecords.newRecord().in("orders").withId(RecordId.of(id)).ofMap(value)
+    }
+}
@@ -0,0 +1,153 @@
+package org.start.app.service
+
+import org.springframework.data.domain.Range
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory
+import org.springframework.data.redis.core.RedisTemplate
+import org.springframework.data.redis.listener.RedisMessageListenerContainer
+import org.start.app.config.RedisConfig
+import org.start.app.config.SeckillConfig
+import org.start.app.util.RedisUtil
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import static org.start.app.service.SeckillService.SeckillResult.ALREADY_BOUGHT
+import static org.start.app.service.SeckillService.SeckillResult.SOLD_OUT
+import static org.start.app.service.SeckillService.SeckillResult.SUCCESS
+
+/**
+ * 抢购脚本在真实Redis上执行，REDIS_HOST/REDIS_PORT指定的Redis不可达时跳过
+ */
+@Requires({ SeckillServiceSpec.redisAvailable() })
+class SeckillServiceSpec extends Specification {
+
+    static final String HOST = System.getenv().getOrDefault("REDIS_HOST", "localhost")
+    static final int PORT = Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"))
+
+    @Shared
+    LettuceConnectionFactory connectionFactory
+    @Shared
+    RedisTemplate<String, Object> redisTemplate
+
+    def queue = Stub(SeckillOrderQueue) { isEnabled() >> false }
+    def config = new SeckillConfig(soldOutTtlMillis: 300)
+    def service
+    def productId = "spec-" + UUID.randomUUID()
+
+    def setupSpec() {
+        connectionFactory = new LettuceConnectionFactory(HOST, PORT)
+        connectionFactory.afterPropertiesSet()
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory)
+    }
+
+    def cleanupSpec() {
+        connectionFactory?.destroy()
+    }
+
+    def setup() {
+        service = new SeckillService(redisTemplate, new RedisUtil(redisTemplate), queue, config,
+                Mock(RedisMessageListenerContainer))
+    }
+
+    def cleanup() {
+        redisTemplate.delete(redisTemplate.keys("product:*" + productId + "*"))
+    }
+
+    def "售罄前每个用户只能买一件"() {
+        given:
+        service.initStock(productId, 2, 1)
+
+        expect:
+        service.purchase(productId, "u1") == SUCCESS
+        service.purchase(productId, "u1") == ALREADY_BOUGHT
+        service.purchase(productId, "u2") == SUCCESS
+        service.purchase(productId, "u3") == SOLD_OUT
+        service.reconcile(productId).stock == 0L
+        service.reconcile(productId).bought == 2L
+    }
+
+    def "并发抢购不超卖"() {
+        given:
+        service.initStock(productId, 10, shards)
+        def pool = Executors.newFixedThreadPool(16)
+
+        when:
+        def results = pool.invokeAll((1..100).collect { i ->
+            { -> service.purchase(productId, "u" + i) } as Callable
+        })*.get()
+
+        then:
+        results.count { it == SUCCESS } == 10
+        results.count { it == SOLD_OUT } == 90
+        service.reconcile(productId).stock == 0L
+        service.reconcile(productId).bought == 10L
+
+        cleanup:
+        pool.shutdown()
+
+        where:
+        shards << [1, 4]
+    }
+
+    def "订单与扣减在同一个脚本中写入Stream"() {
+        given:
+        def streamKey = "seckill:order:" + productId
+        def enabledQueue = Mock(SeckillOrderQueue) {
+            isEnabled() >> true
+            getStreamKey() >> streamKey
+        }
+        service = new SeckillService(redisTemplate, new RedisUtil(redisTemplate), enabledQueue, config,
+                Mock(RedisMessageListenerContainer))
+        service.initStock(productId, 2, shards)
+
+        when:
+        def results = (1..4).collect { service.purchase(productId, "u" + it) }
+
+        then:
+        results.count { it == SUCCESS } == 2
+        2 * enabledQueue.markEnqueued()
+
+        and: "消息能被订单队列解析，用户与扣减成功的用户一致"
+        def orders = redisTemplate.opsForStream().range(streamKey, Range.unbounded())
+                .collect { SeckillOrderQueue.toOrder(it) }
+        orders*.productId == [productId] * 2
+        orders*.userId as Set == (1..4).findAll { results[it - 1] == SUCCESS }.collect { "u" + it } as Set
+
+        cleanup:
+        redisTemplate.delete(streamKey)
+
+        where:
+        shards << [1, 2]
+    }
+
+    def "错过重置通知时售罄标记到期后重新访问Redis"() {
+        given:
+        service.initStock(productId, 0, 1)
+        service.purchase(productId, "u1")
+
+        when: "其他节点补了库存但通知未送达本节点"
+        redisTemplate.opsForValue().set("product:stock:" + productId, 1)
+
+        then:
+        service.purchase(productId, "u1") == SOLD_OUT
+        service.stats().soldOutLocally == 1L
+
+        when:
+        sleep(config.soldOutTtlMillis + 50)
+
+        then:
+        service.purchase(productId, "u1") == SUCCESS
+    }
+
+    static boolean redisAvailable() {
+        try {
+            new Socket().withCloseable { it.connect(new InetSocketAddress(HOST, PORT), 200) }
+            return true
+        } catch (IOException ignored) {
+            return false
+        }
+    }
+}
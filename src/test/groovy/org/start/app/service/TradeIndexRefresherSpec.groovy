@@ -0,0 +1,159 @@
+package org.start.app.service
+
+import org.start.app.analytics.TradeRecordIndex
+import org.start.app.config.SearchConfig
+import org.start.app.entity.TradeRecord
+import org.start.app.model.TradeRecordChangeEvent
+import org.start.app.model.TradeRecordChangeEvent.ChangeType
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ConcurrentHashMap
+
+class TradeIndexRefresherSpec extends Specification {
+
+    /** 模拟的表 */
+    def table = new TreeMap<Long, TradeRecord>()
+    def conditions = new PollingConditions(timeout: 5)
+    /** 模拟的写入代数 */
+    long generation = 10
+    def writeGeneration = Stub(TradeWriteGeneration) {
+        current() >> { generation }
+    }
+    def refresher = refresher(60_000, 0)
+
+    def cleanup() {
+        refresher.stop()
+    }
+
+    def "提交顺序晚于更大主键的新增记录由INSERT事件补上"() {
+        given:
+        [1L, 2L, 5L].each { table[it] = record(it) }
+        refresher.start()
+        conditions.eventually { assert refresher.ready }
+
+        when: "ID 3 在 ID 5 之后提交，主键追加不会再读到"
+        table[3L] = record(3L)
+        refresher.onChange(new TradeRecordChangeEvent(ChangeType.INSERT, [3L], null))
+
+        then:
+        conditions.eventually { assert refresher.index.records.keySet() == [1L, 2L, 3L, 5L] as Set }
+        refresher.tailId == 5
+    }
+
+    def "重新读取时已不存在的记录按删除处理"() {
+        given:
+        [1L, 2L].each { table[it] = record(it) }
+        refresher.start()
+        conditions.eventually { assert refresher.ready }
+
+        when:
+        table.remove(2L)
+        refresher.onChange(new TradeRecordChangeEvent(ChangeType.UPDATE, [2L], null))
+
+        then:
+        conditions.eventually { assert refresher.index.records.keySet() == [1L] as Set }
+    }
+
+    def "记录ID超出索引范围后停用"() {
+        given:
+        table[101L] = record(101L)
+
+        when:
+        refresher.start()
+
+        then:
+        conditions.eventually { assert refresher.stats().disabled }
+        !refresher.ready
+    }
+
+    def "加载后只有本节点的写入时与写入同步"() {
+        given:
+        table[1L] = record(1L)
+        refresher.start()
+        conditions.eventually { assert refresher.ready }
+
+        expect:
+        refresher.current
+
+        when: "本节点写入，事件处理后代数加一"
+        table[2L] = record(2L)
+        refresher.onChange(new TradeRecordChangeEvent(ChangeType.INSERT, [2L], null))
+        generation++
+
+        then:
+        conditions.eventually { assert refresher.current }
+    }
+
+    def "其他节点的写入使索引不同步，到期后重新全量加载"() {
+        given:
+        refresher = refresher(20, 1000)
+        table[1L] = record(1L)
+        refresher.start()
+        conditions.eventually { assert refresher.current }
+
+        when: "其他节点修改了已加载的记录，本节点没有事件"
+        table[1L] = record(1L, "已修改")
+        generation++
+
+        then:
+        !refresher.current
+
+        and: "重新加载后同步，读到修改后的记录"
+        conditions.eventually {
+            assert refresher.current
+            assert refresher.index.records[1L].remarks == "已修改"
+        }
+    }
+
+    def "读取写入代数失败时按不同步处理"() {
+        given:
+        def failing = Stub(TradeWriteGeneration) {
+            current() >> { throw new IllegalStateException("Redis不可用") }
+        }
+        refresher = new TradeIndexRefresher<MapIndex>("测试索引", "test-index-refresh",
+                new SearchConfig(refreshIntervalMillis: 60_000), loader(), 100, { new MapIndex() }, failing)
+        table[1L] = record(1L)
+
+        when:
+        refresher.start()
+
+        then:
+        conditions.eventually { assert refresher.ready }
+        !refresher.current
+    }
+
+    private TradeIndexRefresher<MapIndex> refresher(long refreshIntervalMillis, long resyncIntervalMillis) {
+        return new TradeIndexRefresher<MapIndex>("测试索引", "test-index-refresh",
+                new SearchConfig(loadBatchSize: 2, refreshIntervalMillis: refreshIntervalMillis,
+                        resyncIntervalMillis: resyncIntervalMillis),
+                loader(), 100, { new MapIndex() }, writeGeneration)
+    }
+
+    private TradeIndexRefresher.Loader loader() {
+        return TradeIndexRefresher.Loader.of(
+                { Long afterId, Integer limit -> new ArrayList<>(table.tailMap(afterId, false).values()).take(limit) },
+                { List<Long> ids -> ids.findResults { table[it] } })
+    }
+
+    private static TradeRecord record(long id, String remarks = null) {
+        def record = new TradeRecord()
+        record.id = id
+        record.remarks = remarks
+        return record
+    }
+
+    static class MapIndex implements TradeRecordIndex {
+        final Map<Long, TradeRecord> records = new ConcurrentHashMap<>()
+
+        @Override
+        void put(List<TradeRecord> batch) {
+            batch.each { records[it.id] = it }
+        }
+
+        @Override
+        void remove(Collection<Long> ids) {
+            ids.each { records.remove(it) }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.start.app.service
+
+import org.start.app.config.DedupConfig
+import org.start.app.entity.TradeRecord
+import org.start.app.excel.DuplicateTradeNoException
+import org.start.app.mapper.TradeRecordMapper
+import org.start.app.model.DedupPolicy
+import org.start.app.util.RedisUtil
+import spock.lang.Specification
+
+class TradeNoDeduplicatorSpec extends Specification {
+
+    def tradeRecordMapper = Mock(TradeRecordMapper)
+    def deduplicator = new TradeNoDeduplicator(tradeRecordMapper, Mock(RedisUtil),
+            new DedupConfig(expectedInsertions: 1000, confirmChunkSize: 2))
+
+    def "预检发现库中已有的单号"() {
+        when:
+        deduplicator.checkAbsent(["T1", "T2", "T3"])
+
+        then: "预热完成前全部到数据库确认，按确认批次分两次查询"
+        1 * tradeRecordMapper.selectIdsByTradeNos(["T1", "T2"]) >> [record("T2", 7L)]
+        1 * tradeRecordMapper.selectIdsByTradeNos(["T3"]) >> []
+        def e = thrown(DuplicateTradeNoException)
+        e.tradeNos == ["T2"]
+        e.committedRows == 0
+    }
+
+    def "预检通过不抛异常"() {
+        given:
+        tradeRecordMapper.selectIdsByTradeNos(_) >> []
+
+        when:
+        deduplicator.checkAbsent(["T1", "T2"])
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "REJECT批次存在重复时不调用写入"() {
+        given:
+        def writer = Mock(TradeNoDeduplicator.ChunkWriter)
+
+        when:
+        deduplicator.write(batch, DedupPolicy.REJECT, writer)
+
+        then:
+        tradeRecordMapper.selectIdsByTradeNos(_) >> existing
+        0 * writer.write(_, _)
+        thrown(DuplicateTradeNoException)
+
+        where:
+        batch                              | existing
+        [record("T1"), record("T1")]       | []
+        [record("T1"), record("T2")]       | [record("T1", 3L)]
+    }
+
+    def "已提交行数写入异常信息"() {
+        expect:
+        new DuplicateTradeNoException(["T1"], 500).message.contains("已提交 500 条")
+        !new DuplicateTradeNoException(["T1"]).message.contains("已提交")
+    }
+
+    private static TradeRecord record(String tradeNo, Long id = null) {
+        def record = new TradeRecord()
+        record.tradeNo = tradeNo
+        record.id = id
+        return record
+    }
+}
@@ -0,0 +1,100 @@
+package org.start.app.service
+
+import org.springframework.context.ApplicationEventPublisher
+import org.start.app.config.PartitionConfig
+import org.start.app.entity.TradeRecord
+import org.start.app.mapper.TradePartitionMapper
+import org.start.app.model.TradePartition
+import org.start.app.model.TradeRecordChangeEvent
+import spock.lang.Specification
+
+import javax.sql.DataSource
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import java.time.YearMonth
+import java.time.ZoneId
+import java.time.format.DateTimeFormatter
+
+class TradePartitionServiceSpec extends Specification {
+
+    def mapper = Mock(TradePartitionMapper)
+    def eventPublisher = Mock(ApplicationEventPublisher)
+    def lockResult = Stub(ResultSet)
+    def dataSource = Stub(DataSource) {
+        getConnection() >> Stub(Connection) {
+            prepareStatement(_) >> Stub(PreparedStatement) {
+                executeQuery() >> lockResult
+            }
+        }
+    }
+    def config = new PartitionConfig(aheadMonths: 0, retentionMonths: 2, keyBatchSize: 2)
+    def service = new TradePartitionService(mapper, dataSource, eventPublisher, config)
+    def current = YearMonth.now(ZoneId.of(config.zoneId))
+
+    def "过期分区交换到中转表后分批发布删除事件"() {
+        given:
+        lockResult.next() >> true
+        lockResult.getInt(1) >> 1
+        def expired = name(current.minusMonths(2))
+        mapper.selectPartitions() >> partitions(current.minusMonths(2), current.minusMonths(1), current)
+        def events = []
+
+        when:
+        def result = service.maintain()
+
+        then: "先处理上次遗留，中转表为空"
+        1 * mapper.selectExpiredKeys(0, 2) >> []
+
+        then:
+        1 * mapper.exchangeToExpired(expired)
+
+        then:
+        1 * mapper.dropPartitions([expired])
+
+        then: "按ID分批读取，每批删除单号登记并发布事件，读到不满一批为止"
+        1 * mapper.selectExpiredKeys(0, 2) >> [record(1, "T1"), record(2, "T2")]
+        1 * mapper.deleteRegistry(["T1", "T2"])
+        1 * mapper.selectExpiredKeys(2, 2) >> [record(5, "T5")]
+        1 * mapper.deleteRegistry(["T5"])
+        2 * eventPublisher.publishEvent(_) >> { args -> events << args[0] }
+
+        then:
+        1 * mapper.truncateExpired()
+
+        and:
+        result.dropped == [expired]
+        result.droppedRows == 3L
+        events*.type == [TradeRecordChangeEvent.ChangeType.DELETE] * 2
+        events*.ids == [[1L, 2L], [5L]]
+        events*.tradeNos == [["T1", "T2"], ["T5"]]
+    }
+
+    def "其他节点持有维护锁时不执行"() {
+        given:
+        lockResult.next() >> true
+        lockResult.getInt(1) >> 0
+
+        when:
+        service.maintain()
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message.contains("其他节点")
+        0 * mapper._
+    }
+
+    private static List<TradePartition> partitions(YearMonth... months) {
+        def partitions = months.collect { new TradePartition(name: name(it)) }
+        partitions << new TradePartition(name: "p_max")
+        return partitions
+    }
+
+    private static String name(YearMonth month) {
+        return "p" + month.format(DateTimeFormatter.ofPattern("yyyyMM"))
+    }
+
+    private static TradeRecord record(long id, String tradeNo) {
+        return new TradeRecord(id: id, tradeNo: tradeNo)
+    }
+}
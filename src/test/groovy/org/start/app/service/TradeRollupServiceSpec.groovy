@@ -0,0 +1,59 @@
+package org.start.app.service
+
+import org.springframework.transaction.support.TransactionTemplate
+import org.start.app.config.RollupConfig
+import org.start.app.entity.TradeRecord
+import org.start.app.entity.TradeRollup
+import org.start.app.mapper.TradeRecordMapper
+import org.start.app.mapper.TradeRollupMapper
+import spock.lang.Specification
+
+import java.text.SimpleDateFormat
+import java.time.LocalDate
+
+class TradeRollupServiceSpec extends Specification {
+
+    def recordMapper = Mock(TradeRecordMapper)
+    def rollupMapper = Mock(TradeRollupMapper)
+    def service = new TradeRollupService(rollupMapper, recordMapper, new RollupConfig(), Mock(TransactionTemplate))
+
+    def "覆盖时修改交易时间，旧日期扣减新日期累加"() {
+        given:
+        def before = record(1, "2024-01-31 10:00:00", 100)
+        def after = record(1, "2024-02-01 09:00:00", 120)
+        List<TradeRollup> daily = null
+        List<TradeRollup> monthly = null
+        def written = false
+
+        when:
+        service.writeChunk([], [after], recordMapper, rollupMapper, { written = true })
+
+        then:
+        1 * recordMapper.selectByIdsForUpdate([1L]) >> [before]
+        1 * rollupMapper.upsertDaily(_) >> { args -> daily = args[0]; daily.size() }
+        1 * rollupMapper.upsertMonthly(_) >> { args -> monthly = args[0]; monthly.size() }
+        written
+        daily.collect { [it.statDate, it.tradeCount, it.amountSum] } == [
+                [LocalDate.of(2024, 1, 31), -1L, -100G],
+                [LocalDate.of(2024, 2, 1), 1L, 120G]]
+        monthly.collect { [it.statDate, it.tradeCount, it.amountSum] } == [
+                [LocalDate.of(2024, 1, 1), -1L, -100G],
+                [LocalDate.of(2024, 2, 1), 1L, 120G]]
+    }
+
+    def "覆盖的ID已不存在时不计入汇总"() {
+        when:
+        service.writeChunk([], [record(9, "2024-01-31 10:00:00", 50)], recordMapper, rollupMapper, {})
+
+        then: "按ID覆盖不会插入新行，汇总也不变"
+        1 * recordMapper.selectByIdsForUpdate([9L]) >> []
+        0 * rollupMapper._
+    }
+
+    private static TradeRecord record(long id, String tradeTime, BigDecimal amount) {
+        def format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
+        format.setTimeZone(TimeZone.getTimeZone("GMT+8"))
+        return new TradeRecord(id: id, tradeTime: format.parse(tradeTime), tradeType: "消费", direction: "支出",
+                paymentMethod: "余额", status: "成功", amount: amount)
+    }
+}
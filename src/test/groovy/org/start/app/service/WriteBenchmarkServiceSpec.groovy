@@ -0,0 +1,41 @@
+package org.start.app.service
+
+import org.start.app.config.ImportConfig
+import org.start.app.mapper.TradeRecordMapper
+import spock.lang.Specification
+
+class WriteBenchmarkServiceSpec extends Specification {
+
+    def mapper = Mock(TradeRecordMapper)
+    def batchWriter = Mock(TradeRecordBatchWriter)
+    def service = new WriteBenchmarkService(mapper, batchWriter, new ImportConfig(batchSize: 4))
+
+    def "两种方式都写入新建的表，测完删除，不访问交易记录表"() {
+        given:
+        def tables = []
+
+        when:
+        def result = service.compare(10)
+
+        then:
+        2 * mapper.createBenchmarkTable({ it.startsWith("trade_record_bench_") }) >> { args -> tables << args[0] }
+        3 * mapper.batchInsertInto({ it == tables[0] }, _) >> { args -> args[1].size() }
+        3 * batchWriter.write({ it == tables[1] }, _, _) >> { args -> args[1].size() }
+        1 * mapper.dropBenchmarkTable({ it == tables[0] })
+        1 * mapper.dropBenchmarkTable({ it == tables[1] })
+        0 * mapper._
+        0 * batchWriter._
+        result.rows == 10
+    }
+
+    def "写入失败时仍删除测试表"() {
+        when:
+        service.compare(10)
+
+        then:
+        1 * mapper.createBenchmarkTable(_)
+        1 * mapper.batchInsertInto(_, _) >> { throw new IllegalStateException("db down") }
+        1 * mapper.dropBenchmarkTable(_)
+        thrown(IllegalStateException)
+    }
+}
@@ -0,0 +1,90 @@
+package org.start.app.excel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DateConverter基准测试
+ * 对比原实现（每个单元格新建SimpleDateFormat）与逐字符快速路径的解析、格式化耗时。
+ * 运行：mvn test-compile 后执行本类的main方法，加 -prof gc 可查看每次操作的内存分配
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class DateConverterBenchmark {
+    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final int SIZE = 1024;
+
+    private final String[] texts = new String[SIZE];
+    private final Date[] dates = new Date[SIZE];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        long start = 1_577_808_000_000L;
+        SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+        for (int i = 0; i < SIZE; i++) {
+            dates[i] = new Date(start + (long) (random.nextDouble() * 157_680_000_000L) / 1000 * 1000);
+            texts[i] = format.format(dates[i]);
+        }
+    }
+
+    @Benchmark
+    public void legacyParse(Blackhole blackhole) throws ParseException {
+        for (String text : texts) {
+            blackhole.consume(new SimpleDateFormat(DATE_FORMAT).parse(text));
+        }
+    }
+
+    @Benchmark
+    public void fastParse(Blackhole blackhole) throws ParseException {
+        for (String text : texts) {
+            blackhole.consume(DateConverter.parse(text));
+        }
+    }
+
+    @Benchmark
+    public void legacyFormat(Blackhole blackhole) {
+        for (Date date : dates) {
+            blackhole.consume(new SimpleDateFormat(DATE_FORMAT).format(date));
+        }
+    }
+
+    @Benchmark
+    public void fastFormat(Blackhole blackhole) {
+        for (Date date : dates) {
+            blackhole.consume(DateConverter.format(date));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DateConverterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}